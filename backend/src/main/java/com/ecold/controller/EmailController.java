@@ -1,24 +1,39 @@
 package com.ecold.controller;
 
+import com.ecold.dto.BatchScheduleRequest;
+import com.ecold.dto.BatchScheduleResponse;
+import com.ecold.dto.BulkSendResult;
+import com.ecold.dto.BulkTemplateSendRequest;
 import com.ecold.dto.EmailRequest;
 import com.ecold.dto.EmailResponse;
+import com.ecold.dto.GmailQuotaResponse;
 import com.ecold.entity.User;
+import com.ecold.service.BulkEmailService;
 import com.ecold.service.EmailService;
+import com.ecold.service.GmailQuotaService;
+import com.ecold.service.ScheduledEmailService;
+import com.ecold.service.impl.SendIdempotencyGuard;
 import com.ecold.repository.firestore.UserFirestoreRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 @Slf4j
 @RestController
@@ -28,24 +43,46 @@ public class EmailController {
 
     private final EmailService emailService;
     private final UserFirestoreRepository userRepository;
+    private final ScheduledEmailService scheduledEmailService;
+    private final BulkEmailService bulkEmailService;
+    private final GmailQuotaService gmailQuotaService;
+    private final SendIdempotencyGuard idempotencyGuard;
+    private final ObjectMapper objectMapper;
 
     public EmailController(@Qualifier("emailServiceImpl") EmailService emailService,
-                          UserFirestoreRepository userRepository) {
+                          UserFirestoreRepository userRepository,
+                          ScheduledEmailService scheduledEmailService,
+                          BulkEmailService bulkEmailService,
+                          GmailQuotaService gmailQuotaService,
+                          SendIdempotencyGuard idempotencyGuard,
+                          ObjectMapper objectMapper) {
         this.emailService = emailService;
         this.userRepository = userRepository;
+        this.scheduledEmailService = scheduledEmailService;
+        this.bulkEmailService = bulkEmailService;
+        this.gmailQuotaService = gmailQuotaService;
+        this.idempotencyGuard = idempotencyGuard;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/send")
     public ResponseEntity<EmailResponse> sendEmail(
             @Valid @RequestBody EmailRequest emailRequest,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Authentication authentication) {
 
         try {
             User currentUser = getCurrentUser(authentication);
+            if (idempotencyKey != null && emailRequest.getIdempotencyKey() == null) {
+                emailRequest.setIdempotencyKey(idempotencyKey);
+            }
+
             EmailResponse response = emailService.sendEmail(emailRequest, currentUser);
 
             if (response.isSuccess()) {
                 return ResponseEntity.ok(response);
+            } else if ("DUPLICATE_SEND".equals(response.getErrorCode())) {
+                return ResponseEntity.status(409).body(response);
             } else {
                 return ResponseEntity.badRequest().body(response);
             }
@@ -57,6 +94,30 @@ public class EmailController {
         }
     }
 
+    /**
+     * Settle a send whose outcome is unknown: sent=true records it as delivered, sent=false allows a retry
+     */
+    @PostMapping("/idempotency-keys/resolve")
+    public ResponseEntity<Map<String, Object>> resolveIdempotencyKey(
+            @RequestParam String key,
+            @RequestParam boolean sent,
+            Authentication authentication) {
+
+        try {
+            User currentUser = getCurrentUser(authentication);
+            idempotencyGuard.resolve(currentUser.getId(), key, sent);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("key", key);
+            result.put("sent", sent);
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            log.error("Error resolving idempotency key: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(Map.of("error", "Internal server error occurred"));
+        }
+    }
+
     @PostMapping("/send-template")
     public ResponseEntity<EmailResponse> sendTemplateEmail(
             @RequestParam String templateId,
@@ -90,6 +151,106 @@ public class EmailController {
         }
     }
 
+    @PostMapping(value = "/send-template/bulk", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> sendTemplateBulk(
+            @Valid @RequestBody BulkTemplateSendRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            Authentication authentication) {
+
+        // Resolve the user before streaming starts; the stream runs on another thread
+        User currentUser = getCurrentUser(authentication);
+        if (idempotencyKey != null && request.getCampaignId() == null) {
+            request.setCampaignId(idempotencyKey);
+        }
+
+        // Reject up front rather than failing mid-run once Gmail's daily cap is hit
+        long recipients = request.getRecruiterIds().stream().distinct().count();
+        if (currentUser.getProviderEnum() == User.Provider.GOOGLE
+                && !gmailQuotaService.hasCapacity(currentUser.getId(), recipients)) {
+            BulkSendResult rejected = BulkSendResult.builder()
+                    .type(BulkSendResult.TYPE_SUMMARY)
+                    .success(false)
+                    .errorCode("QUOTA_EXCEEDED")
+                    .errorDetail("Gmail quota has " + gmailQuotaService.getQuota(currentUser.getId()).getSendsRemaining()
+                            + " sends left in the last 24 hours, " + recipients + " requested")
+                    .total((int) recipients)
+                    .sent(0)
+                    .failed((int) recipients)
+                    .build();
+            return ResponseEntity.status(429)
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .body(outputStream -> {
+                        outputStream.write(objectMapper.writeValueAsBytes(rejected));
+                        outputStream.write('\n');
+                    });
+        }
+
+        // The run is not tied to the stream: if the client disconnects or the stream times out, sending continues
+        BlockingQueue<BulkSendResult> results = new LinkedBlockingQueue<>();
+        bulkEmailService.startTemplateBulk(request, currentUser, results::add)
+                .whenComplete((summary, error) -> results.add(summary != null ? summary : BulkSendResult.builder()
+                        .type(BulkSendResult.TYPE_SUMMARY)
+                        .success(false)
+                        .errorCode("BULK_SEND_FAILED")
+                        .errorDetail(error.getCause() != null ? error.getCause().getMessage() : error.getMessage())
+                        .build()));
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                BulkSendResult result;
+                do {
+                    result = results.take();
+                    outputStream.write(objectMapper.writeValueAsBytes(result));
+                    outputStream.write('\n');
+                    outputStream.flush();
+                } while (!BulkSendResult.TYPE_SUMMARY.equals(result.getType()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Bulk send stream for user {} timed out, the run continues in the background", currentUser.getEmail());
+            } catch (IOException e) {
+                log.warn("Bulk send stream for user {} was closed by the client, the run continues in the background",
+                        currentUser.getEmail());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    @PostMapping("/schedule-batch")
+    public ResponseEntity<BatchScheduleResponse> scheduleBatch(
+            @Valid @RequestBody BatchScheduleRequest request,
+            Authentication authentication) {
+
+        try {
+            User currentUser = getCurrentUser(authentication);
+
+            if (currentUser.getProviderEnum() != User.Provider.GOOGLE) {
+                return ResponseEntity.badRequest().body(BatchScheduleResponse.builder()
+                        .success(false)
+                        .message("Scheduled emails are only supported for Gmail OAuth users")
+                        .build());
+            }
+
+            BatchScheduleResponse response = scheduledEmailService.scheduleBatch(request, currentUser);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected email batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(BatchScheduleResponse.builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .build());
+        } catch (RuntimeException e) {
+            log.error("Error scheduling email batch: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body(BatchScheduleResponse.builder()
+                    .success(false)
+                    .message("Internal server error occurred")
+                    .build());
+        }
+    }
+
     @PostMapping("/test")
     public ResponseEntity<EmailResponse> sendTestEmail(
             @RequestParam String toEmail,
@@ -137,6 +298,17 @@ public class EmailController {
         }
     }
 
+    @GetMapping("/quota")
+    public ResponseEntity<GmailQuotaResponse> getQuota(Authentication authentication) {
+        try {
+            User currentUser = getCurrentUser(authentication);
+            return ResponseEntity.ok(gmailQuotaService.getQuota(currentUser.getId()));
+        } catch (Exception e) {
+            log.error("Error getting Gmail quota: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
     @GetMapping("/config/status")
     public ResponseEntity<Map<String, Object>> getEmailConfigurationStatus() {
         Map<String, Object> status = new HashMap<>();
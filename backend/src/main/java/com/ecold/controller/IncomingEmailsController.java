@@ -1,10 +1,12 @@
 package com.ecold.controller;
 
+import com.ecold.entity.IncomingEmail;
 import com.ecold.entity.User;
 import com.ecold.service.IncomingEmailService;
 import com.ecold.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -24,6 +26,25 @@ public class IncomingEmailsController {
     private final IncomingEmailService incomingEmailService;
     private final UserService userService;
     
+    @GetMapping
+    public ResponseEntity<Page<IncomingEmail>> getIncomingEmails(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) IncomingEmail.EmailCategory category) {
+        User currentUser = userService.getCurrentUser();
+        // List documents carry no body; open an email by id to read it
+        Page<IncomingEmail> emails = category != null
+                ? incomingEmailService.getIncomingEmailsByCategory(currentUser, category, page, size)
+                : incomingEmailService.getIncomingEmails(currentUser, page, size);
+        return ResponseEntity.ok(emails);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<IncomingEmail> getIncomingEmail(@PathVariable String id) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(incomingEmailService.getIncomingEmail(currentUser, id));
+    }
+
     @GetMapping("/highlights")
     public ResponseEntity<List<Map<String, Object>>> getInboxHighlights() {
         // Return mock data for now
@@ -59,16 +80,31 @@ public class IncomingEmailsController {
     
     @GetMapping("/unread-counts")
     public ResponseEntity<Map<String, Long>> getUnreadCounts() {
+        User currentUser = userService.getCurrentUser();
+        Map<IncomingEmail.EmailCategory, Long> unread = incomingEmailService.getUnreadCounts(currentUser);
+
+        // Spam and uncategorized mail are not shown in the inbox, so they are left out
         Map<String, Long> counts = new HashMap<>();
-        counts.put("APPLICATION_UPDATE", 3L);
-        counts.put("SHORTLIST_INTERVIEW", 1L);
-        counts.put("REJECTION_CLOSED", 2L);
-        counts.put("RECRUITER_OUTREACH", 5L);
-        counts.put("GENERAL_INQUIRY", 1L);
-        counts.put("TOTAL", 12L);
-        
+        long total = 0;
+        for (IncomingEmail.EmailCategory category : IncomingEmail.EmailCategory.values()) {
+            if (category == IncomingEmail.EmailCategory.SPAM || category == IncomingEmail.EmailCategory.UNKNOWN) {
+                continue;
+            }
+            long count = unread.getOrDefault(category, 0L);
+            counts.put(category.name(), count);
+            total += count;
+        }
+        counts.put("TOTAL", total);
+
         return ResponseEntity.ok(counts);
     }
+
+    @PatchMapping("/{id}/read")
+    public ResponseEntity<IncomingEmail> markAsRead(@PathVariable String id,
+                                                    @RequestParam(defaultValue = "true") boolean read) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(incomingEmailService.markAsRead(currentUser, id, read));
+    }
     
     @PostMapping("/scan")
     public ResponseEntity<Map<String, String>> scanIncomingEmails() {
@@ -93,4 +129,20 @@ public class IncomingEmailsController {
             return ResponseEntity.badRequest().body(response);
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/{id}/recategorize")
+    public ResponseEntity<?> recategorizeEmail(@PathVariable String id, @RequestParam String category) {
+        IncomingEmail.EmailCategory emailCategory;
+        try {
+            emailCategory = IncomingEmail.EmailCategory.valueOf(category.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Unknown category: " + category);
+            response.put("status", "error");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(incomingEmailService.recategorizeEmail(currentUser, id, emailCategory));
+    }
+}
@@ -0,0 +1,43 @@
+package com.ecold.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchScheduleRequest {
+
+    @NotBlank
+    private String templateId;
+
+    @NotEmpty
+    private List<String> recruiterIds;
+
+    // Send window: first email goes out at windowStart, none after windowEnd (optional)
+    @NotNull
+    private LocalDateTime windowStart;
+
+    private LocalDateTime windowEnd;
+
+    // Optional gap between consecutive sends; defaults to spreading evenly over the window
+    private Long staggerSeconds;
+
+    // Additional data for placeholder replacement
+    private Map<String, String> additionalData;
+
+    private EmailRequest.Priority priority;
+
+    // Store template references and placeholder values instead of rendered bodies (default true)
+    private Boolean compact;
+}
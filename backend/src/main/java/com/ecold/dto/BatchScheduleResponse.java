@@ -0,0 +1,30 @@
+package com.ecold.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchScheduleResponse {
+
+    private boolean success;
+    private String message;
+    private int scheduledCount;
+    private List<String> scheduledEmailIds;
+    private List<String> skippedRecruiterIds;
+    private LocalDateTime firstScheduleTime;
+    private LocalDateTime lastScheduleTime;
+
+    // Storage footprint of the campaign's scheduled emails; the same bytes are saved again when they are read for dispatch
+    private boolean compact;
+    private long renderedBytes;
+    private long storedBytes;
+    private long bytesSaved;
+}
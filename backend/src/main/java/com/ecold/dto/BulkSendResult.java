@@ -0,0 +1,54 @@
+package com.ecold.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One line of the NDJSON bulk send stream.
+ * Per-recipient lines have type "result"; the final line has type "summary".
+ * A recipient whose domain was throttled is not sent in the run but scheduled for later:
+ * its line is a success carrying scheduledEmailId and deferredUntil instead of a messageId.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSendResult {
+
+    public static final String TYPE_RESULT = "result";
+    public static final String TYPE_SUMMARY = "summary";
+
+    private String type;
+
+    // Per-recipient fields
+    private String recruiterId;
+    private String recipientEmail;
+    private boolean success;
+    private String messageId;
+    private String errorCode;
+    private String errorDetail;
+    private String scheduledEmailId;
+    private LocalDateTime deferredUntil;
+
+    // Summary fields
+    private Integer total;
+    private Integer sent;
+    private Integer failed;
+    private Integer deferred;
+    private Long durationMs;
+
+    public static BulkSendResult failure(String recruiterId, String recipientEmail, String errorCode, String errorDetail) {
+        return BulkSendResult.builder()
+                .type(TYPE_RESULT)
+                .recruiterId(recruiterId)
+                .recipientEmail(recipientEmail)
+                .success(false)
+                .errorCode(errorCode)
+                .errorDetail(errorDetail)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecold.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTemplateSendRequest {
+
+    @NotBlank
+    private String templateId;
+
+    @NotEmpty
+    private List<String> recruiterIds;
+
+    // Additional data for placeholder replacement, shared by every recipient
+    private Map<String, String> additionalData;
+
+    // Resume attached to every email; encoded once and reused across the run
+    private String resumeId;
+
+    // Re-running a campaign skips recruiters it already reached
+    private String campaignId;
+
+    // Dispatch priority for every send of the run (defaults to NORMAL)
+    private EmailRequest.Priority priority;
+}
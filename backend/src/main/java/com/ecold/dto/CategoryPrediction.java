@@ -0,0 +1,20 @@
+package com.ecold.dto;
+
+import com.ecold.entity.IncomingEmail;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A trained classifier's category for an incoming email and its posterior probability
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryPrediction {
+
+    private IncomingEmail.EmailCategory category;
+    private double confidence;
+}
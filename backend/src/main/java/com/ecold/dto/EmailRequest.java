@@ -1,5 +1,7 @@
 package com.ecold.dto;
 
+import com.ecold.entity.Resume;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -34,6 +36,16 @@ public class EmailRequest {
     private String templateId;
 
     private String recruiterId;
+
+    // Resume to attach, if any
+    private String resumeId;
+
+    // Resume document already resolved by the caller (bulk runs read it once per run)
+    @JsonIgnore
+    private Resume resume;
+
+    // Repeats of a key that was already sent are rejected instead of sent again
+    private String idempotencyKey;
     
     // Additional data for placeholder replacement
     private Map<String, String> placeholderData;
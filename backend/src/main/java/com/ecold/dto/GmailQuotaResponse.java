@@ -0,0 +1,27 @@
+package com.ecold.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Gmail usage over the trailing 24 hours and what is left of the configured caps.
+ * Unit limits of 0 mean units are tracked but not enforced, and unitsRemaining is null.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GmailQuotaResponse {
+
+    private long sendsUsed;
+    private long sendLimit;
+    private long sendsRemaining;
+
+    private long unitsUsed;
+    private long unitLimit;
+    private Long unitsRemaining;
+
+    private int windowHours;
+}
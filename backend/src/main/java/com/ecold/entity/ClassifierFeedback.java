@@ -0,0 +1,30 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.DocumentId;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user's correction of an incoming email's category, kept as a training example
+ * Path: /users/{userId}/classifier_feedback/{emailId}
+ * The text is stored (body truncated) so a model can be rebuilt without the original email.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClassifierFeedback {
+
+    @DocumentId
+    private String id; // Incoming email id
+
+    private String subject;
+    private String body;
+    private String senderEmail;
+    private String previousCategory;
+    private String category;
+    private Timestamp createdAt;
+}
@@ -0,0 +1,25 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.Blob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of a user's trained incoming email classifier
+ * Path: /users/{userId}/classifier/naive_bayes
+ * model holds NaiveBayesModel.toBytes(); seedVersion ties it to the seed it was trained from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClassifierSnapshot {
+
+    private Integer seedVersion;
+    private Long feedbackCount;
+    private Blob model;
+    private Timestamp updatedAt;
+}
@@ -28,6 +28,7 @@ public class EmailTemplate {
     private String tags; // JSON string of tags array
     private Boolean isDefault = false;
     private Timestamp lastUsed;
+    private Long version = 1L; // Bumped whenever subject or body changes
     private Timestamp createdAt;
     private Timestamp updatedAt;
 
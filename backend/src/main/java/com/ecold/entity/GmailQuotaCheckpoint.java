@@ -0,0 +1,28 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Checkpoint of a user's Gmail quota ledger
+ * Path: /users/{userId}/quota/gmail
+ * Parallel lists hold one entry per non-empty minute of the last 24 hours.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GmailQuotaCheckpoint {
+
+    // Epoch minute of each bucket
+    private List<Long> minutes;
+    private List<Long> sends;
+    private List<Long> units;
+
+    private Timestamp updatedAt;
+}
@@ -0,0 +1,29 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Checkpoint of a user's incremental Gmail inbox sync
+ * Path: /users/{userId}/sync_state/gmail
+ * historyId is the mailbox history id the last scan caught up to; Gmail history ids are
+ * unsigned 64-bit values, so it is stored as a decimal string.
+ * pendingMessageIds are messages up to historyId that a scan could not fetch or store;
+ * the next scan tries them again before anything else.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GmailSyncState {
+
+    private String historyId;
+    private List<String> pendingMessageIds;
+    private Timestamp lastSyncAt;
+    private Timestamp lastFullSyncAt;
+}
@@ -0,0 +1,26 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Per-user incoming email counts by category
+ * Path: /users/{userId}/counters/inbox
+ * Kept current with increments at ingest and on read-state or category changes;
+ * reconciledAt is when the counts were last recomputed from the emails themselves.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboxCounters {
+
+    private Map<String, Long> unread; // Category name -> unread emails
+    private Map<String, Long> total; // Category name -> all emails
+    private Timestamp reconciledAt;
+}
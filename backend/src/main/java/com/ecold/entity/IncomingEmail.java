@@ -2,6 +2,7 @@ package com.ecold.entity;
 
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.firestore.annotation.Exclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,8 +21,13 @@ public class IncomingEmail {
     private String senderEmail;
     private String senderName;
     private String subject;
+    private String snippet;
+    private Boolean bodyTruncated;
+
+    // Bodies live in content/body and are only loaded for a single email, never for lists
     private String body;
     private String htmlBody;
+
     private String category; // Stored as String
     private String priority; // Stored as String
     private Boolean isRead = false;
@@ -62,4 +68,24 @@ public class IncomingEmail {
     public EmailPriority getPriorityEnum() {
         return this.priority != null ? EmailPriority.valueOf(this.priority) : null;
     }
-}
\ No newline at end of file
+
+    @Exclude
+    public String getBody() {
+        return body;
+    }
+
+    @Exclude
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    @Exclude
+    public String getHtmlBody() {
+        return htmlBody;
+    }
+
+    @Exclude
+    public void setHtmlBody(String htmlBody) {
+        this.htmlBody = htmlBody;
+    }
+}
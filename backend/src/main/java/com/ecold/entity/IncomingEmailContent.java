@@ -0,0 +1,20 @@
+package com.ecold.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Body of an incoming email, kept out of the email document so inbox listings stay small
+ * Path: /users/{userId}/incoming_emails/{emailId}/content/body
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IncomingEmailContent {
+
+    private String body;
+    private String htmlBody; // Only stored when app.incoming.body.store-html is enabled
+}
@@ -2,11 +2,14 @@ package com.ecold.entity;
 
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.firestore.annotation.Exclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 
+import java.util.Map;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,14 +33,31 @@ public class ScheduledEmail {
     private String templateId;
     private String recruiterId;
 
+    // Compact mode: subject/body are left empty and rendered at dispatch
+    // from the template version plus these placeholder values
+    private Long templateVersion;
+    private Map<String, String> placeholderValues;
+
     // Error tracking
     private String errorMessage;
     private Timestamp sentAt;
     private String messageId;
 
+    // Retry worker: retries made so far and when the next one is due (null = not retried)
+    private Integer retryCount;
+    private Timestamp nextAttemptAt;
+
+    // Send smoothing: slot assigned by the leveler and when the send was actually handed to Gmail
+    private Timestamp plannedTime;
+    private Timestamp dispatchedAt;
+
     // Additional email options
     private Boolean isHtml;
     private String priority;
+    private String resumeId;
+
+    // Idempotency key of the send this email carries on (e.g. a deferred campaign send); null = "scheduled:{id}"
+    private String idempotencyKey;
 
     public enum Status {
         SCHEDULED,
@@ -54,4 +74,9 @@ public class ScheduledEmail {
     public Status getStatusEnum() {
         return this.status != null ? Status.valueOf(this.status) : null;
     }
+
+    @Exclude
+    public boolean isCompact() {
+        return this.body == null && this.templateId != null && this.placeholderValues != null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.ecold.entity;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.DocumentId;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Idempotency record for one logical send
+ * Path: /users/{userId}/sent_keys/{keyHash}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SentKey {
+
+    @DocumentId
+    private String id;
+
+    // Caller-supplied or derived key, e.g. "scheduled:{emailId}" or "campaign:{campaignId}:{recruiterId}"
+    private String key;
+
+    private String status; // Stored as String
+    private String messageId;
+    private Timestamp claimedAt;
+    private Timestamp sentAt;
+
+    public enum Status {
+        PENDING,
+        SENT,
+        // An attempt may have reached the provider but could not be confirmed; blocks sends until resolved
+        UNKNOWN
+    }
+
+    public Status getStatusEnum() {
+        return this.status != null ? Status.valueOf(this.status) : null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.ecold.exception;
+
+public class TemplateVersionMismatchException extends RuntimeException {
+    public TemplateVersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,102 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.ClassifierFeedback;
+import com.ecold.entity.ClassifierSnapshot;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Firestore Repository for incoming email classifier feedback and model snapshots
+ * Paths: /users/{userId}/classifier_feedback/{emailId}
+ *        /users/{userId}/classifier/naive_bayes
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ClassifierFirestoreRepository {
+
+    private final Firestore firestore;
+    private static final String USERS_COLLECTION = "users";
+    private static final String FEEDBACK_COLLECTION = "classifier_feedback";
+    private static final String CLASSIFIER_COLLECTION = "classifier";
+    private static final String NAIVE_BAYES_DOCUMENT = "naive_bayes";
+
+    private CollectionReference getFeedbackCollection(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(FEEDBACK_COLLECTION);
+    }
+
+    private DocumentReference getSnapshotDocument(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(CLASSIFIER_COLLECTION)
+                .document(NAIVE_BAYES_DOCUMENT);
+    }
+
+    /**
+     * Save a correction, replacing any earlier correction of the same email
+     */
+    public ClassifierFeedback saveFeedback(String userId, ClassifierFeedback feedback)
+            throws ExecutionException, InterruptedException {
+        feedback.setCreatedAt(Timestamp.now());
+        getFeedbackCollection(userId).document(feedback.getId()).set(feedback).get();
+        log.debug("Classifier feedback saved: userId={}, emailId={}, category={}",
+                userId, feedback.getId(), feedback.getCategory());
+        return feedback;
+    }
+
+    /**
+     * Find the user's correction of an email
+     */
+    public Optional<ClassifierFeedback> findFeedback(String userId, String emailId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getFeedbackCollection(userId).document(emailId).get().get();
+
+        if (doc.exists()) {
+            return Optional.of(doc.toObject(ClassifierFeedback.class));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * All corrections made by a user
+     */
+    public List<ClassifierFeedback> findAllFeedback(String userId)
+            throws ExecutionException, InterruptedException {
+        return getFeedbackCollection(userId).get().get().getDocuments().stream()
+                .map(doc -> doc.toObject(ClassifierFeedback.class))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find the user's model snapshot
+     */
+    public Optional<ClassifierSnapshot> findSnapshot(String userId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getSnapshotDocument(userId).get().get();
+
+        if (doc.exists()) {
+            return Optional.of(doc.toObject(ClassifierSnapshot.class));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replace the user's model snapshot
+     */
+    public void saveSnapshot(String userId, ClassifierSnapshot snapshot)
+            throws ExecutionException, InterruptedException {
+        snapshot.setUpdatedAt(Timestamp.now());
+        getSnapshotDocument(userId).set(snapshot).get();
+        log.debug("Classifier snapshot saved: userId={}, bytes={}", userId, snapshot.getModel().toBytes().length);
+    }
+}
@@ -2,13 +2,17 @@ package com.ecold.repository.firestore;
 
 import com.ecold.entity.EmailTemplate;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -56,6 +60,38 @@ public class EmailTemplateFirestoreRepository {
         return template;
     }
 
+    /**
+     * Atomically increment usage counters with a field-level update.
+     * Avoids the read-modify-write of save() so concurrent sends never lose an increment.
+     */
+    public void increment(String userId, String templateId, long usageCount, long emailsSent)
+            throws ExecutionException, InterruptedException {
+        getTemplatesCollection(userId).document(templateId).update(counterUpdates(usageCount, emailsSent)).get();
+        log.debug("EmailTemplate counters incremented: userId={}, templateId={}, usageCount=+{}, emailsSent=+{}",
+                userId, templateId, usageCount, emailsSent);
+    }
+
+    /**
+     * Stage an atomic counter increment in an existing batch
+     */
+    public void incrementInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String templateId,
+                                 long usageCount, long emailsSent) {
+        batch.update(getTemplatesCollection(userId).document(templateId), counterUpdates(usageCount, emailsSent));
+    }
+
+    private Map<String, Object> counterUpdates(long usageCount, long emailsSent) {
+        Map<String, Object> updates = new HashMap<>();
+        if (usageCount != 0) {
+            updates.put("usageCount", FieldValue.increment(usageCount));
+        }
+        if (emailsSent != 0) {
+            updates.put("emailsSent", FieldValue.increment(emailsSent));
+        }
+        updates.put("lastUsed", FieldValue.serverTimestamp());
+        updates.put("updatedAt", FieldValue.serverTimestamp());
+        return updates;
+    }
+
     /**
      * Find template by ID
      */
@@ -72,6 +108,16 @@ public class EmailTemplateFirestoreRepository {
         return Optional.empty();
     }
 
+    /**
+     * Find template by ID without blocking, so independent reads can run concurrently
+     */
+    public ApiFuture<Optional<EmailTemplate>> findByIdAsync(String userId, String templateId) {
+        return ApiFutures.transform(
+                getTemplatesCollection(userId).document(templateId).get(),
+                doc -> Optional.ofNullable(doc.toObject(EmailTemplate.class)),
+                MoreExecutors.directExecutor());
+    }
+
     /**
      * Find all templates for a user
      */
@@ -130,6 +176,21 @@ public class EmailTemplateFirestoreRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Find templates by user, category and status without blocking
+     */
+    public ApiFuture<List<EmailTemplate>> findByUserAndCategoryAndStatusAsync(String userId, String category, String status) {
+        return ApiFutures.transform(
+                getTemplatesCollection(userId)
+                        .whereEqualTo("category", category)
+                        .whereEqualTo("status", status)
+                        .get(),
+                querySnapshot -> querySnapshot.getDocuments().stream()
+                        .map(doc -> doc.toObject(EmailTemplate.class))
+                        .collect(Collectors.toList()),
+                MoreExecutors.directExecutor());
+    }
+
     /**
      * Find template by user and name
      */
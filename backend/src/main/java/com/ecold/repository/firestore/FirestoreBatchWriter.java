@@ -0,0 +1,126 @@
+package com.ecold.repository.firestore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Chunked WriteBatch helper
+ * Firestore limits a single WriteBatch to 500 writes, so writes are grouped into
+ * chunks that are committed as soon as they fill up.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FirestoreBatchWriter {
+
+    public static final int MAX_WRITES_PER_BATCH = 500;
+
+    private final Firestore firestore;
+
+    /**
+     * Start a new chunked batch
+     */
+    public ChunkedBatch begin() {
+        return new ChunkedBatch(firestore);
+    }
+
+    /**
+     * A sequence of WriteBatches that behaves like one logical batch.
+     * Each full chunk is committed immediately; call commit() to flush the rest
+     * and wait for every chunk.
+     */
+    public static class ChunkedBatch {
+
+        private final Firestore firestore;
+        private final List<ApiFuture<List<WriteResult>>> commits = new ArrayList<>();
+        private WriteBatch current;
+        private int pendingWrites = 0;
+        private int totalWrites = 0;
+
+        private ChunkedBatch(Firestore firestore) {
+            this.firestore = firestore;
+        }
+
+        public ChunkedBatch set(DocumentReference documentReference, Object data) {
+            current().set(documentReference, data);
+            return afterWrite();
+        }
+
+        public ChunkedBatch set(DocumentReference documentReference, Map<String, Object> data, SetOptions options) {
+            current().set(documentReference, data, options);
+            return afterWrite();
+        }
+
+        public ChunkedBatch update(DocumentReference documentReference, Map<String, Object> fields) {
+            current().update(documentReference, fields);
+            return afterWrite();
+        }
+
+        public ChunkedBatch delete(DocumentReference documentReference) {
+            current().delete(documentReference);
+            return afterWrite();
+        }
+
+        /**
+         * Number of writes staged so far
+         */
+        public int size() {
+            return totalWrites;
+        }
+
+        /**
+         * Commit the remaining chunk without waiting.
+         * The returned future completes when every chunk has been committed.
+         */
+        public ApiFuture<Integer> commitAsync() {
+            flush();
+            final int writes = totalWrites;
+            return ApiFutures.transform(
+                    ApiFutures.allAsList(commits),
+                    results -> writes,
+                    MoreExecutors.directExecutor());
+        }
+
+        /**
+         * Commit the remaining chunk and wait for all chunks
+         */
+        public int commit() throws ExecutionException, InterruptedException {
+            return commitAsync().get();
+        }
+
+        private WriteBatch current() {
+            if (current == null) {
+                current = firestore.batch();
+            }
+            return current;
+        }
+
+        private ChunkedBatch afterWrite() {
+            pendingWrites++;
+            totalWrites++;
+            if (pendingWrites >= MAX_WRITES_PER_BATCH) {
+                flush();
+            }
+            return this;
+        }
+
+        private void flush() {
+            if (current != null && pendingWrites > 0) {
+                commits.add(current.commit());
+                log.debug("Committed WriteBatch chunk with {} writes", pendingWrites);
+            }
+            current = null;
+            pendingWrites = 0;
+        }
+    }
+}
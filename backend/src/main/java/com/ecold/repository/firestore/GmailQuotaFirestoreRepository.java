@@ -0,0 +1,56 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.GmailQuotaCheckpoint;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore Repository for Gmail quota ledger checkpoints
+ * Path: /users/{userId}/quota/gmail
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class GmailQuotaFirestoreRepository {
+
+    private final Firestore firestore;
+    private static final String USERS_COLLECTION = "users";
+    private static final String QUOTA_COLLECTION = "quota";
+    private static final String GMAIL_DOCUMENT = "gmail";
+
+    private DocumentReference getCheckpointDocument(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(QUOTA_COLLECTION)
+                .document(GMAIL_DOCUMENT);
+    }
+
+    /**
+     * Find the user's last checkpoint
+     */
+    public Optional<GmailQuotaCheckpoint> find(String userId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getCheckpointDocument(userId).get().get();
+
+        if (doc.exists()) {
+            return Optional.of(doc.toObject(GmailQuotaCheckpoint.class));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replace the user's checkpoint
+     */
+    public void save(String userId, GmailQuotaCheckpoint checkpoint)
+            throws ExecutionException, InterruptedException {
+        checkpoint.setUpdatedAt(Timestamp.now());
+        getCheckpointDocument(userId).set(checkpoint).get();
+        log.debug("Gmail quota checkpoint saved: userId={}, buckets={}", userId, checkpoint.getMinutes().size());
+    }
+}
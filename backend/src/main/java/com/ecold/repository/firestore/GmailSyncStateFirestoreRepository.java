@@ -0,0 +1,54 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.GmailSyncState;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore Repository for Gmail inbox sync checkpoints
+ * Path: /users/{userId}/sync_state/gmail
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class GmailSyncStateFirestoreRepository {
+
+    private final Firestore firestore;
+    private static final String USERS_COLLECTION = "users";
+    private static final String SYNC_STATE_COLLECTION = "sync_state";
+    private static final String GMAIL_DOCUMENT = "gmail";
+
+    private DocumentReference getSyncStateDocument(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(SYNC_STATE_COLLECTION)
+                .document(GMAIL_DOCUMENT);
+    }
+
+    /**
+     * Find the user's sync checkpoint
+     */
+    public Optional<GmailSyncState> find(String userId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getSyncStateDocument(userId).get().get();
+
+        if (doc.exists()) {
+            return Optional.of(doc.toObject(GmailSyncState.class));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replace the user's sync checkpoint
+     */
+    public void save(String userId, GmailSyncState state)
+            throws ExecutionException, InterruptedException {
+        getSyncStateDocument(userId).set(state).get();
+        log.debug("Gmail sync checkpoint saved: userId={}, historyId={}", userId, state.getHistoryId());
+    }
+}
@@ -0,0 +1,88 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.InboxCounters;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore Repository for per-user inbox counters
+ * Path: /users/{userId}/counters/inbox
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class InboxCountersFirestoreRepository {
+
+    private final Firestore firestore;
+    private static final String USERS_COLLECTION = "users";
+    private static final String COUNTERS_COLLECTION = "counters";
+    private static final String INBOX_DOCUMENT = "inbox";
+
+    DocumentReference getCountersDocument(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(COUNTERS_COLLECTION)
+                .document(INBOX_DOCUMENT);
+    }
+
+    /**
+     * Find the user's counters
+     */
+    public Optional<InboxCounters> find(String userId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getCountersDocument(userId).get().get();
+
+        if (doc.exists()) {
+            return Optional.of(doc.toObject(InboxCounters.class));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Add the given per-category deltas, creating the document if needed.
+     * A document created here holds only these deltas and no reconciledAt, which marks it
+     * for a full recount on first read.
+     */
+    public void increment(String userId, Map<String, Long> unreadDeltas, Map<String, Long> totalDeltas)
+            throws ExecutionException, InterruptedException {
+        Map<String, Object> fields = incrementFields(unreadDeltas, totalDeltas);
+        if (!fields.isEmpty()) {
+            getCountersDocument(userId).set(fields, SetOptions.merge()).get();
+        }
+    }
+
+    /**
+     * Merge-set fields that apply the deltas with FieldValue.increment, for use in batches
+     * and transactions that change an email's category or read state
+     */
+    static Map<String, Object> incrementFields(Map<String, Long> unreadDeltas, Map<String, Long> totalDeltas) {
+        // An empty map would be merged as a value and wipe the existing counts
+        Map<String, Object> fields = new HashMap<>();
+        Map<String, Object> unread = increments(unreadDeltas);
+        if (!unread.isEmpty()) {
+            fields.put("unread", unread);
+        }
+        Map<String, Object> total = increments(totalDeltas);
+        if (!total.isEmpty()) {
+            fields.put("total", total);
+        }
+        return fields;
+    }
+
+    private static Map<String, Object> increments(Map<String, Long> deltas) {
+        Map<String, Object> increments = new HashMap<>();
+        deltas.forEach((category, delta) -> {
+            if (category != null && delta != 0) {
+                increments.put(category, FieldValue.increment(delta));
+            }
+        });
+        return increments;
+    }
+}
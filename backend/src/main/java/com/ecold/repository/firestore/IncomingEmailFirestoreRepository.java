@@ -1,8 +1,14 @@
 package com.ecold.repository.firestore;
 
+import com.ecold.entity.InboxCounters;
 import com.ecold.entity.IncomingEmail;
+import com.ecold.entity.IncomingEmailContent;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -10,14 +16,22 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 /**
  * Firestore Repository for IncomingEmail entity
  * Path: /users/{userId}/incoming_emails/{emailId}
+ * Bodies are stored separately at /users/{userId}/incoming_emails/{emailId}/content/body,
+ * so list queries only read headers, snippet and flags.
  */
 @Slf4j
 @Repository
@@ -25,8 +39,18 @@ import java.util.stream.Collectors;
 public class IncomingEmailFirestoreRepository {
 
     private final Firestore firestore;
+    private final FirestoreBatchWriter batchWriter;
+    private final InboxCountersFirestoreRepository countersRepository;
     private static final String USERS_COLLECTION = "users";
     private static final String INCOMING_EMAILS_COLLECTION = "incoming_emails";
+    private static final String CONTENT_COLLECTION = "content";
+    private static final String BODY_DOCUMENT = "body";
+
+    // Values allowed in one Firestore "in" filter
+    private static final int IN_QUERY_LIMIT = 30;
+
+    // Content documents fetched per batched get when searching bodies
+    private static final int CONTENT_GET_CHUNK = 100;
 
     /**
      * Get incoming emails collection reference for a user
@@ -37,8 +61,15 @@ public class IncomingEmailFirestoreRepository {
                 .collection(INCOMING_EMAILS_COLLECTION);
     }
 
+    private DocumentReference getContentDocument(String userId, String emailId) {
+        return getIncomingEmailsCollection(userId)
+                .document(emailId)
+                .collection(CONTENT_COLLECTION)
+                .document(BODY_DOCUMENT);
+    }
+
     /**
-     * Save or update an incoming email
+     * Save or update an incoming email's list document; the body is not written
      */
     public IncomingEmail save(String userId, IncomingEmail email)
             throws ExecutionException, InterruptedException {
@@ -57,6 +88,228 @@ public class IncomingEmailFirestoreRepository {
         return email;
     }
 
+    /**
+     * Save a new incoming email together with its body, in one WriteBatch
+     */
+    public IncomingEmail saveWithContent(String userId, IncomingEmail email)
+            throws ExecutionException, InterruptedException {
+        CollectionReference emails = getIncomingEmailsCollection(userId);
+
+        if (email.getId() == null || email.getId().isEmpty()) {
+            DocumentReference docRef = emails.document();
+            email.setId(docRef.getId());
+            email.setCreatedAt(Timestamp.now());
+        }
+
+        email.setUserId(userId);
+        IncomingEmailContent content = IncomingEmailContent.builder()
+                .body(email.getBody())
+                .htmlBody(email.getHtmlBody())
+                .build();
+
+        WriteBatch batch = firestore.batch();
+        batch.set(emails.document(email.getId()), email);
+        batch.set(getContentDocument(userId, email.getId()), content);
+        batch.commit().get();
+
+        log.debug("IncomingEmail saved with content: userId={}, emailId={}", userId, email.getId());
+        return email;
+    }
+
+    /**
+     * Queue a new incoming email and its body on a BulkWriter.
+     * The body is written first and the email document only once the body is stored, so an
+     * email that exists always has its content. The returned future completes with the email
+     * write, after any retries; if either write fails, a body already written is deleted.
+     */
+    public ApiFuture<WriteResult> saveWithContentInBulk(BulkWriter bulkWriter, String userId, IncomingEmail email) {
+        CollectionReference emails = getIncomingEmailsCollection(userId);
+
+        if (email.getId() == null || email.getId().isEmpty()) {
+            DocumentReference docRef = emails.document();
+            email.setId(docRef.getId());
+            email.setCreatedAt(Timestamp.now());
+        }
+
+        email.setUserId(userId);
+        IncomingEmailContent content = IncomingEmailContent.builder()
+                .body(email.getBody())
+                .htmlBody(email.getHtmlBody())
+                .build();
+
+        DocumentReference contentRef = getContentDocument(userId, email.getId());
+        ApiFuture<WriteResult> written = ApiFutures.transformAsync(
+                bulkWriter.set(contentRef, content),
+                contentResult -> bulkWriter.set(emails.document(email.getId()), email),
+                MoreExecutors.directExecutor());
+
+        ApiFutures.addCallback(written, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(WriteResult result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // No email document points at the body; it is only removed to keep storage clean
+                ApiFutures.addCallback(contentRef.delete(), new ApiFutureCallback<>() {
+                    @Override
+                    public void onSuccess(WriteResult result) {
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        log.warn("Failed to delete orphaned content {}: {}", contentRef.getPath(), e.getMessage());
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }, MoreExecutors.directExecutor());
+        return written;
+    }
+
+    /**
+     * Update an email's classification without touching the rest of the document, moving
+     * it between categories in the inbox counters in the same transaction
+     */
+    public void updateCategory(String userId, String emailId, String category, String priority, Double confidenceScore)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = getIncomingEmailsCollection(userId).document(emailId);
+        DocumentReference countersRef = countersRepository.getCountersDocument(userId);
+
+        firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            if (!snapshot.exists()) {
+                return null;
+            }
+
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("category", category);
+            updates.put("priority", priority);
+            updates.put("confidenceScore", confidenceScore);
+
+            String previous = snapshot.getString("category");
+            Map<String, Object> counterFields = Map.of();
+            if (!category.equals(previous)) {
+                Map<String, Long> moved = new HashMap<>();
+                moved.put(category, 1L);
+                if (previous != null) {
+                    moved.put(previous, -1L);
+                }
+                boolean unread = !Boolean.TRUE.equals(snapshot.getBoolean("isRead"));
+                counterFields = InboxCountersFirestoreRepository.incrementFields(unread ? moved : Map.of(), moved);
+            }
+
+            transaction.update(ref, updates);
+            if (!counterFields.isEmpty()) {
+                transaction.set(countersRef, counterFields, SetOptions.merge());
+            }
+            return null;
+        }).get();
+    }
+
+    /**
+     * Mark an email read or unread and adjust its category's unread counter in the same
+     * transaction. Returns the updated email, or empty if it does not exist.
+     */
+    public Optional<IncomingEmail> updateReadState(String userId, String emailId, boolean read)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = getIncomingEmailsCollection(userId).document(emailId);
+        DocumentReference countersRef = countersRepository.getCountersDocument(userId);
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            if (!snapshot.exists()) {
+                return Optional.<IncomingEmail>empty();
+            }
+
+            IncomingEmail email = snapshot.toObject(IncomingEmail.class);
+            if (Boolean.TRUE.equals(email.getIsRead()) != read) {
+                transaction.update(ref, "isRead", read);
+                if (email.getCategory() != null) {
+                    transaction.set(countersRef, InboxCountersFirestoreRepository.incrementFields(
+                            Map.of(email.getCategory(), read ? -1L : 1L), Map.of()), SetOptions.merge());
+                }
+                email.setIsRead(read);
+            }
+            return Optional.of(email);
+        }).get();
+    }
+
+    /**
+     * Count the user's emails per category and replace the counters document in one transaction.
+     * The counters document is read first, so increments from ingest that land while the counts
+     * run wait for the commit and apply on top of the recount instead of being overwritten by it.
+     */
+    public CounterRecount recountCounters(String userId)
+            throws ExecutionException, InterruptedException {
+        CollectionReference emails = getIncomingEmailsCollection(userId);
+        DocumentReference countersRef = countersRepository.getCountersDocument(userId);
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(countersRef).get();
+            InboxCounters previous = snapshot.exists() ? snapshot.toObject(InboxCounters.class) : null;
+
+            Map<String, Long> unread = new HashMap<>();
+            Map<String, Long> total = new HashMap<>();
+            for (IncomingEmail.EmailCategory category : IncomingEmail.EmailCategory.values()) {
+                Query inCategory = emails.whereEqualTo("category", category.name());
+                long categoryTotal = transaction.get(inCategory.count()).get().getCount();
+                if (categoryTotal > 0) {
+                    total.put(category.name(), categoryTotal);
+                    long categoryUnread = transaction.get(inCategory.whereEqualTo("isRead", false).count())
+                            .get()
+                            .getCount();
+                    if (categoryUnread > 0) {
+                        unread.put(category.name(), categoryUnread);
+                    }
+                }
+            }
+
+            InboxCounters counters = InboxCounters.builder()
+                    .unread(unread)
+                    .total(total)
+                    .reconciledAt(Timestamp.now())
+                    .build();
+            transaction.set(countersRef, counters);
+            return new CounterRecount(previous, counters);
+        }).get();
+    }
+
+    /**
+     * Find an email's body
+     */
+    public Optional<IncomingEmailContent> findContent(String userId, String emailId)
+            throws ExecutionException, InterruptedException {
+        DocumentSnapshot doc = getContentDocument(userId, emailId).get().get();
+        return doc.exists() ? Optional.ofNullable(doc.toObject(IncomingEmailContent.class)) : Optional.empty();
+    }
+
+    /**
+     * Find incoming email by ID with its body loaded.
+     * Emails not yet migrated still carry the body on the main document, which is used then.
+     */
+    public Optional<IncomingEmail> findByIdWithContent(String userId, String emailId)
+            throws ExecutionException, InterruptedException {
+        ApiFuture<DocumentSnapshot> emailFuture = getIncomingEmailsCollection(userId).document(emailId).get();
+        ApiFuture<DocumentSnapshot> contentFuture = getContentDocument(userId, emailId).get();
+
+        DocumentSnapshot doc = emailFuture.get();
+        if (!doc.exists()) {
+            return Optional.empty();
+        }
+
+        IncomingEmail email = doc.toObject(IncomingEmail.class);
+        DocumentSnapshot contentDoc = contentFuture.get();
+        if (contentDoc.exists()) {
+            IncomingEmailContent content = contentDoc.toObject(IncomingEmailContent.class);
+            email.setBody(content.getBody());
+            email.setHtmlBody(content.getHtmlBody());
+        } else {
+            email.setBody(doc.getString("body"));
+            email.setHtmlBody(doc.getString("htmlBody"));
+        }
+        return Optional.of(email);
+    }
+
     /**
      * Find incoming email by ID
      */
@@ -320,19 +573,49 @@ public class IncomingEmailFirestoreRepository {
 
     /**
      * Search incoming emails by keywords (in-memory filtering)
+     * Header fields and the snippet are checked first; bodies are only read, from the content
+     * documents in batched gets, for the emails those do not match.
      */
     public List<IncomingEmail> searchByUserAndKeywords(String userId, String searchTerm)
             throws ExecutionException, InterruptedException {
-        List<IncomingEmail> allEmails = findByUser(userId);
         String searchLower = searchTerm.toLowerCase();
+        List<IncomingEmail> matches = new ArrayList<>();
+        List<IncomingEmail> unmatched = new ArrayList<>();
+
+        for (QueryDocumentSnapshot doc : getIncomingEmailsCollection(userId).get().get().getDocuments()) {
+            IncomingEmail email = doc.toObject(IncomingEmail.class);
+            if (containsIgnoreCase(email.getSubject(), searchLower)
+                    || containsIgnoreCase(email.getSnippet(), searchLower)
+                    || containsIgnoreCase(email.getSenderEmail(), searchLower)
+                    || containsIgnoreCase(email.getSenderName(), searchLower)
+                    || containsIgnoreCase(email.getKeywords(), searchLower)) {
+                matches.add(email);
+            } else if (containsIgnoreCase(doc.getString("body"), searchLower)) {
+                // Not migrated yet: the body is still on the main document
+                matches.add(email);
+            } else {
+                unmatched.add(email);
+            }
+        }
 
-        return allEmails.stream()
-                .filter(email -> (email.getSubject() != null && email.getSubject().toLowerCase().contains(searchLower))
-                        || (email.getBody() != null && email.getBody().toLowerCase().contains(searchLower))
-                        || (email.getSenderEmail() != null && email.getSenderEmail().toLowerCase().contains(searchLower))
-                        || (email.getSenderName() != null && email.getSenderName().toLowerCase().contains(searchLower))
-                        || (email.getKeywords() != null && email.getKeywords().toLowerCase().contains(searchLower)))
-                .collect(Collectors.toList());
+        for (int from = 0; from < unmatched.size(); from += CONTENT_GET_CHUNK) {
+            List<IncomingEmail> chunk = unmatched.subList(from, Math.min(from + CONTENT_GET_CHUNK, unmatched.size()));
+            DocumentReference[] refs = chunk.stream()
+                    .map(email -> getContentDocument(userId, email.getId()))
+                    .toArray(DocumentReference[]::new);
+            List<DocumentSnapshot> contents = firestore.getAll(refs).get();
+
+            for (int i = 0; i < chunk.size(); i++) {
+                if (containsIgnoreCase(contents.get(i).getString("body"), searchLower)) {
+                    matches.add(chunk.get(i));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean containsIgnoreCase(String text, String searchLower) {
+        return text != null && text.toLowerCase().contains(searchLower);
     }
 
     /**
@@ -356,11 +639,26 @@ public class IncomingEmailFirestoreRepository {
      */
     public long countByUserAndCategory(String userId, String category)
             throws ExecutionException, InterruptedException {
-        QuerySnapshot querySnapshot = getIncomingEmailsCollection(userId)
+        return getIncomingEmailsCollection(userId)
                 .whereEqualTo("category", category)
+                .count()
                 .get()
-                .get();
-        return querySnapshot.size();
+                .get()
+                .getCount();
+    }
+
+    /**
+     * Count unread incoming emails in a category
+     */
+    public long countUnreadByUserAndCategory(String userId, String category)
+            throws ExecutionException, InterruptedException {
+        return getIncomingEmailsCollection(userId)
+                .whereEqualTo("category", category)
+                .whereEqualTo("isRead", false)
+                .count()
+                .get()
+                .get()
+                .getCount();
     }
 
     /**
@@ -409,11 +707,25 @@ public class IncomingEmailFirestoreRepository {
     }
 
     /**
-     * Delete incoming email
+     * Delete incoming email and its body, taking it out of the inbox counters
      */
     public void delete(String userId, String emailId)
             throws ExecutionException, InterruptedException {
-        getIncomingEmailsCollection(userId).document(emailId).delete().get();
+        DocumentReference ref = getIncomingEmailsCollection(userId).document(emailId);
+        DocumentReference countersRef = countersRepository.getCountersDocument(userId);
+
+        firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            String category = snapshot.getString("category");
+            if (snapshot.exists() && category != null) {
+                boolean unread = !Boolean.TRUE.equals(snapshot.getBoolean("isRead"));
+                transaction.set(countersRef, InboxCountersFirestoreRepository.incrementFields(
+                        unread ? Map.of(category, -1L) : Map.of(), Map.of(category, -1L)), SetOptions.merge());
+            }
+            transaction.delete(getContentDocument(userId, emailId));
+            transaction.delete(ref);
+            return null;
+        }).get();
         log.debug("IncomingEmail deleted: userId={}, emailId={}", userId, emailId);
     }
 
@@ -446,4 +758,92 @@ public class IncomingEmailFirestoreRepository {
             throws ExecutionException, InterruptedException {
         return findByUserAndMessageId(userId, messageId).isPresent();
     }
+
+    /**
+     * Which of the given Gmail message ids are already ingested for a user
+     * Projection queries over messageId, IN_QUERY_LIMIT ids at a time, so only matching emails are read
+     */
+    public Set<String> findExistingMessageIds(String userId, Collection<String> messageIds)
+            throws ExecutionException, InterruptedException {
+        List<String> ids = new ArrayList<>(messageIds);
+        Set<String> existing = new HashSet<>();
+
+        for (int from = 0; from < ids.size(); from += IN_QUERY_LIMIT) {
+            List<String> chunk = ids.subList(from, Math.min(from + IN_QUERY_LIMIT, ids.size()));
+            for (QueryDocumentSnapshot doc : getIncomingEmailsCollection(userId)
+                    .whereIn("messageId", new ArrayList<>(chunk))
+                    .select("messageId")
+                    .get().get().getDocuments()) {
+                existing.add(doc.getString("messageId"));
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Move bodies stored on email documents (the layout before content/body existed) into
+     * content documents, filling in a snippet where one is missing.
+     * Migrated documents no longer match the query, so each page is simply the next
+     * unmigrated batch and the method is safe to run again. Returns the number migrated.
+     */
+    public int migrateContent(String userId, int pageSize, int snippetLength)
+            throws ExecutionException, InterruptedException {
+        Query query = getIncomingEmailsCollection(userId)
+                .whereNotEqualTo("body", null)
+                .limit(pageSize);
+
+        int migrated = 0;
+        List<QueryDocumentSnapshot> page;
+        do {
+            page = query.get().get().getDocuments();
+            FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+
+            for (QueryDocumentSnapshot doc : page) {
+                String body = doc.getString("body");
+                String htmlBody = doc.getString("htmlBody");
+                batch.set(getContentDocument(userId, doc.getId()),
+                        IncomingEmailContent.builder().body(body).htmlBody(htmlBody).build());
+
+                Map<String, Object> updates = new HashMap<>();
+                updates.put("body", FieldValue.delete());
+                updates.put("htmlBody", FieldValue.delete());
+                if (doc.getString("snippet") == null && body != null) {
+                    String collapsed = body.replaceAll("\\s+", " ").trim();
+                    updates.put("snippet", collapsed.length() > snippetLength
+                            ? collapsed.substring(0, snippetLength) : collapsed);
+                }
+                batch.update(doc.getReference(), updates);
+            }
+
+            batch.commit();
+            migrated += page.size();
+        } while (page.size() == pageSize);
+
+        if (migrated > 0) {
+            log.info("Moved {} incoming email bodies to content documents for user {}", migrated, userId);
+        }
+        return migrated;
+    }
+
+    /**
+     * Counters before and after a recount; previous is null if the user had none
+     */
+    public static final class CounterRecount {
+
+        private final InboxCounters previous;
+        private final InboxCounters counters;
+
+        private CounterRecount(InboxCounters previous, InboxCounters counters) {
+            this.previous = previous;
+            this.counters = counters;
+        }
+
+        public InboxCounters getPrevious() {
+            return previous;
+        }
+
+        public InboxCounters getCounters() {
+            return counters;
+        }
+    }
 }
@@ -0,0 +1,236 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.IncomingEmail;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterException;
+import com.google.cloud.firestore.BulkWriterOptions;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Buffered BulkWriter for ingested incoming emails
+ * A scan opens one session per user and adds emails as they are processed. Full buffers
+ * are handed to a BulkWriter, which batches the writes, ramps its rate up from
+ * app.incoming.ingest.initial-ops-per-second and retries failed documents on their own,
+ * so one bad write never fails its batch. At most max-in-flight emails are outstanding;
+ * add() blocks beyond that. An email counts as stored only once both its body and its
+ * email document are written. close() flushes the rest, waits for every write, adds the
+ * stored emails to the inbox counters in one increment and reports the message ids that
+ * could not be stored, so the caller can keep them for the next sync.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IncomingEmailIngestWriter {
+
+    // Transient failures worth another attempt; anything else fails the document immediately
+    private static final Set<Status.Code> RETRYABLE_CODES = Set.of(
+            Status.Code.ABORTED, Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED,
+            Status.Code.RESOURCE_EXHAUSTED, Status.Code.INTERNAL, Status.Code.UNKNOWN);
+
+    // How often a waiting session flushes, so email writes queued behind their bodies are sent
+    private static final long FLUSH_POLL_MS = 50;
+
+    private final Firestore firestore;
+    private final IncomingEmailFirestoreRepository incomingEmailRepository;
+    private final InboxCountersFirestoreRepository countersRepository;
+
+    @Value("${app.incoming.ingest.buffer-size:50}")
+    private int bufferSize;
+
+    @Value("${app.incoming.ingest.max-in-flight:200}")
+    private int maxInFlight;
+
+    @Value("${app.incoming.ingest.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.incoming.ingest.initial-ops-per-second:500}")
+    private int initialOpsPerSecond;
+
+    @Value("${app.incoming.ingest.max-ops-per-second:2000}")
+    private int maxOpsPerSecond;
+
+    /**
+     * Start a session for one user's scan. onStored runs, on a Firestore thread, for every
+     * email whose documents were written.
+     */
+    public Session open(String userId, Consumer<IncomingEmail> onStored) {
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(initialOpsPerSecond)
+                .setMaxOpsPerSecond(maxOpsPerSecond)
+                .build());
+
+        bulkWriter.addWriteErrorListener(error -> {
+            boolean retry = error.getFailedAttempts() < maxAttempts && RETRYABLE_CODES.contains(error.getStatus());
+            if (retry) {
+                log.debug("Retrying write of {} after {} attempts: {}",
+                        error.getDocumentReference().getPath(), error.getFailedAttempts(), error.getMessage());
+            }
+            return retry;
+        });
+
+        return new Session(userId, bulkWriter, onStored);
+    }
+
+    public class Session {
+
+        private final String userId;
+        private final BulkWriter bulkWriter;
+        private final Consumer<IncomingEmail> onStored;
+        private final List<IncomingEmail> buffer = new ArrayList<>();
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicInteger stored = new AtomicInteger();
+        private final Set<String> failedMessageIds = ConcurrentHashMap.newKeySet();
+        private final Map<String, Long> storedByCategory = new ConcurrentHashMap<>();
+
+        private Session(String userId, BulkWriter bulkWriter, Consumer<IncomingEmail> onStored) {
+            this.userId = userId;
+            this.bulkWriter = bulkWriter;
+            this.onStored = onStored;
+        }
+
+        /**
+         * Buffer an email, writing the buffer out once it is full
+         */
+        public void add(IncomingEmail email) throws InterruptedException {
+            buffer.add(email);
+            if (buffer.size() >= bufferSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Hand the buffered emails to the BulkWriter without waiting for them
+         */
+        public void flush() throws InterruptedException {
+            for (IncomingEmail email : buffer) {
+                // Send any partly filled batch while waiting, or the writes we wait on may never go out
+                while (!inFlight.tryAcquire(FLUSH_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    bulkWriter.flush();
+                }
+                write(email);
+            }
+            buffer.clear();
+            bulkWriter.flush();
+        }
+
+        /**
+         * Flush the rest, wait for every write, count the stored emails (all new, so all
+         * unread) and return how many were stored along with the ids that failed
+         */
+        public Result close() throws ExecutionException, InterruptedException {
+            try {
+                flush();
+                // Email documents are queued as their bodies complete; keep flushing until all have settled
+                while (!inFlight.tryAcquire(maxInFlight, FLUSH_POLL_MS, TimeUnit.MILLISECONDS)) {
+                    bulkWriter.flush();
+                }
+            } finally {
+                bulkWriter.close();
+            }
+
+            try {
+                countersRepository.increment(userId, storedByCategory, storedByCategory);
+            } catch (ExecutionException e) {
+                // The emails are stored; the reconcile job corrects the counts
+                log.warn("Failed to update inbox counters for user {}: {}", userId, e.getMessage());
+            }
+
+            if (!failedMessageIds.isEmpty()) {
+                log.warn("{} of {} incoming emails could not be stored for user {}",
+                        failedMessageIds.size(), stored.get() + failedMessageIds.size(), userId);
+            }
+            return new Result(stored.get(), failedMessageIds);
+        }
+
+        /**
+         * Drop the buffered emails after a failed scan. Writes already handed to the
+         * BulkWriter still complete; an interrupted caller does not wait for them, and they
+         * are left for the counter reconcile job to pick up.
+         */
+        public void abandon() {
+            buffer.clear();
+            try {
+                bulkWriter.close();
+            } catch (ExecutionException e) {
+                log.warn("Incoming email writes for user {} did not complete: {}", userId, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(IncomingEmail email) {
+            ApiFuture<WriteResult> future;
+            try {
+                future = incomingEmailRepository.saveWithContentInBulk(bulkWriter, userId, email);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                failedMessageIds.add(email.getMessageId());
+                log.error("Failed to queue incoming email {} for user {}: {}", email.getMessageId(), userId, e.getMessage(), e);
+                return;
+            }
+
+            ApiFutures.addCallback(future, new ApiFutureCallback<>() {
+                @Override
+                public void onSuccess(WriteResult result) {
+                    inFlight.release();
+                    stored.incrementAndGet();
+                    if (email.getCategory() != null) {
+                        storedByCategory.merge(email.getCategory(), 1L, Long::sum);
+                    }
+                    onStored.accept(email);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    inFlight.release();
+                    failedMessageIds.add(email.getMessageId());
+                    String reason = t instanceof BulkWriterException bwe
+                            ? bwe.getStatus() + " after " + bwe.getFailedAttempts() + " attempts"
+                            : t.getMessage();
+                    log.error("Failed to store incoming email {} for user {}: {}", email.getMessageId(), userId, reason);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
+    public static final class Result {
+
+        private final int stored;
+        private final Set<String> failedMessageIds;
+
+        private Result(int stored, Set<String> failedMessageIds) {
+            this.stored = stored;
+            this.failedMessageIds = Set.copyOf(failedMessageIds);
+        }
+
+        public int getStored() {
+            return stored;
+        }
+
+        // Messages whose email or body could not be written; none of them is visible as stored
+        public Set<String> getFailedMessageIds() {
+            return failedMessageIds;
+        }
+    }
+}
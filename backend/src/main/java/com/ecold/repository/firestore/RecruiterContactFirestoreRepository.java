@@ -2,8 +2,10 @@ package com.ecold.repository.firestore;
 
 import com.ecold.entity.RecruiterContact;
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -12,7 +14,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -60,6 +66,17 @@ public class RecruiterContactFirestoreRepository {
         return recruiter;
     }
 
+    /**
+     * Stage a field-level "contacted" update in an existing batch
+     */
+    public void markContactedInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String recruiterId) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("status", RecruiterContact.ContactStatus.CONTACTED.name());
+        updates.put("lastContactedAt", FieldValue.serverTimestamp());
+        updates.put("updatedAt", FieldValue.serverTimestamp());
+        batch.update(getRecruitersCollection(userId).document(recruiterId), updates);
+    }
+
     /**
      * Find recruiter by ID
      */
@@ -76,6 +93,41 @@ public class RecruiterContactFirestoreRepository {
         return Optional.empty();
     }
 
+    /**
+     * Find recruiter by ID without blocking, so independent reads can run concurrently
+     */
+    public ApiFuture<Optional<RecruiterContact>> findByIdAsync(String userId, String recruiterId) {
+        return ApiFutures.transform(
+                getRecruitersCollection(userId).document(recruiterId).get(),
+                doc -> Optional.ofNullable(doc.toObject(RecruiterContact.class)),
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Find many recruiters by ID with a single getAll round trip
+     * Missing recruiters are simply absent from the returned map
+     */
+    public Map<String, RecruiterContact> findAllById(String userId, Collection<String> recruiterIds)
+            throws ExecutionException, InterruptedException {
+        Map<String, RecruiterContact> recruiters = new LinkedHashMap<>();
+        if (recruiterIds == null || recruiterIds.isEmpty()) {
+            return recruiters;
+        }
+
+        CollectionReference collection = getRecruitersCollection(userId);
+        DocumentReference[] refs = recruiterIds.stream()
+                .distinct()
+                .map(collection::document)
+                .toArray(DocumentReference[]::new);
+
+        for (DocumentSnapshot doc : firestore.getAll(refs).get()) {
+            if (doc.exists()) {
+                recruiters.put(doc.getId(), doc.toObject(RecruiterContact.class));
+            }
+        }
+        return recruiters;
+    }
+
     /**
      * Find all recruiters for a user with pagination
      */
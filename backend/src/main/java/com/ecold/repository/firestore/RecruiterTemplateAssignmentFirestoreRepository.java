@@ -1,8 +1,11 @@
 package com.ecold.repository.firestore;
 
 import com.ecold.entity.RecruiterTemplateAssignment;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -10,7 +13,9 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -58,6 +63,79 @@ public class RecruiterTemplateAssignmentFirestoreRepository {
         return assignment;
     }
 
+    /**
+     * Stage an assignment write in an existing batch (assigns ID and createdAt for new assignments)
+     */
+    public RecruiterTemplateAssignment saveInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId,
+                                                   RecruiterTemplateAssignment assignment) {
+        CollectionReference assignments = getAssignmentsCollection(userId);
+
+        if (assignment.getId() == null || assignment.getId().isEmpty()) {
+            DocumentReference docRef = assignments.document();
+            assignment.setId(docRef.getId());
+            assignment.setCreatedAt(Timestamp.now());
+        }
+
+        assignment.setUserId(userId);
+        assignment.setUpdatedAt(Timestamp.now());
+        batch.set(assignments.document(assignment.getId()), assignment);
+        return assignment;
+    }
+
+    /**
+     * Atomically increment emailsSent and stamp lastEmailSentAt with a field-level update.
+     * Avoids the read-modify-write of save() so concurrent sends never lose an increment.
+     */
+    public void increment(String userId, String assignmentId, int emailsSent)
+            throws ExecutionException, InterruptedException {
+        getAssignmentsCollection(userId).document(assignmentId).update(counterUpdates(emailsSent)).get();
+        log.debug("RecruiterTemplateAssignment emailsSent incremented: userId={}, assignmentId={}, emailsSent=+{}",
+                userId, assignmentId, emailsSent);
+    }
+
+    /**
+     * Stage an atomic emailsSent increment in an existing batch, optionally moving the assignment to a new status
+     */
+    public void incrementInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String assignmentId,
+                                 int emailsSent, RecruiterTemplateAssignment.AssignmentStatus newStatus) {
+        Map<String, Object> updates = counterUpdates(emailsSent);
+        if (newStatus != null) {
+            updates.put("assignmentStatus", newStatus.name());
+        }
+        batch.update(getAssignmentsCollection(userId).document(assignmentId), updates);
+    }
+
+    /**
+     * Change only the assignment's status, leaving counters written by concurrent sends untouched
+     */
+    public void updateStatus(String userId, String assignmentId, RecruiterTemplateAssignment.AssignmentStatus status)
+            throws ExecutionException, InterruptedException {
+        getAssignmentsCollection(userId).document(assignmentId).update(statusUpdates(status)).get();
+    }
+
+    /**
+     * Stage a status-only update in an existing batch
+     */
+    public void updateStatusInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String assignmentId,
+                                    RecruiterTemplateAssignment.AssignmentStatus status) {
+        batch.update(getAssignmentsCollection(userId).document(assignmentId), statusUpdates(status));
+    }
+
+    private Map<String, Object> statusUpdates(RecruiterTemplateAssignment.AssignmentStatus status) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("assignmentStatus", status.name());
+        updates.put("updatedAt", FieldValue.serverTimestamp());
+        return updates;
+    }
+
+    private Map<String, Object> counterUpdates(int emailsSent) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("emailsSent", FieldValue.increment(emailsSent));
+        updates.put("lastEmailSentAt", FieldValue.serverTimestamp());
+        updates.put("updatedAt", FieldValue.serverTimestamp());
+        return updates;
+    }
+
     /**
      * Find assignment by ID
      */
@@ -120,6 +198,18 @@ public class RecruiterTemplateAssignmentFirestoreRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Find assignments by user and recruiter without blocking
+     */
+    public ApiFuture<List<RecruiterTemplateAssignment>> findByUserAndRecruiterAsync(String userId, String recruiterId) {
+        return ApiFutures.transform(
+                getAssignmentsCollection(userId).whereEqualTo("recruiterId", recruiterId).get(),
+                querySnapshot -> querySnapshot.getDocuments().stream()
+                        .map(doc -> doc.toObject(RecruiterTemplateAssignment.class))
+                        .collect(Collectors.toList()),
+                MoreExecutors.directExecutor());
+    }
+
     /**
      * Find assignments by user and template
      */
@@ -261,6 +351,24 @@ public class RecruiterTemplateAssignmentFirestoreRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Find assignments in a status whose last email was sent before a certain date
+     * Uses the (assignmentStatus, lastEmailSentAt) composite index
+     */
+    public List<RecruiterTemplateAssignment> findByUserAndStatusAndLastEmailSentBefore(
+            String userId, String status, Timestamp date)
+            throws ExecutionException, InterruptedException {
+        QuerySnapshot querySnapshot = getAssignmentsCollection(userId)
+                .whereEqualTo("assignmentStatus", status)
+                .whereLessThan("lastEmailSentAt", date)
+                .get()
+                .get();
+
+        return querySnapshot.getDocuments().stream()
+                .map(doc -> doc.toObject(RecruiterTemplateAssignment.class))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Find assignments where emails haven't been sent
      */
@@ -11,6 +11,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -25,6 +26,7 @@ import java.util.stream.Collectors;
 public class ScheduledEmailFirestoreRepository {
 
     private final Firestore firestore;
+    private final FirestoreBatchWriter batchWriter;
     private static final String USERS_COLLECTION = "users";
     private static final String SCHEDULED_EMAILS_COLLECTION = "scheduled_emails";
 
@@ -57,6 +59,54 @@ public class ScheduledEmailFirestoreRepository {
         return email;
     }
 
+    /**
+     * Save many scheduled emails using chunked WriteBatch commits
+     */
+    public List<ScheduledEmail> saveAll(String userId, List<ScheduledEmail> emails)
+            throws ExecutionException, InterruptedException {
+        FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+        for (ScheduledEmail email : emails) {
+            saveInBatch(batch, userId, email);
+        }
+        batch.commit();
+
+        log.debug("ScheduledEmails saved in batch: userId={}, count={}", userId, emails.size());
+        return emails;
+    }
+
+    /**
+     * Stage a scheduled email write in an existing batch (assigns ID and createdAt for new emails)
+     */
+    public ScheduledEmail saveInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, ScheduledEmail email) {
+        CollectionReference emails = getScheduledEmailsCollection(userId);
+
+        if (email.getId() == null || email.getId().isEmpty()) {
+            DocumentReference docRef = emails.document();
+            email.setId(docRef.getId());
+            email.setCreatedAt(Timestamp.now());
+        }
+
+        email.setUserId(userId);
+        batch.set(emails.document(email.getId()), email);
+        return email;
+    }
+
+    /**
+     * Persist the send slots assigned by the smoother.
+     * Only plannedTime is written, so a cancel or edit made meanwhile is not overwritten.
+     */
+    public void updatePlannedTimes(String userId, List<ScheduledEmail> emails)
+            throws ExecutionException, InterruptedException {
+        FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+        CollectionReference collection = getScheduledEmailsCollection(userId);
+        for (ScheduledEmail email : emails) {
+            batch.update(collection.document(email.getId()), Map.of("plannedTime", email.getPlannedTime()));
+        }
+        batch.commit();
+
+        log.debug("Planned times saved: userId={}, count={}", userId, emails.size());
+    }
+
     /**
      * Find scheduled email by ID
      */
@@ -155,6 +205,36 @@ public class ScheduledEmailFirestoreRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * One page of FAILED emails across all users whose next retry is due, oldest first.
+     * A collection-group query, so the retry worker never has to walk the users.
+     * Pass the last email of the previous page as after (null for the first page).
+     */
+    public List<ScheduledEmail> findRetryDue(Timestamp currentTime, ScheduledEmail after, int limit)
+            throws ExecutionException, InterruptedException {
+        Query query = firestore.collectionGroup(SCHEDULED_EMAILS_COLLECTION)
+                .whereEqualTo("status", ScheduledEmail.Status.FAILED.name())
+                .whereLessThanOrEqualTo("nextAttemptAt", currentTime)
+                .orderBy("nextAttemptAt", Query.Direction.ASCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.ASCENDING)
+                .limit(limit);
+
+        if (after != null) {
+            // Collection-group cursors need the full document path, not just the ID
+            query = query.startAfter(after.getNextAttemptAt(),
+                    getScheduledEmailsCollection(after.getUserId()).document(after.getId()));
+        }
+
+        return query.get().get().getDocuments().stream()
+                .map(doc -> {
+                    ScheduledEmail email = doc.toObject(ScheduledEmail.class);
+                    // Owner comes from the path, in case the stored userId field is missing
+                    email.setUserId(doc.getReference().getParent().getParent().getId());
+                    return email;
+                })
+                .collect(Collectors.toList());
+    }
+
     /**
      * Find scheduled emails by recipient email
      */
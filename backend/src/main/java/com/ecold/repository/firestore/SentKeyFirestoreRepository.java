@@ -0,0 +1,152 @@
+package com.ecold.repository.firestore;
+
+import com.ecold.entity.SentKey;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore Repository for SentKey idempotency records
+ * Path: /users/{userId}/sent_keys/{keyHash}
+ * Keys are hashed into document IDs so arbitrary caller keys are valid paths.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class SentKeyFirestoreRepository {
+
+    private final Firestore firestore;
+    private static final String USERS_COLLECTION = "users";
+    private static final String SENT_KEYS_COLLECTION = "sent_keys";
+
+    /**
+     * Get sent keys collection reference for a user
+     */
+    private CollectionReference getSentKeysCollection(String userId) {
+        return firestore.collection(USERS_COLLECTION)
+                .document(userId)
+                .collection(SENT_KEYS_COLLECTION);
+    }
+
+    private DocumentReference document(String userId, String key) {
+        return getSentKeysCollection(userId).document(documentId(key));
+    }
+
+    /**
+     * Claim a key in a transaction.
+     * Returns empty if the key is now PENDING for this caller, or the existing record that blocks it.
+     * An existing PENDING claim is never taken over here, however old: see reclaim.
+     */
+    public Optional<SentKey> claim(String userId, String key)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = document(userId, key);
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+
+            if (snapshot.exists()) {
+                return Optional.of(snapshot.toObject(SentKey.class));
+            }
+
+            transaction.set(ref, pendingClaim(key));
+            return Optional.<SentKey>empty();
+        }).get();
+    }
+
+    /**
+     * Take over a PENDING claim once it is known that its attempt never reached the provider.
+     * Only succeeds if the claim is still the one that was checked (same claimedAt); otherwise
+     * returns the record that now blocks it.
+     */
+    public Optional<SentKey> reclaim(String userId, String key, Timestamp checkedClaimedAt)
+            throws ExecutionException, InterruptedException {
+        DocumentReference ref = document(userId, key);
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+
+            if (snapshot.exists()) {
+                SentKey existing = snapshot.toObject(SentKey.class);
+                boolean unchanged = existing.getStatusEnum() == SentKey.Status.PENDING
+                        && Objects.equals(existing.getClaimedAt(), checkedClaimedAt);
+                if (!unchanged) {
+                    return Optional.of(existing);
+                }
+            }
+
+            transaction.set(ref, pendingClaim(key));
+            return Optional.<SentKey>empty();
+        }).get();
+    }
+
+    /**
+     * Mark a claim whose outcome could not be established, so it blocks sends until resolved
+     */
+    public void markUnknown(String userId, String key) throws ExecutionException, InterruptedException {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("key", key);
+        fields.put("status", SentKey.Status.UNKNOWN.name());
+        document(userId, key).set(fields, SetOptions.merge()).get();
+    }
+
+    /**
+     * Mark a claimed key as sent
+     */
+    public void markSent(String userId, String key, String messageId)
+            throws ExecutionException, InterruptedException {
+        document(userId, key).set(sentFields(key, messageId), SetOptions.merge()).get();
+    }
+
+    /**
+     * Stage marking a claimed key as sent in an existing batch, alongside the status update it guards
+     */
+    public void markSentInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String key, String messageId) {
+        batch.set(document(userId, key), sentFields(key, messageId), SetOptions.merge());
+    }
+
+    /**
+     * Drop a claim so the send can be retried
+     */
+    public void delete(String userId, String key) throws ExecutionException, InterruptedException {
+        document(userId, key).delete().get();
+        log.debug("SentKey released: userId={}, key={}", userId, key);
+    }
+
+    private static SentKey pendingClaim(String key) {
+        return SentKey.builder()
+                .key(key)
+                .status(SentKey.Status.PENDING.name())
+                .claimedAt(Timestamp.now())
+                .build();
+    }
+
+    private static Map<String, Object> sentFields(String key, String messageId) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("key", key);
+        fields.put("status", SentKey.Status.SENT.name());
+        fields.put("messageId", messageId);
+        fields.put("sentAt", FieldValue.serverTimestamp());
+        return fields;
+    }
+
+    private static String documentId(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
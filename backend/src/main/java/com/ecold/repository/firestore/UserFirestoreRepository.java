@@ -167,6 +167,28 @@ public class UserFirestoreRepository {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Find users signed in with the given provider whose access token is still valid at validAt
+     * Uses the provider + tokenExpiresAt composite index instead of scanning every user;
+     * users without a token or without a recorded expiry are not returned
+     */
+    public List<User> findByProviderWithValidAccessToken(String provider, Timestamp validAt)
+            throws ExecutionException, InterruptedException {
+        ApiFuture<QuerySnapshot> query = firestore.collection(COLLECTION_NAME)
+                .whereEqualTo("provider", provider)
+                .whereGreaterThan("tokenExpiresAt", validAt)
+                .get();
+
+        return query.get().getDocuments().stream()
+                .map(doc -> {
+                    User user = doc.toObject(User.class);
+                    decryptUserTokens(user);
+                    return user;
+                })
+                .filter(user -> user.getAccessToken() != null && !user.getAccessToken().isEmpty())
+                .collect(Collectors.toList());
+    }
+
     /**
      * Delete user by ID
      */
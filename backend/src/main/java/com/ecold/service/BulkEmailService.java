@@ -0,0 +1,25 @@
+package com.ecold.service;
+
+import com.ecold.dto.BulkSendResult;
+import com.ecold.dto.BulkTemplateSendRequest;
+import com.ecold.entity.User;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface BulkEmailService {
+
+    /**
+     * Send one template to many recruiters.
+     * Each per-recipient result is passed to the sink as soon as it completes,
+     * always from the calling thread; the returned value is the summary.
+     */
+    BulkSendResult sendTemplateBulk(BulkTemplateSendRequest request, User user, Consumer<BulkSendResult> sink);
+
+    /**
+     * Start a bulk send on the bulk run pool and return at once.
+     * Results are passed to the sink from the run thread and the future completes with the summary.
+     * The run does not depend on the caller, so it finishes even if whoever is streaming its results goes away.
+     */
+    CompletableFuture<BulkSendResult> startTemplateBulk(BulkTemplateSendRequest request, User user, Consumer<BulkSendResult> sink);
+}
@@ -0,0 +1,20 @@
+package com.ecold.service;
+
+import com.ecold.dto.CategoryPrediction;
+import com.ecold.entity.IncomingEmail;
+
+import java.util.Optional;
+
+public interface EmailClassifierService {
+
+    /**
+     * The user's trained model's category, or empty while the user has too few corrections
+     * or the model is not confident enough to overrule the keyword rules
+     */
+    Optional<CategoryPrediction> predict(String userId, String subject, String body, String senderEmail);
+
+    /**
+     * Store a user's correction and train their model on it
+     */
+    void recordCorrection(String userId, IncomingEmail email, IncomingEmail.EmailCategory category);
+}
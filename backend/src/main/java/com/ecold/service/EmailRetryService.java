@@ -0,0 +1,9 @@
+package com.ecold.service;
+
+public interface EmailRetryService {
+
+    /**
+     * Periodic job: hand every due retry to the retry pool
+     */
+    void processRetries();
+}
@@ -0,0 +1,17 @@
+package com.ecold.service;
+
+import com.ecold.entity.User;
+
+public interface FollowUpService {
+
+    /**
+     * Periodic job: schedule follow-ups for every user
+     */
+    void processFollowUps();
+
+    /**
+     * Schedule follow-up emails for one user's assignments whose last send is older than the delay.
+     * Returns the number of follow-ups scheduled.
+     */
+    int processUserFollowUps(User user);
+}
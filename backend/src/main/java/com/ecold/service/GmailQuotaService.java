@@ -0,0 +1,36 @@
+package com.ecold.service;
+
+import com.ecold.dto.GmailQuotaResponse;
+
+import java.util.OptionalLong;
+
+public interface GmailQuotaService {
+
+    /**
+     * Reserve quota for one Gmail send.
+     * Returns the minute the send was counted in, to release it against, or empty,
+     * reserving nothing, if the send would exceed the daily caps.
+     */
+    OptionalLong tryReserveSend(String userId);
+
+    /**
+     * Give back the send reserved in the given minute for a message Gmail did not accept.
+     * The API units it used stay spent.
+     */
+    void releaseSend(String userId, long reservedMinute);
+
+    /**
+     * Record API units spent by calls other than sends
+     */
+    void recordUnits(String userId, long units);
+
+    /**
+     * Whether the given number of sends still fits in the trailing 24 hours
+     */
+    boolean hasCapacity(String userId, long sends);
+
+    /**
+     * Usage and remaining capacity for the trailing 24 hours
+     */
+    GmailQuotaResponse getQuota(String userId);
+}
@@ -5,15 +5,19 @@ import com.ecold.entity.User;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
+import java.util.Map;
 
 public interface IncomingEmailService {
     void scanIncomingEmails(User user);
     IncomingEmail.EmailCategory categorizeEmail(String subject, String body, String senderEmail);
     Page<IncomingEmail> getIncomingEmails(User user, int page, int size);
+    IncomingEmail getIncomingEmail(User user, String emailId);
     Page<IncomingEmail> getIncomingEmailsByCategory(User user, IncomingEmail.EmailCategory category, int page, int size);
     List<IncomingEmail> getUnreadEmails(User user);
-    void markAsRead(Long emailId);
+    IncomingEmail markAsRead(User user, String emailId, boolean read);
+    IncomingEmail recategorizeEmail(User user, String emailId, IncomingEmail.EmailCategory category);
     Long getUnreadCount(User user, IncomingEmail.EmailCategory category);
+    Map<IncomingEmail.EmailCategory, Long> getUnreadCounts(User user);
     void processIncomingEmails();
     void refreshUserEmails(User user);
 }
\ No newline at end of file
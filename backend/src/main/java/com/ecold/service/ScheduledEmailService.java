@@ -1,5 +1,7 @@
 package com.ecold.service;
 
+import com.ecold.dto.BatchScheduleRequest;
+import com.ecold.dto.BatchScheduleResponse;
 import com.ecold.dto.EmailRequest;
 import com.ecold.entity.ScheduledEmail;
 import com.ecold.entity.User;
@@ -13,9 +15,24 @@ public interface ScheduledEmailService {
      */
     ScheduledEmail scheduleEmail(EmailRequest emailRequest, User user, LocalDateTime scheduleTime);
 
+    /**
+     * Schedule one template email per recruiter inside a send window.
+     * The template is fetched once, recruiters with a single getAll, and all
+     * scheduled emails are written in chunked batch commits.
+     * In compact mode only template references and placeholder values are stored.
+     * Throws IllegalArgumentException for an invalid window, stagger or template.
+     */
+    BatchScheduleResponse scheduleBatch(BatchScheduleRequest request, User user);
+
     /**
      * Process and send all due scheduled emails
      * This method is called periodically by the scheduler
      */
     void processScheduledEmails();
+
+    /**
+     * Resend a FAILED scheduled email whose retry is due.
+     * On another failure the next attempt is scheduled by the retry policy.
+     */
+    void retryScheduledEmail(ScheduledEmail scheduledEmail, User user);
 }
\ No newline at end of file
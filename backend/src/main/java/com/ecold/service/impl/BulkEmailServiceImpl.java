@@ -0,0 +1,490 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.BulkSendResult;
+import com.ecold.dto.BulkTemplateSendRequest;
+import com.ecold.dto.EmailRequest;
+import com.ecold.dto.EmailResponse;
+import com.ecold.entity.EmailTemplate;
+import com.ecold.entity.RecruiterContact;
+import com.ecold.entity.RecruiterTemplateAssignment;
+import com.ecold.entity.Resume;
+import com.ecold.entity.ScheduledEmail;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
+import com.ecold.repository.firestore.RecruiterContactFirestoreRepository;
+import com.ecold.repository.firestore.RecruiterTemplateAssignmentFirestoreRepository;
+import com.ecold.repository.firestore.ResumeFirestoreRepository;
+import com.ecold.repository.firestore.ScheduledEmailFirestoreRepository;
+import com.ecold.service.BulkEmailService;
+import com.ecold.service.EmailService;
+import com.ecold.util.TemplatePlaceholders;
+import com.google.cloud.Timestamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk template send
+ * The template is compiled once, recruiters are fetched with chunked getAll calls and
+ * rendering + sending fans out over the priority dispatcher at the request's priority.
+ * Each recipient books a slot with its domain's throttle. Recipients whose domain is
+ * saturated are stored as scheduled emails for their slot (Gmail users) instead of
+ * holding up the run; other providers cannot schedule, so their run waits for the slot.
+ * Results are handed back as they complete, and the bookkeeping for the whole run is
+ * committed in one chunked batch. Follow-up moves are left to the follow-up engine.
+ * Runs started with startTemplateBulk execute on their own pool, independent of any HTTP request.
+ */
+@Slf4j
+@Service
+public class BulkEmailServiceImpl implements BulkEmailService {
+
+    private final EmailService emailService;
+    private final EmailTemplateFirestoreRepository templateRepository;
+    private final RecruiterContactFirestoreRepository recruiterRepository;
+    private final RecruiterTemplateAssignmentFirestoreRepository assignmentRepository;
+    private final ResumeFirestoreRepository resumeRepository;
+    private final ScheduledEmailFirestoreRepository scheduledEmailRepository;
+    private final CompiledTemplateCache templateCache;
+    private final FirestoreBatchWriter batchWriter;
+    private final PriorityDispatcher dispatcher;
+    private final DomainThrottle domainThrottle;
+
+    // Sends of one run allowed on the dispatcher at a time (twice this many queued)
+    @Value("${app.email.bulk.concurrency:4}")
+    private int concurrency;
+
+    @Value("${app.email.bulk.fetch-chunk-size:100}")
+    private int fetchChunkSize;
+
+    @Value("${app.email.bulk.max-concurrent-runs:4}")
+    private int maxConcurrentRuns;
+
+    private ExecutorService runExecutor;
+
+    public BulkEmailServiceImpl(@Qualifier("emailServiceImpl") EmailService emailService,
+                                EmailTemplateFirestoreRepository templateRepository,
+                                RecruiterContactFirestoreRepository recruiterRepository,
+                                RecruiterTemplateAssignmentFirestoreRepository assignmentRepository,
+                                ResumeFirestoreRepository resumeRepository,
+                                ScheduledEmailFirestoreRepository scheduledEmailRepository,
+                                CompiledTemplateCache templateCache,
+                                FirestoreBatchWriter batchWriter,
+                                PriorityDispatcher dispatcher,
+                                DomainThrottle domainThrottle) {
+        this.emailService = emailService;
+        this.templateRepository = templateRepository;
+        this.recruiterRepository = recruiterRepository;
+        this.assignmentRepository = assignmentRepository;
+        this.resumeRepository = resumeRepository;
+        this.scheduledEmailRepository = scheduledEmailRepository;
+        this.templateCache = templateCache;
+        this.batchWriter = batchWriter;
+        this.dispatcher = dispatcher;
+        this.domainThrottle = domainThrottle;
+    }
+
+    @PostConstruct
+    void init() {
+        runExecutor = Executors.newFixedThreadPool(maxConcurrentRuns);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runExecutor.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<BulkSendResult> startTemplateBulk(BulkTemplateSendRequest request, User user,
+                                                               Consumer<BulkSendResult> sink) {
+        return CompletableFuture.supplyAsync(() -> sendTemplateBulk(request, user, sink), runExecutor);
+    }
+
+    @Override
+    public BulkSendResult sendTemplateBulk(BulkTemplateSendRequest request, User user, Consumer<BulkSendResult> sink) {
+        long startTime = System.currentTimeMillis();
+        List<String> recruiterIds = new ArrayList<>(new LinkedHashSet<>(request.getRecruiterIds()));
+
+        EmailTemplate template;
+        Resume resume;
+        try {
+            template = templateRepository.findById(user.getId(), request.getTemplateId())
+                    .orElseThrow(() -> new RuntimeException("Template not found: " + request.getTemplateId()));
+
+            // Read once for the run; every send reuses it instead of reading the document again
+            resume = request.getResumeId() != null
+                    ? resumeRepository.findById(user.getId(), request.getResumeId())
+                            .orElseThrow(() -> new RuntimeException("Resume not found: " + request.getResumeId()))
+                    : null;
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to load template " + request.getTemplateId() + " or its resume", e);
+        }
+
+        CompiledTemplateCache.CompiledEmail compiled = templateCache.compile(template);
+        log.info("Bulk send of template {} to {} recruiters for user {}", template.getId(), recruiterIds.size(), user.getEmail());
+
+        EmailRequest.Priority priority = request.getPriority() != null ? request.getPriority() : EmailRequest.Priority.NORMAL;
+        CompletionService<BulkSendResult> completionService = new ExecutorCompletionService<>(dispatcher.executor(priority));
+        Dispatch run = new Dispatch(completionService, sink);
+
+        // Gmail users can have throttled recipients scheduled; other providers wait for the slot in the run
+        boolean deferToSchedule = user.getProviderEnum() == User.Provider.GOOGLE;
+        List<ScheduledEmail> deferred = new ArrayList<>();
+        PriorityQueue<Waiting> waiting = new PriorityQueue<>(Comparator.comparing((Waiting w) -> w.slot));
+
+        try {
+            for (int from = 0; from < recruiterIds.size(); from += fetchChunkSize) {
+                List<String> chunk = recruiterIds.subList(from, Math.min(from + fetchChunkSize, recruiterIds.size()));
+                Map<String, RecruiterContact> recruiters = fetchChunk(user, chunk);
+
+                for (String recruiterId : chunk) {
+                    RecruiterContact recruiter = recruiters.get(recruiterId);
+
+                    if (recruiter == null || recruiter.getEmail() == null || recruiter.getEmail().isBlank()) {
+                        sink.accept(BulkSendResult.failure(recruiterId, null, "RECRUITER_NOT_FOUND",
+                                "Recruiter not found or has no email address"));
+                        run.failed++;
+                        continue;
+                    }
+
+                    Instant now = Instant.now();
+                    Instant slot = domainThrottle.reserve(recruiter.getEmail(), now);
+                    if (!slot.isAfter(now)) {
+                        run.submit(() -> send(compiled, resume, recruiter, user, request), maxInFlight());
+                    } else if (deferToSchedule) {
+                        deferred.add(deferredEmail(compiled, template.getId(), recruiter, slot, user, request));
+                    } else {
+                        waiting.add(new Waiting(slot, recruiter));
+                    }
+                }
+                run.pollDone();
+            }
+
+            // Only throttled recipients of non-Gmail users are left: send each once its booked slot arrives
+            while (!waiting.isEmpty()) {
+                long waitNanos = Duration.between(Instant.now(), waiting.peek().slot).toNanos();
+                if (waitNanos > 0) {
+                    run.awaitDone(waitNanos);
+                    continue;
+                }
+                RecruiterContact recruiter = waiting.poll().recruiter;
+                run.submit(() -> send(compiled, resume, recruiter, user, request), maxInFlight());
+            }
+
+            run.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Bulk send interrupted for user {}, {} sends still in flight and {} waiting",
+                    user.getEmail(), run.inFlight, waiting.size());
+        } finally {
+            recordBookkeeping(template.getId(), run.sentRecruiterIds, user);
+            scheduleDeferred(deferred, user, run);
+        }
+
+        BulkSendResult summary = BulkSendResult.builder()
+                .type(BulkSendResult.TYPE_SUMMARY)
+                .success(run.failed == 0)
+                .total(recruiterIds.size())
+                .sent(run.sentRecruiterIds.size())
+                .failed(run.failed)
+                .deferred(run.deferred)
+                .durationMs(System.currentTimeMillis() - startTime)
+                .build();
+
+        log.info("Bulk send of template {} finished for user {}: {} sent, {} failed, {} deferred in {}ms",
+                template.getId(), user.getEmail(), summary.getSent(), summary.getFailed(), summary.getDeferred(),
+                summary.getDurationMs());
+        return summary;
+    }
+
+    private Map<String, RecruiterContact> fetchChunk(User user, List<String> chunk) {
+        try {
+            return recruiterRepository.findAllById(user.getId(), chunk);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to fetch recruiters", e);
+        }
+    }
+
+    /**
+     * Scheduled email for a recipient whose domain is throttled, planned for the slot it booked.
+     * It carries the run's idempotency key, so a repeated run cannot send it a second time.
+     */
+    private ScheduledEmail deferredEmail(CompiledTemplateCache.CompiledEmail compiled, String templateId,
+                                         RecruiterContact recruiter, Instant slot, User user,
+                                         BulkTemplateSendRequest request) {
+        Map<String, String> values = TemplatePlaceholders.valuesFor(recruiter, user, request.getAdditionalData());
+        Timestamp slotTime = Timestamp.ofTimeSecondsAndNanos(slot.getEpochSecond(), slot.getNano());
+
+        return ScheduledEmail.builder()
+                .userId(user.getId())
+                .recipientEmail(recruiter.getEmail())
+                .subject(compiled.renderSubject(values))
+                .body(compiled.renderBody(values))
+                .scheduleTime(slotTime)
+                .plannedTime(slotTime)
+                .templateId(templateId)
+                .recruiterId(recruiter.getId())
+                .isHtml(false)
+                .priority((request.getPriority() != null ? request.getPriority() : EmailRequest.Priority.NORMAL).name())
+                .resumeId(request.getResumeId())
+                .idempotencyKey(request.getCampaignId() != null
+                        ? SendIdempotencyGuard.campaignKey(request.getCampaignId(), recruiter.getId())
+                        : null)
+                .status(ScheduledEmail.Status.SCHEDULED.name())
+                .build();
+    }
+
+    /**
+     * Store the deferred recipients in one chunked batch and report each as scheduled
+     */
+    private void scheduleDeferred(List<ScheduledEmail> deferred, User user, Dispatch run) {
+        if (deferred.isEmpty()) {
+            return;
+        }
+
+        try {
+            scheduledEmailRepository.saveAll(user.getId(), deferred);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Failed to schedule {} throttled recipients for user {}: {}", deferred.size(), user.getEmail(), e.getMessage(), e);
+            for (ScheduledEmail email : deferred) {
+                run.sink.accept(BulkSendResult.failure(email.getRecruiterId(), email.getRecipientEmail(),
+                        "DEFER_FAILED", "Recipient's domain was throttled and scheduling it failed"));
+                run.failed++;
+            }
+            return;
+        }
+
+        for (ScheduledEmail email : deferred) {
+            Timestamp slot = email.getPlannedTime();
+            run.sink.accept(BulkSendResult.builder()
+                    .type(BulkSendResult.TYPE_RESULT)
+                    .recruiterId(email.getRecruiterId())
+                    .recipientEmail(email.getRecipientEmail())
+                    .success(true)
+                    .scheduledEmailId(email.getId())
+                    .deferredUntil(LocalDateTime.ofInstant(
+                            Instant.ofEpochSecond(slot.getSeconds(), slot.getNanos()), ZoneId.systemDefault()))
+                    .build());
+            run.deferred++;
+        }
+        log.info("Scheduled {} throttled recipients for user {}, last at {}",
+                deferred.size(), user.getEmail(), deferred.get(deferred.size() - 1).getPlannedTime());
+    }
+
+    /**
+     * A throttled recipient waiting in the run for its booked slot
+     */
+    private static final class Waiting {
+
+        private final Instant slot;
+        private final RecruiterContact recruiter;
+
+        private Waiting(Instant slot, RecruiterContact recruiter) {
+            this.slot = slot;
+            this.recruiter = recruiter;
+        }
+    }
+
+    private int maxInFlight() {
+        return concurrency * 2;
+    }
+
+    /**
+     * In-flight sends and results of one bulk run
+     */
+    private class Dispatch {
+
+        private final CompletionService<BulkSendResult> completionService;
+        private final Consumer<BulkSendResult> sink;
+        private final Set<String> sentRecruiterIds = new LinkedHashSet<>();
+        private int inFlight;
+        private int failed;
+        private int deferred;
+
+        Dispatch(CompletionService<BulkSendResult> completionService, Consumer<BulkSendResult> sink) {
+            this.completionService = completionService;
+            this.sink = sink;
+        }
+
+        /**
+         * Submit a send, first waiting for one to finish if the in-flight bound is reached
+         */
+        void submit(Callable<BulkSendResult> send, int maxInFlight) throws InterruptedException {
+            if (inFlight >= maxInFlight) {
+                record(completionService.take());
+            }
+            completionService.submit(send);
+            inFlight++;
+        }
+
+        /**
+         * Stream whatever has already finished
+         */
+        void pollDone() {
+            Future<BulkSendResult> done;
+            while ((done = completionService.poll()) != null) {
+                record(done);
+            }
+        }
+
+        /**
+         * Wait up to waitNanos for a booked slot, streaming results meanwhile
+         */
+        void awaitDone(long waitNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + waitNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                Future<BulkSendResult> done = inFlight > 0
+                        ? completionService.poll(remaining, TimeUnit.NANOSECONDS)
+                        : null;
+                if (done == null) {
+                    if (inFlight == 0) {
+                        TimeUnit.NANOSECONDS.sleep(remaining);
+                    }
+                    return;
+                }
+                record(done);
+            }
+        }
+
+        void drain() throws InterruptedException {
+            while (inFlight > 0) {
+                record(completionService.take());
+            }
+        }
+
+        /**
+         * Hand a completed send to the sink
+         */
+        private void record(Future<BulkSendResult> future) {
+            inFlight--;
+            BulkSendResult result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                result = BulkSendResult.failure(null, null, "SEND_FAILED", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = BulkSendResult.failure(null, null, "SEND_FAILED", "Interrupted");
+            }
+
+            if (result.isSuccess()) {
+                sentRecruiterIds.add(result.getRecruiterId());
+            } else {
+                failed++;
+            }
+            sink.accept(result);
+        }
+    }
+
+    private BulkSendResult send(CompiledTemplateCache.CompiledEmail compiled, Resume resume, RecruiterContact recruiter,
+                                User user, BulkTemplateSendRequest request) {
+        try {
+            Map<String, String> values = TemplatePlaceholders.valuesFor(recruiter, user, request.getAdditionalData());
+
+            // No template/recruiter IDs on the request: bookkeeping is batched once per run
+            EmailRequest emailRequest = EmailRequest.builder()
+                    .to(recruiter.getEmail())
+                    .subject(compiled.renderSubject(values))
+                    .body(compiled.renderBody(values))
+                    .isHtml(false)
+                    .resumeId(request.getResumeId())
+                    .resume(resume)
+                    .idempotencyKey(request.getCampaignId() != null
+                            ? SendIdempotencyGuard.campaignKey(request.getCampaignId(), recruiter.getId())
+                            : null)
+                    .priority(request.getPriority() != null ? request.getPriority() : EmailRequest.Priority.NORMAL)
+                    .build();
+
+            EmailResponse response = emailService.sendEmail(emailRequest, user);
+
+            return BulkSendResult.builder()
+                    .type(BulkSendResult.TYPE_RESULT)
+                    .recruiterId(recruiter.getId())
+                    .recipientEmail(recruiter.getEmail())
+                    .success(response.isSuccess())
+                    .messageId(response.getMessageId())
+                    .errorCode(response.getErrorCode())
+                    .errorDetail(response.getErrorDetail())
+                    .build();
+        } catch (Exception e) {
+            log.error("Bulk send to {} failed: {}", recruiter.getEmail(), e.getMessage(), e);
+            return BulkSendResult.failure(recruiter.getId(), recruiter.getEmail(), "SEND_FAILED", e.getMessage());
+        }
+    }
+
+    /**
+     * Template counters, recruiter status and assignment counts for every successful send, in one chunked batch
+     */
+    private void recordBookkeeping(String templateId, Set<String> sentRecruiterIds, User user) {
+        if (sentRecruiterIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+
+            templateRepository.incrementInBatch(batch, user.getId(), templateId, sentRecruiterIds.size(), sentRecruiterIds.size());
+
+            for (String recruiterId : sentRecruiterIds) {
+                recruiterRepository.markContactedInBatch(batch, user.getId(), recruiterId);
+            }
+
+            List<RecruiterTemplateAssignment> assignments = assignmentRepository.findByUserAndTemplateAndStatus(
+                    user.getId(), templateId, RecruiterTemplateAssignment.AssignmentStatus.ACTIVE.name());
+
+            Map<String, RecruiterTemplateAssignment> byRecruiter = assignments.stream()
+                    .collect(Collectors.toMap(RecruiterTemplateAssignment::getRecruiterId, a -> a, (a, b) -> a));
+
+            for (String recruiterId : sentRecruiterIds) {
+                RecruiterTemplateAssignment assignment = byRecruiter.get(recruiterId);
+                if (assignment != null) {
+                    assignmentRepository.incrementInBatch(batch, user.getId(), assignment.getId(), 1, null);
+                }
+            }
+
+            int writes = batch.commit();
+            log.debug("Bulk send bookkeeping committed: template={}, writes={}", templateId, writes);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Bulk send bookkeeping failed for template {}: {}", templateId, e.getMessage(), e);
+        }
+    }
+}
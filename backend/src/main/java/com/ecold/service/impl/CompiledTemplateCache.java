@@ -0,0 +1,136 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.EmailTemplate;
+import com.ecold.exception.TemplateVersionMismatchException;
+import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.util.CompiledTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Size-bounded LRU cache of compiled templates, keyed by user, template and version.
+ * A version only ever maps to one subject/body, so entries never need invalidating.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompiledTemplateCache {
+
+    private final EmailTemplateFirestoreRepository templateRepository;
+
+    @Value("${app.email.template-cache-size:500}")
+    private int maxEntries;
+
+    private Map<String, CompiledEmail> cache;
+
+    /**
+     * Compile a template that has already been loaded and cache it under its current version
+     */
+    public CompiledEmail compile(EmailTemplate template) {
+        String key = key(template.getUserId(), template.getId(), versionOf(template));
+        CompiledEmail compiled = cache.get(key);
+        if (compiled == null) {
+            compiled = new CompiledEmail(template);
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Get the compiled template for a stored version, loading it from Firestore on a miss.
+     * Pending emails are rendered out before their template changes, so a template that has
+     * moved past the stored version means this email missed that step; it is not rendered
+     * with content it was never scheduled with.
+     */
+    public CompiledEmail get(String userId, String templateId, Long version)
+            throws ExecutionException, InterruptedException {
+        CompiledEmail compiled = version != null ? cache.get(key(userId, templateId, version)) : null;
+        if (compiled != null) {
+            return compiled;
+        }
+
+        EmailTemplate template = templateRepository.findById(userId, templateId)
+                .orElseThrow(() -> new RuntimeException("Template not found: " + templateId));
+
+        if (version != null && !version.equals(versionOf(template))) {
+            throw new TemplateVersionMismatchException("Template " + templateId + " is at version "
+                    + versionOf(template) + " but the email was scheduled against version " + version);
+        }
+        return compile(template);
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledEmail> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private static long versionOf(EmailTemplate template) {
+        return template.getVersion() != null ? template.getVersion() : 1L;
+    }
+
+    private static String key(String userId, String templateId, long version) {
+        return userId + "/" + templateId + "@" + version;
+    }
+
+    /**
+     * Compiled subject and body of one template version
+     */
+    public static class CompiledEmail {
+
+        private final long version;
+        private final CompiledTemplate subject;
+        private final CompiledTemplate body;
+        private final Set<String> placeholderNames;
+
+        private CompiledEmail(EmailTemplate template) {
+            this.version = versionOf(template);
+            this.subject = CompiledTemplate.compile(template.getSubject());
+            this.body = CompiledTemplate.compile(template.getBody());
+
+            Set<String> names = new LinkedHashSet<>(subject.getPlaceholderNames());
+            names.addAll(body.getPlaceholderNames());
+            this.placeholderNames = Collections.unmodifiableSet(names);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String renderSubject(Map<String, String> values) {
+            return subject.render(values);
+        }
+
+        public String renderBody(Map<String, String> values) {
+            return body.render(values);
+        }
+
+        /**
+         * Keep only the values this template actually references
+         */
+        public Map<String, String> retainUsed(Map<String, String> values) {
+            Map<String, String> used = new LinkedHashMap<>();
+            for (String name : placeholderNames) {
+                String value = values.get(name);
+                if (value != null) {
+                    used.put(name, value);
+                }
+            }
+            return used;
+        }
+    }
+}
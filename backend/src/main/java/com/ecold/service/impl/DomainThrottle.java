@@ -0,0 +1,126 @@
+package com.ecold.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-recipient-domain throttle.
+ * Each domain allows app.email.domain-throttle.per-minute sends with a small burst, so a
+ * campaign cannot hit one company's mail server with dozens of messages in a few seconds
+ * and get greylisted. Callers reserve a send slot per recipient instead of waiting for
+ * one: a slot at or before the requested time may send now, a later one is deferred to
+ * that time. Slots are spaced by a virtual-scheduling (GCRA) clock per domain, so slots
+ * handed out for a domain never go backwards. Domains idle long enough are evicted.
+ */
+@Slf4j
+@Component
+public class DomainThrottle {
+
+    @Value("${app.email.domain-throttle.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.email.domain-throttle.per-minute:20}")
+    private int defaultPerMinute;
+
+    @Value("${app.email.domain-throttle.burst:5}")
+    private int burst;
+
+    // Comma-separated domain=perMinute pairs, e.g. "gmail.com=120,bigcorp.com=5"
+    @Value("${app.email.domain-throttle.overrides:}")
+    private String overridesSpec;
+
+    @Value("${app.email.domain-throttle.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes;
+
+    private final Map<String, Integer> overrides = new HashMap<>();
+    private final Map<String, Schedule> schedules = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String entry : overridesSpec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2) {
+                overrides.put(parts[0].trim().toLowerCase(Locale.ROOT), Integer.parseInt(parts[1].trim()));
+            }
+        }
+        log.info("Domain throttle: {} per minute per domain (burst {}), {} overrides",
+                defaultPerMinute, burst, overrides.size());
+    }
+
+    /**
+     * Book a send slot for the recipient's domain, no earlier than notBefore.
+     * Returns notBefore if the domain has room then, otherwise the later time it can take the send.
+     */
+    public Instant reserve(String recipientEmail, Instant notBefore) {
+        if (!enabled) {
+            return notBefore;
+        }
+
+        String domain = domainOf(recipientEmail);
+        long[] slot = new long[1];
+        // Booked under the map entry's lock, so eviction cannot drop a schedule mid-reservation
+        schedules.compute(domain, (key, schedule) -> {
+            Schedule current = schedule != null ? schedule : newSchedule(key);
+            slot[0] = current.reserve(notBefore.toEpochMilli());
+            return current;
+        });
+        return Instant.ofEpochMilli(slot[0]);
+    }
+
+    public static String domainOf(String email) {
+        int at = email != null ? email.lastIndexOf('@') : -1;
+        return at >= 0 ? email.substring(at + 1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Drop domains whose booked slots are all long past
+     */
+    @Scheduled(fixedDelayString = "${app.email.domain-throttle.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleEvictionMinutes);
+        for (String domain : schedules.keySet()) {
+            // Idleness is re-checked under the entry's lock, against any reservation that got there first
+            schedules.computeIfPresent(domain,
+                    (key, schedule) -> schedule.lastSlotMillis() < idleBefore ? null : schedule);
+        }
+    }
+
+    private Schedule newSchedule(String domain) {
+        int perMinute = Math.max(1, overrides.getOrDefault(domain, defaultPerMinute));
+        return new Schedule(perMinute, Math.max(1, Math.min(burst, perMinute)));
+    }
+
+    private static final class Schedule {
+
+        private final double intervalMillis;
+        // How far ahead of the clock the burst lets sends run
+        private final double toleranceMillis;
+        // Theoretical arrival time of the next send
+        private double nextMillis;
+
+        private Schedule(int perMinute, int burst) {
+            this.intervalMillis = TimeUnit.MINUTES.toMillis(1) / (double) perMinute;
+            this.toleranceMillis = (burst - 1) * intervalMillis;
+        }
+
+        private synchronized long reserve(long notBeforeMillis) {
+            long slot = Math.max(notBeforeMillis, (long) Math.ceil(nextMillis - toleranceMillis));
+            nextMillis = Math.max(nextMillis, slot) + intervalMillis;
+            return slot;
+        }
+
+        private synchronized long lastSlotMillis() {
+            return (long) nextMillis;
+        }
+    }
+}
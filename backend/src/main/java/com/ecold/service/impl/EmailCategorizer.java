@@ -0,0 +1,267 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+import com.ecold.util.KeywordMatcher;
+import com.ecold.util.NaiveBayesModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rule-based incoming email categorizer
+ * Every keyword the rules look at is compiled into one KeywordMatcher at startup, so an
+ * email's subject and body are scanned once, and the rules then read hit counts instead
+ * of re-scanning the text for each word. Also reports per-group hit counts, the matched
+ * keywords and a confidence score for the chosen category.
+ */
+@Slf4j
+@Component
+public class EmailCategorizer {
+
+    public enum KeywordGroup {
+        JOB, INTERVIEW, APPLICATION, REJECTION, SPAM
+    }
+
+    private static final Map<KeywordGroup, Set<String>> GROUPS = new EnumMap<>(Map.of(
+        KeywordGroup.JOB, Set.of(
+            "application", "shortlisted", "interview", "resume", "recruiter", "hr", "position",
+            "job", "opportunity", "candidate", "hiring", "selected", "rejected", "offer",
+            "screening", "assessment", "placement", "career", "employment"),
+        KeywordGroup.INTERVIEW, Set.of("shortlist", "interview", "selected"),
+        KeywordGroup.APPLICATION, Set.of("application", "update", "opportunity"),
+        KeywordGroup.REJECTION, Set.of("reject", "closed", "unsuccessful", "regret"),
+        KeywordGroup.SPAM, Set.of("lottery", "winner", "congratulations", "claim now", "urgent", "act now")
+    ));
+
+    private static final Set<String> TRUSTED_DOMAINS = Set.of(
+        "naukri.com", "linkedin.com", "indeed.com", "monster.com", "glassdoor.com",
+        "shine.com", "timesjobs.com", "foundit.in", "instahyre.com"
+    );
+
+    // Reported keywords per email
+    private static final int MAX_KEYWORDS = 10;
+
+    // Bump when the rules or seed weights change so stored per-user models are rebuilt
+    public static final int SEED_VERSION = 1;
+    private static final float SEED_DOCUMENTS = 10f;
+    private static final float SEED_KEYWORD_WEIGHT = 5f;
+
+    private final KeywordMatcher matcher;
+    private final Map<String, Integer> keywordIds = new HashMap<>();
+    // Groups each keyword id belongs to
+    private final KeywordGroup[][] keywordGroups;
+
+    public EmailCategorizer() {
+        Set<String> all = new LinkedHashSet<>();
+        GROUPS.values().forEach(all::addAll);
+        matcher = KeywordMatcher.compile(all);
+
+        keywordGroups = new KeywordGroup[matcher.size()][];
+        for (int id = 0; id < matcher.size(); id++) {
+            String keyword = matcher.keyword(id);
+            keywordIds.put(keyword, id);
+            keywordGroups[id] = GROUPS.entrySet().stream()
+                    .filter(group -> group.getValue().contains(keyword))
+                    .map(Map.Entry::getKey)
+                    .toArray(KeywordGroup[]::new);
+        }
+        log.info("Email categorizer compiled {} keywords", matcher.size());
+    }
+
+    public Result categorize(String subject, String body, String senderEmail) {
+        int[] counts = matcher.count(subject, body);
+        Hits hits = new Hits(counts);
+        boolean trusted = TRUSTED_DOMAINS.contains(extractDomain(senderEmail));
+
+        IncomingEmail.EmailCategory category;
+        if (trusted) {
+            if (hits.any("shortlist", "interview", "selected")) {
+                category = IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+            } else if (hits.any("application") && hits.any("update")) {
+                category = IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+            } else if (hits.any("reject", "closed", "unsuccessful")) {
+                category = IncomingEmail.EmailCategory.REJECTION_CLOSED;
+            } else {
+                category = IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
+            }
+        } else if (hits.group(KeywordGroup.JOB) > 0) {
+            if (hits.any("shortlist", "interview")) {
+                category = IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+            } else if (hits.any("reject", "regret")) {
+                category = IncomingEmail.EmailCategory.REJECTION_CLOSED;
+            } else if (hits.any("application", "opportunity")) {
+                category = IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+            } else {
+                category = IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
+            }
+        } else if (hits.group(KeywordGroup.SPAM) > 0) {
+            category = IncomingEmail.EmailCategory.SPAM;
+        } else {
+            category = IncomingEmail.EmailCategory.UNKNOWN;
+        }
+
+        return new Result(category, hits.groupCounts, hits.matchedKeywords(), confidence(category, hits, trusted));
+    }
+
+    /**
+     * A naive Bayes model that encodes these rules: each category's keywords, and trusted
+     * job-board names for recruiter outreach, with an equal prior for every category.
+     * Labels are IncomingEmail.EmailCategory ordinals.
+     */
+    public NaiveBayesModel seedModel() {
+        IncomingEmail.EmailCategory[] categories = IncomingEmail.EmailCategory.values();
+        NaiveBayesModel model = new NaiveBayesModel(categories.length, NaiveBayesModel.DEFAULT_DIMENSIONS);
+        for (IncomingEmail.EmailCategory category : categories) {
+            model.addDocuments(category.ordinal(), SEED_DOCUMENTS);
+        }
+
+        seed(model, IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW, GROUPS.get(KeywordGroup.INTERVIEW));
+        seed(model, IncomingEmail.EmailCategory.APPLICATION_UPDATE, GROUPS.get(KeywordGroup.APPLICATION));
+        seed(model, IncomingEmail.EmailCategory.REJECTION_CLOSED, GROUPS.get(KeywordGroup.REJECTION));
+        seed(model, IncomingEmail.EmailCategory.SPAM, GROUPS.get(KeywordGroup.SPAM));
+
+        Set<String> outreach = new LinkedHashSet<>(GROUPS.get(KeywordGroup.JOB));
+        outreach.removeAll(GROUPS.get(KeywordGroup.INTERVIEW));
+        outreach.removeAll(GROUPS.get(KeywordGroup.APPLICATION));
+        outreach.removeAll(GROUPS.get(KeywordGroup.REJECTION));
+        // Sender domains are tokenized too; seed the board name, not the "com" suffix
+        TRUSTED_DOMAINS.forEach(domain -> outreach.add(domain.substring(0, domain.indexOf('.'))));
+        seed(model, IncomingEmail.EmailCategory.RECRUITER_OUTREACH, outreach);
+
+        return model;
+    }
+
+    private static void seed(NaiveBayesModel model, IncomingEmail.EmailCategory category, Set<String> keywords) {
+        for (String keyword : keywords) {
+            model.addWords(category.ordinal(), SEED_KEYWORD_WEIGHT, keyword);
+        }
+    }
+
+    /**
+     * Confidence grows with the hits backing the chosen category, starting higher for
+     * trusted job-board senders and approaching but never reaching 1
+     */
+    private static double confidence(IncomingEmail.EmailCategory category, Hits hits, boolean trusted) {
+        int evidence;
+        switch (category) {
+            case SHORTLIST_INTERVIEW:
+                evidence = hits.group(KeywordGroup.INTERVIEW);
+                break;
+            case APPLICATION_UPDATE:
+                evidence = hits.group(KeywordGroup.APPLICATION);
+                break;
+            case REJECTION_CLOSED:
+                evidence = hits.group(KeywordGroup.REJECTION);
+                break;
+            case RECRUITER_OUTREACH:
+                evidence = hits.group(KeywordGroup.JOB);
+                break;
+            case SPAM:
+                evidence = hits.group(KeywordGroup.SPAM);
+                break;
+            default:
+                return 0.0;
+        }
+
+        double base = trusted ? 0.6 : 0.3;
+        double score = base + (0.95 - base) * (1 - Math.exp(-evidence / 3.0));
+        return Math.round(score * 100) / 100.0;
+    }
+
+    private static String extractDomain(String email) {
+        int atIndex = email != null ? email.indexOf('@') : -1;
+        return atIndex != -1 ? email.substring(atIndex + 1).toLowerCase() : "";
+    }
+
+    /**
+     * Hit counts for one email, by keyword and by group
+     */
+    private final class Hits {
+
+        private final int[] counts;
+        private final Map<KeywordGroup, Integer> groupCounts = new EnumMap<>(KeywordGroup.class);
+
+        private Hits(int[] counts) {
+            this.counts = counts;
+            for (KeywordGroup group : KeywordGroup.values()) {
+                groupCounts.put(group, 0);
+            }
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    for (KeywordGroup group : keywordGroups[id]) {
+                        groupCounts.merge(group, counts[id], Integer::sum);
+                    }
+                }
+            }
+        }
+
+        boolean any(String... keywords) {
+            for (String keyword : keywords) {
+                if (counts[keywordIds.get(keyword)] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int group(KeywordGroup group) {
+            return groupCounts.get(group);
+        }
+
+        List<String> matchedKeywords() {
+            List<Integer> matched = new ArrayList<>();
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    matched.add(id);
+                }
+            }
+            matched.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+
+            List<String> keywords = new ArrayList<>();
+            for (int i = 0; i < Math.min(MAX_KEYWORDS, matched.size()); i++) {
+                keywords.add(matcher.keyword(matched.get(i)));
+            }
+            return keywords;
+        }
+    }
+
+    public static final class Result {
+
+        private final IncomingEmail.EmailCategory category;
+        private final Map<KeywordGroup, Integer> groupHits;
+        private final List<String> keywords;
+        private final double confidenceScore;
+
+        private Result(IncomingEmail.EmailCategory category, Map<KeywordGroup, Integer> groupHits,
+                       List<String> keywords, double confidenceScore) {
+            this.category = category;
+            this.groupHits = Collections.unmodifiableMap(groupHits);
+            this.keywords = Collections.unmodifiableList(keywords);
+            this.confidenceScore = confidenceScore;
+        }
+
+        public IncomingEmail.EmailCategory getCategory() {
+            return category;
+        }
+
+        public Map<KeywordGroup, Integer> getGroupHits() {
+            return groupHits;
+        }
+
+        public List<String> getKeywords() {
+            return keywords;
+        }
+
+        public double getConfidenceScore() {
+            return confidenceScore;
+        }
+    }
+}
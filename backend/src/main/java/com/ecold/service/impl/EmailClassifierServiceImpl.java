@@ -0,0 +1,307 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.CategoryPrediction;
+import com.ecold.entity.ClassifierFeedback;
+import com.ecold.entity.ClassifierSnapshot;
+import com.ecold.entity.IncomingEmail;
+import com.ecold.repository.firestore.ClassifierFirestoreRepository;
+import com.ecold.service.EmailClassifierService;
+import com.ecold.util.NaiveBayesModel;
+import com.google.cloud.firestore.Blob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Per-user naive Bayes email classifier
+ * Every user's model starts as a copy of the seed EmailCategorizer builds from the keyword
+ * rules and is trained incrementally on that user's re-categorizations. Once a user has
+ * made app.incoming.classifier.min-feedback corrections, their model's category replaces
+ * the rules' whenever its posterior reaches app.incoming.classifier.min-confidence. Trained models are cached LRU and snapshotted to Firestore
+ * periodically; a missing or outdated snapshot is rebuilt from the stored corrections.
+ * Changing an earlier correction rebuilds the model from the stored corrections, so each
+ * email is trained once, under its latest category.
+ *
+ * Off by default (app.incoming.classifier.enabled): on the labeled fixture the trained model
+ * does not beat the rules, while each trained user costs Firestore reads on load and about
+ * 1 MB of count tables in the cache. Corrections are stored either way, so enabling it later
+ * rebuilds every model from the full history.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmailClassifierServiceImpl implements EmailClassifierService {
+
+    // Body text kept per correction for retraining
+    private static final int MAX_FEEDBACK_BODY_CHARS = 4000;
+
+    private final ClassifierFirestoreRepository classifierRepository;
+    private final EmailCategorizer emailCategorizer;
+
+    @Value("${app.incoming.classifier.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.incoming.classifier.min-feedback:20}")
+    private long minFeedback;
+
+    // Posterior the model needs before its category replaces the rules'
+    @Value("${app.incoming.classifier.min-confidence:0.8}")
+    private double minConfidence;
+
+    @Value("${app.incoming.classifier.feedback-weight:1.0}")
+    private float feedbackWeight;
+
+    @Value("${app.incoming.classifier.max-models:100}")
+    private int maxModels;
+
+    private NaiveBayesModel seed;
+    private final Map<String, UserModel> models = new LinkedHashMap<>(16, 0.75f, true);
+
+    @PostConstruct
+    void init() {
+        seed = emailCategorizer.seedModel();
+        log.info("Email classifier initialized: seed version {}, takes over after {} corrections",
+                EmailCategorizer.SEED_VERSION, minFeedback);
+    }
+
+    @Override
+    public Optional<CategoryPrediction> predict(String userId, String subject, String body, String senderEmail) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        UserModel userModel;
+        try {
+            userModel = model(userId);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Failed to load classifier for user {}: {}", userId, e.getMessage(), e);
+            return Optional.empty();
+        }
+
+        double[] posteriors;
+        synchronized (userModel) {
+            if (userModel.feedbackCount < minFeedback) {
+                return Optional.empty();
+            }
+            posteriors = userModel.model.posteriors(subject, body, senderEmail);
+        }
+
+        int best = 0;
+        for (int label = 1; label < posteriors.length; label++) {
+            if (posteriors[label] > posteriors[best]) {
+                best = label;
+            }
+        }
+        if (posteriors[best] < minConfidence) {
+            return Optional.empty();
+        }
+        return Optional.of(CategoryPrediction.builder()
+                .category(IncomingEmail.EmailCategory.values()[best])
+                .confidence(Math.round(posteriors[best] * 100) / 100.0)
+                .build());
+    }
+
+    @Override
+    public void recordCorrection(String userId, IncomingEmail email, IncomingEmail.EmailCategory category) {
+        String body = email.getBody();
+        if (body != null && body.length() > MAX_FEEDBACK_BODY_CHARS) {
+            body = body.substring(0, MAX_FEEDBACK_BODY_CHARS);
+        }
+
+        ClassifierFeedback feedback = ClassifierFeedback.builder()
+                .id(email.getId())
+                .subject(email.getSubject())
+                .body(body)
+                .senderEmail(email.getSenderEmail())
+                .previousCategory(email.getCategory())
+                .category(category.name())
+                .build();
+
+        try {
+            Optional<ClassifierFeedback> previous = classifierRepository.findFeedback(userId, email.getId());
+            classifierRepository.saveFeedback(userId, feedback);
+            if (!enabled) {
+                return;
+            }
+
+            if (previous.isPresent()) {
+                // The earlier correction is already in the model's counts; retrain from the stored corrections
+                rebuild(userId);
+            } else {
+                UserModel userModel = model(userId);
+                synchronized (userModel) {
+                    userModel.train(feedback);
+                }
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to record category correction", e);
+        }
+    }
+
+    /**
+     * Snapshot models trained since the last checkpoint, then trim the cache to max-models
+     */
+    @Scheduled(fixedDelayString = "${app.incoming.classifier.checkpoint-interval-ms:300000}")
+    @PreDestroy
+    public void checkpoint() {
+        List<Map.Entry<String, UserModel>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(models.entrySet());
+        }
+
+        for (Map.Entry<String, UserModel> entry : entries) {
+            UserModel userModel = entry.getValue();
+            ClassifierSnapshot snapshot;
+
+            synchronized (userModel) {
+                if (!userModel.dirty) {
+                    continue;
+                }
+                try {
+                    snapshot = ClassifierSnapshot.builder()
+                            .seedVersion(EmailCategorizer.SEED_VERSION)
+                            .feedbackCount(userModel.feedbackCount)
+                            .model(Blob.fromBytes(userModel.model.toBytes()))
+                            .build();
+                } catch (IOException e) {
+                    log.error("Failed to serialize classifier for user {}: {}", entry.getKey(), e.getMessage(), e);
+                    continue;
+                }
+                userModel.dirty = false;
+            }
+
+            try {
+                classifierRepository.saveSnapshot(entry.getKey(), snapshot);
+            } catch (ExecutionException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (userModel) {
+                    userModel.dirty = true;
+                }
+                log.error("Failed to snapshot classifier for user {}: {}", entry.getKey(), e.getMessage(), e);
+            }
+        }
+
+        synchronized (this) {
+            Iterator<UserModel> it = models.values().iterator();
+            int excess = models.size() - maxModels;
+            while (excess > 0 && it.hasNext()) {
+                UserModel userModel = it.next();
+                synchronized (userModel) {
+                    if (userModel.dirty) {
+                        continue;
+                    }
+                }
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * The user's model: cached, restored from its snapshot, or rebuilt from the seed and corrections
+     */
+    private UserModel model(String userId) throws ExecutionException, InterruptedException {
+        synchronized (this) {
+            UserModel cached = models.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        UserModel loaded = null;
+        Optional<ClassifierSnapshot> snapshot = classifierRepository.findSnapshot(userId);
+        if (snapshot.isPresent() && Integer.valueOf(EmailCategorizer.SEED_VERSION).equals(snapshot.get().getSeedVersion())) {
+            try {
+                loaded = new UserModel(NaiveBayesModel.fromBytes(snapshot.get().getModel().toBytes()),
+                        snapshot.get().getFeedbackCount() != null ? snapshot.get().getFeedbackCount() : 0);
+            } catch (IOException e) {
+                log.warn("Discarding unreadable classifier snapshot for user {}: {}", userId, e.getMessage());
+            }
+        }
+
+        if (loaded == null) {
+            loaded = fromFeedback(userId);
+        }
+
+        synchronized (this) {
+            // Another thread may have loaded it meanwhile
+            UserModel existing = models.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+            models.put(userId, loaded);
+            return loaded;
+        }
+    }
+
+    /**
+     * Replace the user's model with one trained from the seed on their stored corrections,
+     * and mark it for the next checkpoint so the outdated snapshot is overwritten
+     */
+    private void rebuild(String userId) throws ExecutionException, InterruptedException {
+        UserModel rebuilt = fromFeedback(userId);
+        rebuilt.dirty = true;
+        synchronized (this) {
+            models.put(userId, rebuilt);
+        }
+    }
+
+    private UserModel fromFeedback(String userId) throws ExecutionException, InterruptedException {
+        UserModel userModel = new UserModel(seed, 0);
+        for (ClassifierFeedback feedback : classifierRepository.findAllFeedback(userId)) {
+            userModel.train(feedback);
+        }
+        log.debug("Classifier rebuilt for user {} from {} corrections", userId, userModel.feedbackCount);
+        return userModel;
+    }
+
+    private final class UserModel {
+
+        private NaiveBayesModel model;
+        private long feedbackCount;
+        private boolean dirty;
+
+        private UserModel(NaiveBayesModel model, long feedbackCount) {
+            this.model = model;
+            this.feedbackCount = feedbackCount;
+        }
+
+        void train(ClassifierFeedback feedback) {
+            IncomingEmail.EmailCategory category;
+            try {
+                category = IncomingEmail.EmailCategory.valueOf(feedback.getCategory());
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return;
+            }
+            // Users without corrections share the seed; copy it on the first one
+            if (model == seed) {
+                model = seed.copy();
+            }
+            model.train(category.ordinal(), feedbackWeight,
+                    feedback.getSubject(), feedback.getBody(), feedback.getSenderEmail());
+            feedbackCount++;
+            dirty = true;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.ScheduledEmail;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.ScheduledEmailFirestoreRepository;
+import com.ecold.repository.firestore.UserFirestoreRepository;
+import com.ecold.service.EmailRetryService;
+import com.ecold.service.ScheduledEmailService;
+import com.google.cloud.Timestamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry worker
+ * Pages through FAILED scheduled emails whose nextAttemptAt is due with one collection-group
+ * query across all users, and resends them on a dedicated, bounded pool, so retries never
+ * compete with first-attempt sends for threads. When the pool's queue is full the pass stops
+ * and the rest is picked up on the next run. Backoff and error classification live in RetryPolicy.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EmailRetryServiceImpl implements EmailRetryService {
+
+    private final UserFirestoreRepository userFirestoreRepository;
+    private final ScheduledEmailFirestoreRepository scheduledEmailRepository;
+    private final ScheduledEmailService scheduledEmailService;
+
+    @Value("${app.email.retry.enabled:true}")
+    private boolean retryEnabled;
+
+    @Value("${app.email.retry.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.email.retry.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.email.retry.page-size:50}")
+    private int pageSize;
+
+    private ThreadPoolExecutor executor;
+
+    // Entries queued or running, so a slow retry is not submitted twice by the next pass
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        log.info("Email retry executor initialized with {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.email.retry.check-interval-ms:60000}", initialDelay = 30000)
+    public void processRetries() {
+        if (!retryEnabled) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int submitted = 0;
+
+        try {
+            Timestamp now = Timestamp.now();
+            // Users looked up once per pass, however many of their emails are due
+            Map<String, Optional<User>> users = new HashMap<>();
+
+            ScheduledEmail after = null;
+            List<ScheduledEmail> page;
+            do {
+                page = scheduledEmailRepository.findRetryDue(now, after, pageSize);
+                for (ScheduledEmail email : page) {
+                    Optional<User> user = users.computeIfAbsent(email.getUserId(), this::findUser);
+                    // Scheduled emails only go out through Gmail OAuth
+                    if (user.isEmpty() || user.get().getProviderEnum() != User.Provider.GOOGLE) {
+                        continue;
+                    }
+                    if (submit("scheduled:" + email.getId(), () -> scheduledEmailService.retryScheduledEmail(email, user.get()))) {
+                        submitted++;
+                    }
+                }
+                after = page.isEmpty() ? null : page.get(page.size() - 1);
+            } while (page.size() == pageSize);
+
+        } catch (RejectedExecutionException e) {
+            log.info("Retry pool is full, remaining retries wait for the next run");
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Error processing email retries", e);
+        }
+
+        if (submitted > 0) {
+            log.info("Email retries queued: {} in {}ms ({} queued or running)",
+                    submitted, System.currentTimeMillis() - startTime, inFlight.size());
+        }
+    }
+
+    private Optional<User> findUser(String userId) {
+        try {
+            return userFirestoreRepository.findById(userId);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Error loading user {} for retries: {}", userId, e.getMessage(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Queue a retry unless it is already queued. Throws RejectedExecutionException when the pool is full.
+     */
+    private boolean submit(String key, Runnable retry) {
+        if (!inFlight.add(key)) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    retry.run();
+                } catch (Exception e) {
+                    log.error("Retry {} failed: {}", key, e.getMessage(), e);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            throw e;
+        }
+    }
+}
@@ -5,14 +5,23 @@ import com.ecold.dto.EmailResponse;
 import com.ecold.entity.EmailTemplate;
 import com.ecold.entity.RecruiterContact;
 import com.ecold.entity.RecruiterTemplateAssignment;
+import com.ecold.entity.SentKey;
 import com.ecold.entity.User;
 import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
 import com.ecold.repository.firestore.RecruiterContactFirestoreRepository;
 import com.ecold.repository.firestore.RecruiterTemplateAssignmentFirestoreRepository;
 import com.ecold.repository.firestore.UserFirestoreRepository;
 import com.ecold.service.EmailService;
 import com.ecold.service.ScheduledEmailService;
+import com.ecold.util.TemplatePlaceholders;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.Timestamp;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -29,6 +38,7 @@ import jakarta.mail.internet.MimeMessage;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
@@ -51,19 +61,36 @@ public class EmailServiceImpl implements EmailService {
     private final EmailService gmailOAuthService;
 
     private final ScheduledEmailService scheduledEmailService;
+    private final FirestoreBatchWriter batchWriter;
+    private final SmtpTransportPool smtpTransportPool;
+    private final SendIdempotencyGuard idempotencyGuard;
+    private final MeterRegistry meterRegistry;
+    private final Timer bookkeepingTimer;
 
     public EmailServiceImpl(EmailTemplateFirestoreRepository templateRepository,
                            RecruiterContactFirestoreRepository recruiterRepository,
                            UserFirestoreRepository userRepository,
                            RecruiterTemplateAssignmentFirestoreRepository assignmentRepository,
                            @Qualifier("gmailOAuthService") EmailService gmailOAuthService,
-                           ScheduledEmailService scheduledEmailService) {
+                           ScheduledEmailService scheduledEmailService,
+                           FirestoreBatchWriter batchWriter,
+                           SmtpTransportPool smtpTransportPool,
+                           SendIdempotencyGuard idempotencyGuard,
+                           MeterRegistry meterRegistry) {
         this.templateRepository = templateRepository;
         this.recruiterRepository = recruiterRepository;
         this.userRepository = userRepository;
         this.assignmentRepository = assignmentRepository;
         this.gmailOAuthService = gmailOAuthService;
         this.scheduledEmailService = scheduledEmailService;
+        this.batchWriter = batchWriter;
+        this.smtpTransportPool = smtpTransportPool;
+        this.idempotencyGuard = idempotencyGuard;
+        this.meterRegistry = meterRegistry;
+        this.bookkeepingTimer = Timer.builder("ecold.email.template.bookkeeping")
+                .description("Time to commit post-send bookkeeping for template emails")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
     }
     
     @Value("${spring.mail.username:#{null}}")
@@ -75,6 +102,10 @@ public class EmailServiceImpl implements EmailService {
     @Value("${app.email.enabled:false}")
     private boolean emailEnabled;
 
+    // When the follow-up engine runs it moves sent assignments to their follow-up; sends leave them ACTIVE
+    @Value("${templates.follow-up.auto-assign:true}")
+    private boolean followUpEngineEnabled;
+
     @Override
     public EmailResponse sendEmail(EmailRequest emailRequest, User user) {
         LocalDateTime now = LocalDateTime.now();
@@ -93,6 +124,40 @@ public class EmailServiceImpl implements EmailService {
             return EmailResponse.success(null, "Email scheduled successfully for " + emailRequest.getScheduleTime());
         }
 
+        String idempotencyKey = emailRequest.getIdempotencyKey();
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return sendNow(emailRequest, user);
+        }
+
+        Optional<SentKey> existing = idempotencyGuard.claim(user, idempotencyKey);
+        if (existing.isPresent()) {
+            EmailResponse duplicate = EmailResponse.failure("DUPLICATE_SEND", duplicateMessage(existing.get()));
+            duplicate.setMessageId(existing.get().getMessageId());
+            return duplicate;
+        }
+
+        EmailResponse response = sendNow(emailRequest, user);
+
+        if (response.isSuccess()) {
+            idempotencyGuard.confirm(user.getId(), idempotencyKey, response.getMessageId());
+        } else if (SendIdempotencyGuard.isPreSendFailure(response.getErrorCode())) {
+            idempotencyGuard.release(user.getId(), idempotencyKey);
+        }
+        // Other failures may have reached the provider (e.g. a timeout after Gmail accepted
+        // the message), so the claim is kept and retries stay blocked until it is resolved
+
+        return response;
+    }
+
+    private static String duplicateMessage(SentKey existing) {
+        return switch (existing.getStatusEnum()) {
+            case SENT -> "Email was already sent for this idempotency key";
+            case UNKNOWN -> "An earlier send with this idempotency key may have gone out; resolve it before retrying";
+            default -> "A send with this idempotency key is already in progress";
+        };
+    }
+
+    private EmailResponse sendNow(EmailRequest emailRequest, User user) {
         if (user.getProviderEnum() == User.Provider.GOOGLE && hasValidGmailTokens(user)) {
             EmailResponse response = gmailOAuthService.sendEmail(emailRequest, user);
 
@@ -138,12 +203,16 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public EmailResponse sendTemplateEmail(String templateId, String recruiterId, User user, Map<String, String> additionalData) {
         try {
-            // Get template
-            EmailTemplate template = templateRepository.findById(user.getId(), templateId)
+            // Template, recruiter and the recruiter's assignments are read concurrently
+            ApiFuture<Optional<EmailTemplate>> templateFuture = templateRepository.findByIdAsync(user.getId(), templateId);
+            ApiFuture<Optional<RecruiterContact>> recruiterFuture = recruiterRepository.findByIdAsync(user.getId(), recruiterId);
+            ApiFuture<List<RecruiterTemplateAssignment>> assignmentsFuture =
+                    assignmentRepository.findByUserAndRecruiterAsync(user.getId(), recruiterId);
+
+            EmailTemplate template = templateFuture.get()
                     .orElseThrow(() -> new RuntimeException("Template not found: " + templateId));
 
-            // Get recruiter
-            RecruiterContact recruiter = recruiterRepository.findById(user.getId(), recruiterId)
+            RecruiterContact recruiter = recruiterFuture.get()
                     .orElseThrow(() -> new RuntimeException("Recruiter not found: " + recruiterId));
 
             // Verify ownership (already guaranteed by userId in path, but keep for safety)
@@ -152,6 +221,11 @@ public class EmailServiceImpl implements EmailService {
                 return EmailResponse.failure("ACCESS_DENIED", "Access denied to template or recruiter");
             }
 
+            // Follow-up template lookup runs while the email is being sent
+            ApiFuture<Optional<EmailTemplate>> followUpFuture = followUpEngineEnabled
+                    ? ApiFutures.immediateFuture(Optional.empty())
+                    : findFollowUpTemplateAsync(user.getId(), template);
+
             // Process template placeholders
             String processedSubject = processPlaceholders(template.getSubject(), recruiter, user, additionalData);
             String processedBody = processPlaceholders(template.getBody(), recruiter, user, additionalData);
@@ -179,28 +253,16 @@ public class EmailServiceImpl implements EmailService {
             EmailResponse response = sendEmail(emailRequestWithoutIds, user);
 
             if (response.isSuccess()) {
-                // Update template usage
-                template.setUsageCount((template.getUsageCount() != null ? template.getUsageCount() : 0L) + 1);
-                template.setEmailsSent((template.getEmailsSent() != null ? template.getEmailsSent() : 0L) + 1);
-                template.setLastUsed(Timestamp.now());
-                templateRepository.save(user.getId(), template);
-
-                // Mark recruiter as contacted
-                recruiter.setStatusEnum(RecruiterContact.ContactStatus.CONTACTED);
-                recruiter.setLastContactedAt(Timestamp.now());
-                recruiterRepository.save(user.getId(), recruiter);
-
-                // Update assignment email count if assignment exists (only here, not in sendEmail)
-                updateAssignmentEmailCount(templateId, recruiterId, user);
-
-                // Move to follow-up template if applicable
-                moveToFollowUpIfApplicable(templateId, recruiterId, user, template);
+                // Bookkeeping commits in the background; the response does not wait for it
+                recordTemplateSend(templateId, recruiterId, user, assignmentsFuture, followUpFuture);
             }
 
             return response;
 
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Failed to send template email: {}", e.getMessage(), e);
             return EmailResponse.failure("TEMPLATE_SEND_FAILED", "Failed to send template email: " + e.getMessage());
         } catch (Exception e) {
@@ -249,7 +311,9 @@ public class EmailServiceImpl implements EmailService {
             return response;
 
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Failed to send template email {} to recruiter {}: {}", templateId, recruiterId, e.getMessage(), e);
             return EmailResponse.failure("TEMPLATE_SEND_FAILED", "Failed to send template email: " + e.getMessage());
         } catch (Exception e) {
@@ -303,7 +367,9 @@ public class EmailServiceImpl implements EmailService {
             User user = userRepository.findByEmail(email).orElse(null);
             return user != null && hasValidGmailTokens(user);
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.debug("Could not validate Gmail OAuth settings: {}", e.getMessage());
             return false;
         } catch (Exception e) {
@@ -325,23 +391,45 @@ public class EmailServiceImpl implements EmailService {
         return sendEmail(testRequest, user);
     }
 
-    private void sendTextEmail(EmailRequest emailRequest, User user, String messageId) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(emailRequest.getTo());
-        message.setSubject(emailRequest.getSubject());
-        message.setText(emailRequest.getBody());
-        
+    private void sendTextEmail(EmailRequest emailRequest, User user, String messageId) throws MessagingException {
+        if (!smtpTransportPool.isEnabled()) {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setFrom(fromEmail);
+            message.setTo(emailRequest.getTo());
+            message.setSubject(emailRequest.getSubject());
+            message.setText(emailRequest.getBody());
+
+            if (emailRequest.getCc() != null && !emailRequest.getCc().isEmpty()) {
+                message.setCc(emailRequest.getCc().toArray(new String[0]));
+            }
+
+            if (emailRequest.getBcc() != null && !emailRequest.getBcc().isEmpty()) {
+                message.setBcc(emailRequest.getBcc().toArray(new String[0]));
+            }
+
+            // Add message ID header (this is simplified - actual implementation depends on mail server)
+            mailSender.send(message);
+            return;
+        }
+
+        // Pooled mode: same message as a MimeMessage so it can go over a kept-open connection
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, false, "UTF-8");
+
+        helper.setFrom(fromEmail);
+        helper.setTo(emailRequest.getTo());
+        helper.setSubject(emailRequest.getSubject());
+        helper.setText(emailRequest.getBody(), false);
+
         if (emailRequest.getCc() != null && !emailRequest.getCc().isEmpty()) {
-            message.setCc(emailRequest.getCc().toArray(new String[0]));
+            helper.setCc(emailRequest.getCc().toArray(new String[0]));
         }
-        
+
         if (emailRequest.getBcc() != null && !emailRequest.getBcc().isEmpty()) {
-            message.setBcc(emailRequest.getBcc().toArray(new String[0]));
+            helper.setBcc(emailRequest.getBcc().toArray(new String[0]));
         }
-        
-        // Add message ID header (this is simplified - actual implementation depends on mail server)
-        mailSender.send(message);
+
+        smtpTransportPool.send(mimeMessage);
     }
 
     private void sendHtmlEmail(EmailRequest emailRequest, User user, String messageId) throws MessagingException, java.io.UnsupportedEncodingException {
@@ -377,30 +465,16 @@ public class EmailServiceImpl implements EmailService {
                     break;
             }
         }
-        
-        mailSender.send(mimeMessage);
+
+        if (smtpTransportPool.isEnabled()) {
+            smtpTransportPool.send(mimeMessage);
+        } else {
+            mailSender.send(mimeMessage);
+        }
     }
 
     private String processPlaceholders(String text, RecruiterContact recruiter, User user, Map<String, String> additionalData) {
-        if (text == null) return "";
-        
-        String processed = text;
-        
-        // Standard placeholders
-        processed = processed.replace("{Company}", recruiter.getCompanyName() != null ? recruiter.getCompanyName() : "");
-        processed = processed.replace("{Role}", recruiter.getJobRole() != null ? recruiter.getJobRole() : "");
-        processed = processed.replace("{RecruiterName}", recruiter.getRecruiterName() != null ? recruiter.getRecruiterName() : "");
-        processed = processed.replace("{MyName}", user.getName() != null ? user.getName() : "");
-        
-        // Additional data placeholders
-        if (additionalData != null) {
-            for (Map.Entry<String, String> entry : additionalData.entrySet()) {
-                String placeholder = "{" + entry.getKey() + "}";
-                processed = processed.replace(placeholder, entry.getValue() != null ? entry.getValue() : "");
-            }
-        }
-        
-        return processed;
+        return TemplatePlaceholders.render(text, TemplatePlaceholders.valuesFor(recruiter, user, additionalData));
     }
 
     private String generateMessageId() {
@@ -436,19 +510,107 @@ public class EmailServiceImpl implements EmailService {
                     .orElse(null);
 
             if (assignment != null) {
-                assignment.setEmailsSent((assignment.getEmailsSent() != null ? assignment.getEmailsSent() : 0) + 1);
-                assignment.setLastEmailSentAt(Timestamp.now());
-                assignmentRepository.save(user.getId(), assignment);
+                assignmentRepository.increment(user.getId(), assignment.getId(), 1);
             }
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Failed to update assignment email count: {}", e.getMessage());
         } catch (Exception e) {
             log.error("Failed to update assignment email count: {}", e.getMessage());
         }
     }
 
+    /**
+     * Resolve the follow-up template for a template without blocking
+     */
+    private ApiFuture<Optional<EmailTemplate>> findFollowUpTemplateAsync(String userId, EmailTemplate currentTemplate) {
+        if (currentTemplate.getFollowUpTemplateId() != null) {
+            return templateRepository.findByIdAsync(userId, currentTemplate.getFollowUpTemplateId());
+        }
+
+        return ApiFutures.transform(
+                templateRepository.findByUserAndCategoryAndStatusAsync(userId,
+                        EmailTemplate.Category.FOLLOW_UP.name(),
+                        EmailTemplate.Status.ACTIVE.name()),
+                templates -> templates.stream().findFirst(),
+                MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Post-send bookkeeping for a template email, committed as one WriteBatch:
+     * template counters, recruiter status, assignment count and, with the follow-up engine
+     * off, the move to the follow-up template
+     */
+    private void recordTemplateSend(String templateId, String recruiterId, User user,
+                                    ApiFuture<List<RecruiterTemplateAssignment>> assignmentsFuture,
+                                    ApiFuture<Optional<EmailTemplate>> followUpFuture) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<ApiFuture<?>> reads = List.of(assignmentsFuture, followUpFuture);
+
+        ApiFuture<Integer> commit = ApiFutures.transformAsync(
+                ApiFutures.allAsList(reads),
+                ignored -> {
+                    FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+
+                    templateRepository.incrementInBatch(batch, user.getId(), templateId, 1, 1);
+                    recruiterRepository.markContactedInBatch(batch, user.getId(), recruiterId);
+
+                    RecruiterTemplateAssignment assignment = assignmentsFuture.get().stream()
+                            .filter(a -> templateId.equals(a.getTemplateId()))
+                            .filter(a -> RecruiterTemplateAssignment.AssignmentStatus.ACTIVE.name().equals(a.getAssignmentStatus()))
+                            .findFirst()
+                            .orElse(null);
+
+                    if (assignment != null) {
+                        EmailTemplate followUpTemplate = followUpFuture.get()
+                                .filter(t -> !templateId.equals(t.getId()))
+                                .orElse(null);
+
+                        if (followUpTemplate != null) {
+                            RecruiterTemplateAssignment followUpAssignment = new RecruiterTemplateAssignment();
+                            followUpAssignment.setRecruiterId(recruiterId);
+                            followUpAssignment.setTemplateId(followUpTemplate.getId());
+                            followUpAssignment.setWeekAssigned(assignment.getWeekAssigned());
+                            followUpAssignment.setYearAssigned(assignment.getYearAssigned());
+                            followUpAssignment.setAssignmentStatus(RecruiterTemplateAssignment.AssignmentStatus.ACTIVE.name());
+                            followUpAssignment.setEmailsSent((assignment.getEmailsSent() != null ? assignment.getEmailsSent() : 0) + 1);
+                            followUpAssignment.setLastEmailSentAt(Timestamp.now());
+                            assignmentRepository.saveInBatch(batch, user.getId(), followUpAssignment);
+                        }
+
+                        assignmentRepository.incrementInBatch(batch, user.getId(), assignment.getId(), 1,
+                                followUpTemplate != null ? RecruiterTemplateAssignment.AssignmentStatus.MOVED_TO_FOLLOWUP : null);
+                    }
+
+                    return batch.commitAsync();
+                },
+                MoreExecutors.directExecutor());
+
+        ApiFutures.addCallback(commit, new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(Integer writes) {
+                sample.stop(bookkeepingTimer);
+                log.debug("Template send bookkeeping committed: template={}, recruiter={}, writes={}",
+                        templateId, recruiterId, writes);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                sample.stop(bookkeepingTimer);
+                log.error("Template send bookkeeping failed: template={}, recruiter={}: {}",
+                        templateId, recruiterId, t.getMessage(), t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
     private void moveToFollowUpIfApplicable(String templateId, String recruiterId, User user, EmailTemplate currentTemplate) {
+        if (followUpEngineEnabled) {
+            // The send stamped lastEmailSentAt; the engine moves the assignment once the delay has passed
+            return;
+        }
+
         try {
             // Find assignments by template and recruiter
             List<RecruiterTemplateAssignment> assignments = assignmentRepository
@@ -488,15 +650,17 @@ public class EmailServiceImpl implements EmailService {
                 followUpAssignment.setYearAssigned(assignment.getYearAssigned());
                 followUpAssignment.setAssignmentStatus(RecruiterTemplateAssignment.AssignmentStatus.ACTIVE.name());
                 followUpAssignment.setEmailsSent(assignment.getEmailsSent());
-                followUpAssignment.setLastEmailSentAt(assignment.getLastEmailSentAt());
+                followUpAssignment.setLastEmailSentAt(Timestamp.now());
 
                 assignmentRepository.save(user.getId(), followUpAssignment);
 
-                assignment.setAssignmentStatus(RecruiterTemplateAssignment.AssignmentStatus.MOVED_TO_FOLLOWUP.name());
-                assignmentRepository.save(user.getId(), assignment);
+                assignmentRepository.updateStatus(user.getId(), assignment.getId(),
+                        RecruiterTemplateAssignment.AssignmentStatus.MOVED_TO_FOLLOWUP);
             }
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Error moving to follow-up: {}", e.getMessage());
         } catch (Exception e) {
             log.error("Error moving to follow-up: {}", e.getMessage());
@@ -2,9 +2,12 @@ package com.ecold.service.impl;
 
 import com.ecold.dto.EmailTemplateDto;
 import com.ecold.entity.EmailTemplate;
+import com.ecold.entity.ScheduledEmail;
 import com.ecold.entity.User;
 import com.ecold.exception.TemplateValidationException;
 import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
+import com.ecold.repository.firestore.ScheduledEmailFirestoreRepository;
 import com.ecold.repository.firestore.UserFirestoreRepository;
 import com.ecold.service.EmailTemplateService;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -26,6 +29,9 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
 
     private final EmailTemplateFirestoreRepository templateFirestoreRepository;
     private final UserFirestoreRepository userFirestoreRepository;
+    private final ScheduledEmailFirestoreRepository scheduledEmailRepository;
+    private final FirestoreBatchWriter batchWriter;
+    private final CompiledTemplateCache templateCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -140,6 +146,15 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
                 }
             }
 
+            // New content means a new version; pending compact emails keep the content they were scheduled with
+            boolean contentChanged = !Objects.equals(existingTemplate.getSubject(), templateDto.getSubject())
+                    || !Objects.equals(existingTemplate.getBody(), templateDto.getBody());
+            if (contentChanged) {
+                materializePendingCompactEmails(currentUser.getId(), existingTemplate);
+                long version = existingTemplate.getVersion() != null ? existingTemplate.getVersion() : 1L;
+                existingTemplate.setVersion(version + 1);
+            }
+
             existingTemplate.setName(templateDto.getName());
             existingTemplate.setSubject(templateDto.getSubject());
             existingTemplate.setBody(templateDto.getBody());
@@ -168,6 +183,8 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
             EmailTemplate template = templateFirestoreRepository.findById(currentUser.getId(), id)
                     .orElseThrow(() -> new RuntimeException("Template not found with id: " + id));
 
+            // Emails already scheduled from this template still go out with its last content
+            materializePendingCompactEmails(currentUser.getId(), template);
             templateFirestoreRepository.delete(currentUser.getId(), id);
         } catch (ExecutionException | InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -282,13 +299,8 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
     public void incrementUsage(String id) {
         try {
             User currentUser = getCurrentUser();
-            EmailTemplate template = templateFirestoreRepository.findById(currentUser.getId(), id)
-                    .orElseThrow(() -> new RuntimeException("Template not found with id: " + id));
-
-            template.setUsageCount(template.getUsageCount() + 1);
-            template.setLastUsed(Timestamp.now());
-            template.setUpdatedAt(Timestamp.now());
-            templateFirestoreRepository.save(currentUser.getId(), template);
+            // Field-level update: fails with NOT_FOUND if the template does not exist
+            templateFirestoreRepository.increment(currentUser.getId(), id, 1, 0);
         } catch (ExecutionException | InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Error incrementing usage", e);
@@ -339,6 +351,7 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
             User currentUser = getCurrentUser();
             List<EmailTemplate> userTemplates = templateFirestoreRepository.findByUser(currentUser.getId());
             for (EmailTemplate template : userTemplates) {
+                materializePendingCompactEmails(currentUser.getId(), template);
                 templateFirestoreRepository.delete(currentUser.getId(), template.getId());
             }
         } catch (ExecutionException | InterruptedException e) {
@@ -347,6 +360,36 @@ public class EmailTemplateServiceImpl implements EmailTemplateService {
         }
     }
 
+    /**
+     * Render pending compact scheduled emails with the template's current content
+     * before it is replaced or deleted, so edits never change emails that are already
+     * scheduled and a deleted template never fails them at dispatch.
+     * Failed emails still awaiting a retry count as pending.
+     */
+    private void materializePendingCompactEmails(String userId, EmailTemplate template)
+            throws ExecutionException, InterruptedException {
+        List<ScheduledEmail> pending = scheduledEmailRepository.findByUserAndTemplate(userId, template.getId()).stream()
+                .filter(email -> ScheduledEmail.Status.SCHEDULED.name().equals(email.getStatus())
+                        || (ScheduledEmail.Status.FAILED.name().equals(email.getStatus()) && email.getNextAttemptAt() != null))
+                .filter(ScheduledEmail::isCompact)
+                .collect(Collectors.toList());
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        CompiledTemplateCache.CompiledEmail compiled = templateCache.compile(template);
+        FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+
+        for (ScheduledEmail email : pending) {
+            email.setSubject(compiled.renderSubject(email.getPlaceholderValues()));
+            email.setBody(compiled.renderBody(email.getPlaceholderValues()));
+            email.setPlaceholderValues(null);
+            scheduledEmailRepository.saveInBatch(batch, userId, email);
+        }
+        batch.commit();
+    }
+
     private User getCurrentUser() {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
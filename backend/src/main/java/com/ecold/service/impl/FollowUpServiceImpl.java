@@ -0,0 +1,249 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.EmailRequest;
+import com.ecold.entity.EmailTemplate;
+import com.ecold.entity.RecruiterContact;
+import com.ecold.entity.RecruiterTemplateAssignment;
+import com.ecold.entity.ScheduledEmail;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
+import com.ecold.repository.firestore.RecruiterContactFirestoreRepository;
+import com.ecold.repository.firestore.RecruiterTemplateAssignmentFirestoreRepository;
+import com.ecold.repository.firestore.ScheduledEmailFirestoreRepository;
+import com.ecold.repository.firestore.UserFirestoreRepository;
+import com.ecold.service.FollowUpService;
+import com.ecold.util.TemplatePlaceholders;
+import com.google.cloud.Timestamp;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Automatic follow-up engine
+ * Finds ACTIVE assignments whose last email is older than templates.follow-up.delay-days,
+ * moves them to their follow-up template and schedules the follow-up email.
+ * While it is enabled it owns that transition: manual sends only stamp lastEmailSentAt.
+ * All writes for a user go through one chunked WriteBatch; status changes are field-level
+ * updates so they never overwrite emailsSent increments from concurrent sends.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FollowUpServiceImpl implements FollowUpService {
+
+    // Recruiters in these states have replied or been closed out and are never followed up
+    private static final Set<RecruiterContact.ContactStatus> NO_FOLLOW_UP_STATUSES = EnumSet.of(
+            RecruiterContact.ContactStatus.RESPONDED,
+            RecruiterContact.ContactStatus.REJECTED,
+            RecruiterContact.ContactStatus.INTERVIEWED,
+            RecruiterContact.ContactStatus.HIRED);
+
+    private final UserFirestoreRepository userFirestoreRepository;
+    private final RecruiterTemplateAssignmentFirestoreRepository assignmentRepository;
+    private final RecruiterContactFirestoreRepository recruiterRepository;
+    private final EmailTemplateFirestoreRepository templateRepository;
+    private final ScheduledEmailFirestoreRepository scheduledEmailRepository;
+    private final FirestoreBatchWriter batchWriter;
+    private final CompiledTemplateCache templateCache;
+
+    @Value("${templates.follow-up.auto-assign:true}")
+    private boolean autoAssign;
+
+    @Value("${templates.follow-up.delay-days:7}")
+    private int delayDays;
+
+    @Override
+    @Scheduled(fixedDelayString = "${templates.follow-up.check-interval-ms:3600000}", initialDelay = 60000)
+    public void processFollowUps() {
+        if (!autoAssign) {
+            log.debug("Automatic follow-ups are disabled");
+            return;
+        }
+
+        log.info("=== Starting follow-up processing (delay {} days) ===", delayDays);
+        long startTime = System.currentTimeMillis();
+        int total = 0;
+
+        try {
+            List<User> users = userFirestoreRepository.findAll();
+
+            for (User user : users) {
+                // Follow-ups go out through the scheduled path, which sends via Gmail OAuth
+                if (user.getProviderEnum() != User.Provider.GOOGLE) {
+                    continue;
+                }
+
+                try {
+                    total += processUserFollowUps(user);
+                } catch (Exception e) {
+                    log.error("Error processing follow-ups for user {}: {}", user.getEmail(), e.getMessage(), e);
+                }
+            }
+
+            log.info("=== Follow-up processing completed === Users: {}, Follow-ups scheduled: {}, Duration: {}ms",
+                    users.size(), total, System.currentTimeMillis() - startTime);
+
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Error processing follow-ups", e);
+        }
+    }
+
+    @Override
+    public int processUserFollowUps(User user) {
+        try {
+            Instant cutoffInstant = Instant.now().minus(Duration.ofDays(delayDays));
+            Timestamp cutoff = Timestamp.ofTimeSecondsAndNanos(cutoffInstant.getEpochSecond(), cutoffInstant.getNano());
+
+            List<RecruiterTemplateAssignment> stale = assignmentRepository.findByUserAndStatusAndLastEmailSentBefore(
+                    user.getId(), RecruiterTemplateAssignment.AssignmentStatus.ACTIVE.name(), cutoff);
+
+            if (stale.isEmpty()) {
+                return 0;
+            }
+
+            Map<String, RecruiterContact> recruiters = recruiterRepository.findAllById(user.getId(),
+                    stale.stream().map(RecruiterTemplateAssignment::getRecruiterId).collect(Collectors.toSet()));
+
+            FollowUpResolver resolver = new FollowUpResolver(user.getId());
+            FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+            int scheduled = 0;
+            int closed = 0;
+
+            for (RecruiterTemplateAssignment assignment : stale) {
+                RecruiterContact recruiter = recruiters.get(assignment.getRecruiterId());
+
+                if (recruiter == null || (recruiter.getStatus() != null
+                        && NO_FOLLOW_UP_STATUSES.contains(recruiter.getStatusEnum()))) {
+                    // Recruiter replied or no longer exists: close the sequence
+                    assignmentRepository.updateStatusInBatch(batch, user.getId(), assignment.getId(),
+                            RecruiterTemplateAssignment.AssignmentStatus.COMPLETED);
+                    closed++;
+                    continue;
+                }
+
+                Optional<EmailTemplate> followUp = resolver.resolve(assignment.getTemplateId());
+
+                if (followUp.isEmpty() || recruiter.getEmail() == null || recruiter.getEmail().isBlank()) {
+                    // End of the follow-up chain
+                    assignmentRepository.updateStatusInBatch(batch, user.getId(), assignment.getId(),
+                            RecruiterTemplateAssignment.AssignmentStatus.COMPLETED);
+                    closed++;
+                    continue;
+                }
+
+                EmailTemplate followUpTemplate = followUp.get();
+
+                RecruiterTemplateAssignment followUpAssignment = new RecruiterTemplateAssignment();
+                followUpAssignment.setRecruiterId(assignment.getRecruiterId());
+                followUpAssignment.setTemplateId(followUpTemplate.getId());
+                followUpAssignment.setWeekAssigned(assignment.getWeekAssigned());
+                followUpAssignment.setYearAssigned(assignment.getYearAssigned());
+                followUpAssignment.setAssignmentStatusEnum(RecruiterTemplateAssignment.AssignmentStatus.ACTIVE);
+                followUpAssignment.setEmailsSent(0);
+                assignmentRepository.saveInBatch(batch, user.getId(), followUpAssignment);
+
+                assignmentRepository.updateStatusInBatch(batch, user.getId(), assignment.getId(),
+                        RecruiterTemplateAssignment.AssignmentStatus.MOVED_TO_FOLLOWUP);
+
+                // Stored compact: rendered from the cached template at dispatch
+                CompiledTemplateCache.CompiledEmail compiled = templateCache.compile(followUpTemplate);
+                Map<String, String> values = TemplatePlaceholders.valuesFor(recruiter, user, null);
+                ScheduledEmail followUpEmail = ScheduledEmail.builder()
+                        .recipientEmail(recruiter.getEmail())
+                        .templateVersion(compiled.getVersion())
+                        .placeholderValues(compiled.retainUsed(values))
+                        .scheduleTime(Timestamp.now())
+                        .templateId(followUpTemplate.getId())
+                        .recruiterId(recruiter.getId())
+                        .isHtml(false)
+                        .priority(EmailRequest.Priority.NORMAL.name())
+                        .status(ScheduledEmail.Status.SCHEDULED.name())
+                        .build();
+                scheduledEmailRepository.saveInBatch(batch, user.getId(), followUpEmail);
+                scheduled++;
+            }
+
+            int writes = batch.commit();
+            log.info("Follow-ups for user {}: {} scheduled, {} sequences closed ({} writes)",
+                    user.getEmail(), scheduled, closed, writes);
+            return scheduled;
+
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error processing follow-ups for user " + user.getEmail(), e);
+        }
+    }
+
+    /**
+     * Resolves the follow-up template for each template once per run.
+     * A template's explicit followUpTemplateId wins; otherwise the user's active FOLLOW_UP
+     * template is used, except for FOLLOW_UP templates themselves so chains always terminate.
+     */
+    private class FollowUpResolver {
+
+        private final String userId;
+        private final Map<String, Optional<EmailTemplate>> resolved = new HashMap<>();
+        private Optional<EmailTemplate> defaultFollowUp;
+
+        FollowUpResolver(String userId) {
+            this.userId = userId;
+        }
+
+        Optional<EmailTemplate> resolve(String templateId) throws ExecutionException, InterruptedException {
+            if (templateId == null) {
+                return Optional.empty();
+            }
+
+            Optional<EmailTemplate> cached = resolved.get(templateId);
+            if (cached != null) {
+                return cached;
+            }
+
+            Optional<EmailTemplate> followUp = Optional.empty();
+            Optional<EmailTemplate> current = templateRepository.findById(userId, templateId);
+
+            if (current.isPresent()) {
+                EmailTemplate template = current.get();
+
+                if (template.getFollowUpTemplateId() != null) {
+                    followUp = templateRepository.findById(userId, template.getFollowUpTemplateId());
+                } else if (!EmailTemplate.Category.FOLLOW_UP.name().equals(template.getCategory())) {
+                    followUp = defaultFollowUp();
+                }
+            }
+
+            // Never follow up with the same template again
+            followUp = followUp.filter(t -> !templateId.equals(t.getId())
+                    && !EmailTemplate.Status.ARCHIVED.name().equals(t.getStatus()));
+
+            resolved.put(templateId, followUp);
+            return followUp;
+        }
+
+        private Optional<EmailTemplate> defaultFollowUp() throws ExecutionException, InterruptedException {
+            if (defaultFollowUp == null) {
+                defaultFollowUp = templateRepository.findByUserAndCategoryAndStatus(userId,
+                                EmailTemplate.Category.FOLLOW_UP.name(),
+                                EmailTemplate.Status.ACTIVE.name())
+                        .stream()
+                        .findFirst();
+            }
+            return defaultFollowUp;
+        }
+    }
+}
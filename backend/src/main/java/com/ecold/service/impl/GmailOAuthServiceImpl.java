@@ -2,32 +2,39 @@ package com.ecold.service.impl;
 
 import com.ecold.dto.EmailRequest;
 import com.ecold.dto.EmailResponse;
+import com.ecold.entity.Resume;
 import com.ecold.entity.User;
+import com.ecold.repository.firestore.ResumeFirestoreRepository;
 import com.ecold.repository.firestore.UserFirestoreRepository;
 import com.ecold.service.EmailService;
+import com.ecold.service.GmailQuotaService;
 import com.ecold.service.GoogleOAuthService;
+import com.ecold.util.MimeMessageEncoder;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.model.Draft;
+import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import jakarta.mail.MessagingException;
-import jakarta.mail.Session;
 import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
-import java.io.ByteArrayOutputStream;
+import jakarta.mail.internet.MimeMultipart;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
 import java.time.LocalDateTime;
-import java.util.Base64;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -39,10 +46,19 @@ public class GmailOAuthServiceImpl implements EmailService {
 
     private final UserFirestoreRepository userRepository;
     private final GoogleOAuthService googleOAuthService;
+    private final ResumeFirestoreRepository resumeRepository;
+    private final ResumeAttachmentCache resumeAttachmentCache;
+    private final GmailQuotaService gmailQuotaService;
+
+    @Value("${app.email.gmail.media-upload-threshold-bytes:524288}")
+    private int mediaUploadThresholdBytes;
+
+    private volatile NetHttpTransport httpTransport;
 
     @Override
     public EmailResponse sendEmail(EmailRequest emailRequest, User user) {
         log.info("Sending email immediately via Gmail OAuth for user: {} to: {}", user.getEmail(), emailRequest.getTo());
+        OptionalLong reservedMinute = OptionalLong.empty();
 
         try {
             // Check if user has valid Gmail tokens
@@ -70,6 +86,12 @@ public class GmailOAuthServiceImpl implements EmailService {
                 }
             }
 
+            // Reserve against the daily cap before calling Gmail
+            reservedMinute = gmailQuotaService.tryReserveSend(user.getId());
+            if (reservedMinute.isEmpty()) {
+                return EmailResponse.failure("QUOTA_EXCEEDED", "Daily Gmail sending limit reached, try again later");
+            }
+
             // Send email using Gmail API
             Gmail gmailService = createGmailService(user);
             String messageId = sendGmailMessage(gmailService, emailRequest, user);
@@ -78,6 +100,9 @@ public class GmailOAuthServiceImpl implements EmailService {
             return EmailResponse.success(messageId, "Email sent successfully via Gmail");
 
         } catch (Exception e) {
+            if (reservedMinute.isPresent()) {
+                gmailQuotaService.releaseSend(user.getId(), reservedMinute.getAsLong());
+            }
             log.error("Failed to send email via Gmail OAuth to {}: {}", emailRequest.getTo(), e.getMessage(), e);
             return EmailResponse.failure("GMAIL_SEND_FAILED", "Failed to send email via Gmail: " + e.getMessage());
         }
@@ -151,6 +176,32 @@ public class GmailOAuthServiceImpl implements EmailService {
         return sendEmail(testRequest, user);
     }
 
+    /**
+     * Look up a message in the user's Sent mail by its RFC 822 Message-ID.
+     * Returns the Gmail message id if it is there; throws if Gmail cannot be asked.
+     */
+    public Optional<String> findSentMessageId(User user, String rfcMessageId) throws Exception {
+        if (!hasValidGmailTokens(user)) {
+            throw new IllegalStateException("User is not authenticated with Gmail");
+        }
+        if (isTokenExpired(user)) {
+            if (!googleOAuthService.refreshAccessToken(user.getRefreshToken())) {
+                throw new IllegalStateException("Failed to refresh Gmail authentication");
+            }
+            user = userRepository.findById(user.getId()).orElse(user);
+        }
+
+        ListMessagesResponse found = createGmailService(user).users().messages().list("me")
+                .setQ("in:sent rfc822msgid:" + rfcMessageId)
+                .setMaxResults(1L)
+                .execute();
+
+        if (found.getMessages() == null || found.getMessages().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(found.getMessages().get(0).getId());
+    }
+
     private boolean hasValidGmailTokens(User user) {
         return user.getProviderEnum() == User.Provider.GOOGLE &&
                user.getAccessToken() != null &&
@@ -167,15 +218,33 @@ public class GmailOAuthServiceImpl implements EmailService {
         return expiresAt.getSeconds() < nowMinusBuffer.getSeconds();
     }
 
+    /**
+     * One HTTP transport shared by every Gmail client; it is thread-safe and owns the connection pool
+     */
+    private NetHttpTransport httpTransport() throws GeneralSecurityException, IOException {
+        NetHttpTransport transport = httpTransport;
+        if (transport == null) {
+            synchronized (this) {
+                if (httpTransport == null) {
+                    httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+                }
+                transport = httpTransport;
+            }
+        }
+        return transport;
+    }
+
     private Gmail createGmailService(User user) throws Exception {
+        NetHttpTransport transport = httpTransport();
+
         GoogleCredential credential = new GoogleCredential.Builder()
-                .setTransport(GoogleNetHttpTransport.newTrustedTransport())
+                .setTransport(transport)
                 .setJsonFactory(GsonFactory.getDefaultInstance())
                 .build()
                 .setAccessToken(user.getAccessToken());
 
         return new Gmail.Builder(
-                GoogleNetHttpTransport.newTrustedTransport(),
+                transport,
                 GsonFactory.getDefaultInstance(),
                 credential)
                 .setApplicationName("ECold Application")
@@ -184,23 +253,54 @@ public class GmailOAuthServiceImpl implements EmailService {
 
     private String sendGmailMessage(Gmail gmailService, EmailRequest emailRequest, User user) throws Exception {
         MimeMessage mimeMessage = createMimeMessage(emailRequest, user);
-        Message message = createGmailMessage(mimeMessage);
+        Message sentMessage;
+
+        Optional<String> raw = MimeMessageEncoder.toBase64Url(mimeMessage, mediaUploadThresholdBytes);
+        if (raw.isPresent()) {
+            Message message = new Message();
+            message.setRaw(raw.get());
+            sentMessage = gmailService.users().messages().send("me", message).execute();
+        } else {
+            // Large messages go up as message/rfc822 media, streamed from the message and never base64-encoded
+            Gmail.Users.Messages.Send send = gmailService.users().messages()
+                    .send("me", new Message(), MimeMessageEncoder.mediaContent(mimeMessage));
+            send.getMediaHttpUploader().setDirectUploadEnabled(true);
+            sentMessage = send.execute();
+        }
 
-        Message sentMessage = gmailService.users().messages().send("me", message).execute();
         return sentMessage.getId();
     }
 
 
-    private MimeMessage createMimeMessage(EmailRequest emailRequest, User user) throws MessagingException, UnsupportedEncodingException {
-        Properties props = new Properties();
-        Session session = Session.getDefaultInstance(props, null);
-
-        MimeMessage mimeMessage = new MimeMessage(session);
+    private MimeMessage createMimeMessage(EmailRequest emailRequest, User user)
+            throws MessagingException, IOException, ExecutionException, InterruptedException {
+        // Idempotent sends carry a Message-ID derived from their key, so Sent mail can be searched for them
+        MimeMessage mimeMessage = emailRequest.getIdempotencyKey() != null
+                ? MimeMessageEncoder.newMessage(SendIdempotencyGuard.rfcMessageId(user.getId(), emailRequest.getIdempotencyKey()))
+                : MimeMessageEncoder.newMessage();
         mimeMessage.setFrom(new InternetAddress(user.getEmail(), user.getName()));
         mimeMessage.addRecipient(jakarta.mail.Message.RecipientType.TO, new InternetAddress(emailRequest.getTo()));
         mimeMessage.setSubject(emailRequest.getSubject());
 
-        if (emailRequest.isHtml()) {
+        if (emailRequest.getResumeId() != null) {
+            Resume resume = emailRequest.getResume() != null && emailRequest.getResumeId().equals(emailRequest.getResume().getId())
+                    ? emailRequest.getResume()
+                    : resumeRepository.findById(user.getId(), emailRequest.getResumeId())
+                            .orElseThrow(() -> new RuntimeException("Resume not found: " + emailRequest.getResumeId()));
+
+            MimeBodyPart bodyPart = new MimeBodyPart();
+            if (emailRequest.isHtml()) {
+                bodyPart.setContent(emailRequest.getBody(), "text/html; charset=utf-8");
+            } else {
+                bodyPart.setText(emailRequest.getBody(), "utf-8");
+            }
+
+            // Attachment is spliced in already base64-encoded from the cache
+            MimeMultipart multipart = new MimeMultipart();
+            multipart.addBodyPart(bodyPart);
+            multipart.addBodyPart(resumeAttachmentCache.attachmentPart(resume));
+            mimeMessage.setContent(multipart);
+        } else if (emailRequest.isHtml()) {
             mimeMessage.setContent(emailRequest.getBody(), "text/html; charset=utf-8");
         } else {
             mimeMessage.setText(emailRequest.getBody());
@@ -239,15 +339,4 @@ public class GmailOAuthServiceImpl implements EmailService {
 
         return mimeMessage;
     }
-
-    private Message createGmailMessage(MimeMessage mimeMessage) throws MessagingException, IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        mimeMessage.writeTo(buffer);
-        byte[] bytes = buffer.toByteArray();
-        String encodedEmail = Base64.getUrlEncoder().encodeToString(bytes);
-
-        Message message = new Message();
-        message.setRaw(encodedEmail);
-        return message;
-    }
 }
\ No newline at end of file
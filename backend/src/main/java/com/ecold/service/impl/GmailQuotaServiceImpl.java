@@ -0,0 +1,281 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.GmailQuotaResponse;
+import com.ecold.entity.GmailQuotaCheckpoint;
+import com.ecold.repository.firestore.GmailQuotaFirestoreRepository;
+import com.ecold.service.GmailQuotaService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gmail quota ledger
+ * Each user's sends and API units are counted in per-minute buckets over a sliding 24-hour
+ * window, kept in memory and checkpointed to Firestore periodically so a restart does not
+ * forget the day's usage. Sends are reserved before the Gmail call, so concurrent sends
+ * cannot overshoot the cap.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GmailQuotaServiceImpl implements GmailQuotaService {
+
+    private static final int WINDOW_MINUTES = 24 * 60;
+
+    private final GmailQuotaFirestoreRepository quotaRepository;
+
+    @Value("${app.email.gmail.quota.daily-send-limit:500}")
+    private long dailySendLimit;
+
+    // 0 = track units without enforcing a cap
+    @Value("${app.email.gmail.quota.daily-unit-limit:0}")
+    private long dailyUnitLimit;
+
+    @Value("${app.email.gmail.quota.send-units:100}")
+    private long sendUnits;
+
+    private final Map<String, Ledger> ledgers = new ConcurrentHashMap<>();
+
+    // Replaced in tests to move between minutes
+    Clock clock = Clock.systemUTC();
+
+    @Override
+    public OptionalLong tryReserveSend(String userId) {
+        long minute = currentMinute();
+        Ledger ledger = ledger(userId);
+
+        synchronized (ledger) {
+            if (ledger.sends(minute) + 1 > dailySendLimit
+                    || (dailyUnitLimit > 0 && ledger.units(minute) + sendUnits > dailyUnitLimit)) {
+                log.warn("Gmail quota exhausted for user {}: {} sends, {} units in the last 24h",
+                        userId, ledger.sends(minute), ledger.units(minute));
+                return OptionalLong.empty();
+            }
+            ledger.add(minute, 1, sendUnits);
+            return OptionalLong.of(minute);
+        }
+    }
+
+    @Override
+    public void releaseSend(String userId, long reservedMinute) {
+        Ledger ledger = ledger(userId);
+        synchronized (ledger) {
+            if (!ledger.release(reservedMinute, currentMinute())) {
+                log.debug("Send reserved in minute {} for user {} already left the window", reservedMinute, userId);
+            }
+        }
+    }
+
+    @Override
+    public void recordUnits(String userId, long units) {
+        Ledger ledger = ledger(userId);
+        synchronized (ledger) {
+            ledger.add(currentMinute(), 0, units);
+        }
+    }
+
+    @Override
+    public boolean hasCapacity(String userId, long sends) {
+        long minute = currentMinute();
+        Ledger ledger = ledger(userId);
+        synchronized (ledger) {
+            return ledger.sends(minute) + sends <= dailySendLimit
+                    && (dailyUnitLimit <= 0 || ledger.units(minute) + sends * sendUnits <= dailyUnitLimit);
+        }
+    }
+
+    @Override
+    public GmailQuotaResponse getQuota(String userId) {
+        long minute = currentMinute();
+        Ledger ledger = ledger(userId);
+
+        long sendsUsed;
+        long unitsUsed;
+        synchronized (ledger) {
+            sendsUsed = ledger.sends(minute);
+            unitsUsed = ledger.units(minute);
+        }
+
+        return GmailQuotaResponse.builder()
+                .sendsUsed(sendsUsed)
+                .sendLimit(dailySendLimit)
+                .sendsRemaining(Math.max(0, dailySendLimit - sendsUsed))
+                .unitsUsed(unitsUsed)
+                .unitLimit(dailyUnitLimit)
+                .unitsRemaining(dailyUnitLimit > 0 ? Math.max(0, dailyUnitLimit - unitsUsed) : null)
+                .windowHours(WINDOW_MINUTES / 60)
+                .build();
+    }
+
+    /**
+     * Write changed ledgers to Firestore and drop ledgers with no usage left in the window
+     */
+    @Scheduled(fixedDelayString = "${app.email.gmail.quota.checkpoint-interval-ms:300000}")
+    @PreDestroy
+    public void checkpoint() {
+        long minute = currentMinute();
+        int saved = 0;
+
+        for (Map.Entry<String, Ledger> entry : ledgers.entrySet()) {
+            Ledger ledger = entry.getValue();
+            GmailQuotaCheckpoint checkpoint;
+
+            synchronized (ledger) {
+                if (!ledger.dirty) {
+                    if (ledger.sends(minute) == 0 && ledger.units(minute) == 0) {
+                        ledgers.remove(entry.getKey(), ledger);
+                    }
+                    continue;
+                }
+                checkpoint = ledger.toCheckpoint(minute);
+                ledger.dirty = false;
+            }
+
+            try {
+                quotaRepository.save(entry.getKey(), checkpoint);
+                saved++;
+            } catch (ExecutionException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (ledger) {
+                    ledger.dirty = true;
+                }
+                log.error("Failed to checkpoint Gmail quota for user {}: {}", entry.getKey(), e.getMessage(), e);
+            }
+        }
+
+        if (saved > 0) {
+            log.debug("Gmail quota checkpoints written: {}", saved);
+        }
+    }
+
+    /**
+     * The user's ledger, restored from the last checkpoint the first time it is needed
+     */
+    private Ledger ledger(String userId) {
+        return ledgers.computeIfAbsent(userId, id -> {
+            Ledger ledger = new Ledger();
+            try {
+                quotaRepository.find(id).ifPresent(checkpoint -> ledger.restore(checkpoint, currentMinute()));
+            } catch (ExecutionException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                log.error("Failed to load Gmail quota checkpoint for user {}: {}", id, e.getMessage(), e);
+            }
+            return ledger;
+        });
+    }
+
+    private long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(clock.millis());
+    }
+
+    /**
+     * Ring of per-minute buckets covering the last 24 hours.
+     * A slot belongs to the minute stored in bucketMinute; stale slots count as empty.
+     */
+    private static final class Ledger {
+
+        private final long[] bucketMinute = new long[WINDOW_MINUTES];
+        private final long[] bucketSends = new long[WINDOW_MINUTES];
+        private final long[] bucketUnits = new long[WINDOW_MINUTES];
+        private boolean dirty;
+
+        private Ledger() {
+            Arrays.fill(bucketMinute, -1);
+        }
+
+        void add(long minute, long sends, long units) {
+            int slot = (int) (minute % WINDOW_MINUTES);
+            if (bucketMinute[slot] != minute) {
+                bucketMinute[slot] = minute;
+                bucketSends[slot] = 0;
+                bucketUnits[slot] = 0;
+            }
+            bucketSends[slot] = Math.max(0, bucketSends[slot] + sends);
+            bucketUnits[slot] += units;
+            dirty = true;
+        }
+
+        /**
+         * Take one send back out of the bucket it was reserved in. False if that bucket has
+         * left the window or been reused, since the reservation no longer counts anyway.
+         */
+        boolean release(long reservedMinute, long minute) {
+            int slot = (int) (reservedMinute % WINDOW_MINUTES);
+            if (!inWindow(reservedMinute, minute) || bucketMinute[slot] != reservedMinute || bucketSends[slot] == 0) {
+                return false;
+            }
+            bucketSends[slot]--;
+            dirty = true;
+            return true;
+        }
+
+        long sends(long minute) {
+            long total = 0;
+            for (int slot = 0; slot < WINDOW_MINUTES; slot++) {
+                if (inWindow(bucketMinute[slot], minute)) {
+                    total += bucketSends[slot];
+                }
+            }
+            return total;
+        }
+
+        long units(long minute) {
+            long total = 0;
+            for (int slot = 0; slot < WINDOW_MINUTES; slot++) {
+                if (inWindow(bucketMinute[slot], minute)) {
+                    total += bucketUnits[slot];
+                }
+            }
+            return total;
+        }
+
+        GmailQuotaCheckpoint toCheckpoint(long minute) {
+            List<Long> minutes = new ArrayList<>();
+            List<Long> sends = new ArrayList<>();
+            List<Long> units = new ArrayList<>();
+
+            for (int slot = 0; slot < WINDOW_MINUTES; slot++) {
+                if (inWindow(bucketMinute[slot], minute) && (bucketSends[slot] > 0 || bucketUnits[slot] > 0)) {
+                    minutes.add(bucketMinute[slot]);
+                    sends.add(bucketSends[slot]);
+                    units.add(bucketUnits[slot]);
+                }
+            }
+            return GmailQuotaCheckpoint.builder().minutes(minutes).sends(sends).units(units).build();
+        }
+
+        void restore(GmailQuotaCheckpoint checkpoint, long minute) {
+            if (checkpoint.getMinutes() == null) {
+                return;
+            }
+            for (int i = 0; i < checkpoint.getMinutes().size(); i++) {
+                long bucket = checkpoint.getMinutes().get(i);
+                if (inWindow(bucket, minute)) {
+                    add(bucket, checkpoint.getSends().get(i), checkpoint.getUnits().get(i));
+                }
+            }
+            dirty = false;
+        }
+
+        private static boolean inWindow(long bucket, long minute) {
+            return bucket >= 0 && bucket > minute - WINDOW_MINUTES && bucket <= minute;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+import com.ecold.entity.InboxCounters;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.InboxCountersFirestoreRepository;
+import com.ecold.repository.firestore.IncomingEmailFirestoreRepository;
+import com.ecold.repository.firestore.UserFirestoreRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Inbox counters with a short-lived in-process cache
+ * Reads the per-user counters document instead of counting emails, and keeps the result
+ * for app.incoming.counters.cache-ttl-ms so a dashboard polling several endpoints costs
+ * one document read. Changes made on this instance invalidate the entry right away.
+ * A periodic job recomputes every user's counters with count() aggregations, which also
+ * creates them for users whose emails predate the counters. Increments create the document
+ * when it is missing, holding only the new counts, so a document that has never been
+ * reconciled is recomputed on first read as well.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InboxCounterCache {
+
+    private final InboxCountersFirestoreRepository countersRepository;
+    private final IncomingEmailFirestoreRepository incomingEmailRepository;
+    private final UserFirestoreRepository userFirestoreRepository;
+
+    @Value("${app.incoming.counters.cache-ttl-ms:15000}")
+    private long cacheTtlMs;
+
+    @Value("${app.incoming.counters.reconcile-enabled:true}")
+    private boolean reconcileEnabled;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Unread emails per category for the user
+     */
+    public Map<IncomingEmail.EmailCategory, Long> unreadCounts(String userId)
+            throws ExecutionException, InterruptedException {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(userId);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.unread;
+        }
+
+        InboxCounters counters = countersRepository.find(userId).orElse(null);
+        if (counters == null || counters.getReconciledAt() == null) {
+            counters = reconcile(userId);
+        }
+
+        Map<IncomingEmail.EmailCategory, Long> unread = new EnumMap<>(IncomingEmail.EmailCategory.class);
+        for (IncomingEmail.EmailCategory category : IncomingEmail.EmailCategory.values()) {
+            Long count = counters.getUnread() != null ? counters.getUnread().get(category.name()) : null;
+            // Increments and decrements racing a reconcile can briefly dip below zero
+            unread.put(category, count != null ? Math.max(0, count) : 0);
+        }
+
+        Map<IncomingEmail.EmailCategory, Long> result = Collections.unmodifiableMap(unread);
+        cache.put(userId, new Entry(result, now + cacheTtlMs));
+        return result;
+    }
+
+    public void invalidate(String userId) {
+        cache.remove(userId);
+    }
+
+    /**
+     * Recompute every user's counters to correct drift
+     */
+    @Scheduled(fixedDelayString = "${app.incoming.counters.reconcile-interval-ms:21600000}", initialDelay = 300000)
+    public void reconcileAll() {
+        if (!reconcileEnabled) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int users = 0;
+
+        try {
+            for (User user : userFirestoreRepository.findAll()) {
+                try {
+                    reconcile(user.getId());
+                    users++;
+                } catch (ExecutionException e) {
+                    log.error("Failed to reconcile inbox counters for user {}: {}", user.getEmail(), e.getMessage(), e);
+                }
+            }
+        } catch (ExecutionException e) {
+            log.error("Inbox counter reconcile stopped", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Inbox counter reconcile interrupted", e);
+        }
+
+        log.info("Inbox counters reconciled for {} users in {}ms", users, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Recount the user's emails per category and replace the counters document.
+     * The recount runs in a transaction that holds the counters document, so increments are
+     * applied after it rather than lost; an email stored while the counts run can still be
+     * counted twice until the next run.
+     */
+    public InboxCounters reconcile(String userId) throws ExecutionException, InterruptedException {
+        IncomingEmailFirestoreRepository.CounterRecount recount = incomingEmailRepository.recountCounters(userId);
+        InboxCounters previous = recount.getPrevious();
+        InboxCounters counters = recount.getCounters();
+        if (previous != null && !(Objects.equals(nonZero(previous.getUnread()), counters.getUnread())
+                && Objects.equals(nonZero(previous.getTotal()), counters.getTotal()))) {
+            log.info("Inbox counters drifted for user {}: unread {} -> {}, total {} -> {}",
+                    userId, previous.getUnread(), counters.getUnread(), previous.getTotal(), counters.getTotal());
+        }
+
+        invalidate(userId);
+        return counters;
+    }
+
+    private static Map<String, Long> nonZero(Map<String, Long> counts) {
+        Map<String, Long> nonZero = new HashMap<>();
+        if (counts != null) {
+            counts.forEach((category, count) -> {
+                if (count != null && count != 0) {
+                    nonZero.put(category, count);
+                }
+            });
+        }
+        return nonZero;
+    }
+
+    private static final class Entry {
+
+        private final Map<IncomingEmail.EmailCategory, Long> unread;
+        private final long expiresAt;
+
+        private Entry(Map<IncomingEmail.EmailCategory, Long> unread, long expiresAt) {
+            this.unread = unread;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
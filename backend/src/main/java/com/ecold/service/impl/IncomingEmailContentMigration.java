@@ -0,0 +1,68 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.IncomingEmailFirestoreRepository;
+import com.ecold.repository.firestore.UserFirestoreRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * One-off move of incoming email bodies into content documents
+ * Runs in the background after startup and migrates every user's emails in batched
+ * writes. Already-migrated emails are not read again, so once every user is done a run
+ * costs one empty query per user and the job can be switched off.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IncomingEmailContentMigration {
+
+    private final UserFirestoreRepository userFirestoreRepository;
+    private final IncomingEmailFirestoreRepository incomingEmailRepository;
+
+    @Value("${app.incoming.content-migration.enabled:true}")
+    private boolean enabled;
+
+    // Two writes per email, so 200 emails fill most of one 500-write batch
+    @Value("${app.incoming.content-migration.page-size:200}")
+    private int pageSize;
+
+    @Value("${app.incoming.body.snippet-length:200}")
+    private int snippetLength;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int migrated = 0;
+
+        try {
+            for (User user : userFirestoreRepository.findAll()) {
+                try {
+                    migrated += incomingEmailRepository.migrateContent(user.getId(), pageSize, snippetLength);
+                } catch (ExecutionException e) {
+                    log.error("Failed to migrate incoming email bodies for user {}: {}", user.getEmail(), e.getMessage(), e);
+                }
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Incoming email content migration stopped", e);
+        }
+
+        if (migrated > 0) {
+            log.info("Incoming email content migration moved {} bodies in {}ms",
+                    migrated, System.currentTimeMillis() - startTime);
+        }
+    }
+}
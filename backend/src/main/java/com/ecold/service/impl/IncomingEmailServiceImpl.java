@@ -1,30 +1,63 @@
 package com.ecold.service.impl;
 
+import com.ecold.entity.GmailSyncState;
 import com.ecold.entity.IncomingEmail;
 import com.ecold.entity.User;
+import com.ecold.repository.firestore.GmailSyncStateFirestoreRepository;
 import com.ecold.repository.firestore.IncomingEmailFirestoreRepository;
+import com.ecold.repository.firestore.IncomingEmailIngestWriter;
 import com.ecold.repository.firestore.UserFirestoreRepository;
+import com.ecold.service.EmailClassifierService;
+import com.ecold.service.GmailQuotaService;
 import com.ecold.service.IncomingEmailService;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.ListHistoryResponse;
 import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
 import com.google.api.services.gmail.model.MessagePart;
 import com.google.api.services.gmail.model.MessagePartHeader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
-import java.util.Base64;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -33,39 +66,104 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
 
     private final IncomingEmailFirestoreRepository incomingEmailRepository;
     private final UserFirestoreRepository userRepository;
+    private final GmailSyncStateFirestoreRepository syncStateRepository;
+    private final GmailQuotaService gmailQuotaService;
+    private final SeenMessageIndex seenMessageIndex;
+    private final EmailCategorizer emailCategorizer;
+    private final EmailClassifierService emailClassifierService;
+    private final MessageBodyExtractor messageBodyExtractor;
+    private final IncomingEmailIngestWriter ingestWriter;
+    private final InboxCounterCache inboxCounterCache;
+    private final MeterRegistry meterRegistry;
+
+    // Thread-safe and meant to be shared, so every Gmail client reuses one connection pool
+    private static final NetHttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+
+    // Gmail API quota units per call
+    private static final long HISTORY_LIST_UNITS = 2;
+    private static final long MESSAGES_LIST_UNITS = 5;
+    private static final long MESSAGES_GET_UNITS = 5;
+    private static final long GET_PROFILE_UNITS = 1;
+
+    private static final String INBOX_LABEL = "INBOX";
+    private static final long HISTORY_PAGE_SIZE = 500;
+    private static final int MESSAGES_PAGE_SIZE = 100;
+
+    // Gmail recommends at most 50 calls per batch request
+    private static final int FETCH_BATCH_SIZE = 50;
+    private static final List<String> METADATA_HEADERS = List.of("From", "Subject", "Date");
+    private static final String METADATA_FIELDS = "id,threadId,labelIds,snippet,internalDate,payload/headers";
+    private static final String FULL_FIELDS = "id,threadId,snippet,internalDate,payload";
+
+    @Value("${app.incoming.sync.full-resync-query:is:unread newer_than:7d}")
+    private String fullResyncQuery;
+
+    @Value("${app.incoming.sync.full-resync-max-messages:200}")
+    private int fullResyncMaxMessages;
+
+    // Batch items that fail are fetched again this many times in the same scan, with doubling delays
+    @Value("${app.incoming.sync.fetch-max-attempts:3}")
+    private int fetchMaxAttempts;
+
+    @Value("${app.incoming.sync.fetch-retry-delay-ms:1000}")
+    private long fetchRetryDelayMs;
+
+    // Messages still failing are kept on the checkpoint for the next scan, up to this many
+    @Value("${app.incoming.sync.max-pending-messages:1000}")
+    private int maxPendingMessages;
+
+    // Raw HTML is kept next to the plain-text body in content/body, only when enabled
+    @Value("${app.incoming.body.store-html:false}")
+    private boolean storeHtml;
+
+    @Value("${app.incoming.scan.enabled:true}")
+    private boolean scanEnabled;
+
+    @Value("${app.incoming.scan.concurrency:4}")
+    private int scanConcurrency;
+
+    @Value("${app.incoming.scan.user-timeout-seconds:120}")
+    private long userTimeoutSeconds;
+
+    @Value("${app.incoming.scan.http-timeout-ms:20000}")
+    private int httpTimeoutMs;
+
+    private ExecutorService scanExecutor;
+    private ScheduledExecutorService scanWatchdog;
+    private Timer scanRunTimer;
+    private Timer scanUserTimer;
+    private Counter ingestedCounter;
     
-    private static final Set<String> JOB_KEYWORDS = Set.of(
-        "application", "shortlisted", "interview", "resume", "recruiter", "hr", "position", 
-        "job", "opportunity", "candidate", "hiring", "selected", "rejected", "offer",
-        "screening", "assessment", "placement", "career", "employment"
-    );
-    
-    private static final Set<String> TRUSTED_DOMAINS = Set.of(
-        "naukri.com", "linkedin.com", "indeed.com", "monster.com", "glassdoor.com",
-        "shine.com", "timesjobs.com", "foundit.in", "instahyre.com"
-    );
-    
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-        "(?i)(application|shortlist|interview|resume|recruiter|hr|position|job|opportunity|candidate|hiring)"
-    );
-    
-    @Override
-    public void scanIncomingEmails(User user) {
-        try {
-            Gmail gmail = createGmailService(user);
+    @PostConstruct
+    void init() {
+        scanExecutor = Executors.newFixedThreadPool(scanConcurrency);
+        scanWatchdog = Executors.newSingleThreadScheduledExecutor();
 
-            String query = "is:unread newer_than:7d";
-            ListMessagesResponse response = gmail.users().messages().list("me").setQ(query).execute();
+        scanRunTimer = Timer.builder("ecold.incoming.scan.run")
+                .description("Duration of a scan across all users")
+                .register(meterRegistry);
+        scanUserTimer = Timer.builder("ecold.incoming.scan.user")
+                .description("Duration of one user's mailbox scan")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        ingestedCounter = Counter.builder("ecold.incoming.messages.ingested")
+                .description("Incoming messages stored by mailbox scans")
+                .register(meterRegistry);
 
-            if (response.getMessages() != null) {
-                for (com.google.api.services.gmail.model.Message messageRef : response.getMessages()) {
-                    Message message = gmail.users().messages().get("me", messageRef.getId()).execute();
+        log.info("Incoming email scanner initialized with {} workers, {}s per-user timeout",
+                scanConcurrency, userTimeoutSeconds);
+    }
 
-                    if (!incomingEmailRepository.existsByUserAndMessageId(user.getId(), message.getId())) {
-                        processGmailMessage(user, message);
-                    }
-                }
-            }
+    @PreDestroy
+    void shutdown() {
+        scanExecutor.shutdownNow();
+        scanWatchdog.shutdownNow();
+    }
+
+    @Override
+    public void scanIncomingEmails(User user) {
+        try {
+            syncMailbox(user);
         } catch (ExecutionException | InterruptedException e) {
             log.error("Failed to scan incoming emails for user {}: {}", user.getEmail(), e.getMessage(), e);
             Thread.currentThread().interrupt();
@@ -73,46 +171,179 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
             log.error("Failed to scan incoming emails for user {}: {}", user.getEmail(), e.getMessage(), e);
         }
     }
-    
-    @Override
-    public IncomingEmail.EmailCategory categorizeEmail(String subject, String body, String senderEmail) {
-        String content = (subject + " " + body).toLowerCase();
-        String senderDomain = extractDomain(senderEmail);
-        
-        if (TRUSTED_DOMAINS.contains(senderDomain)) {
-            if (content.contains("shortlist") || content.contains("interview") || content.contains("selected")) {
-                return IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+
+    /**
+     * Bring the user's stored inbox up to date. Returns the number of messages ingested.
+     */
+    private int syncMailbox(User user) throws IOException, ExecutionException, InterruptedException {
+        Gmail gmail = createGmailService(user);
+        GmailSyncState state = syncStateRepository.find(user.getId()).orElse(null);
+
+        SyncResult result = null;
+        if (state != null && state.getHistoryId() != null) {
+            try {
+                result = incrementalSync(user, gmail, new BigInteger(state.getHistoryId()));
+            } catch (GoogleJsonResponseException e) {
+                if (e.getStatusCode() != 404) {
+                    throw e;
+                }
+                // History is only kept for about a week; an expired start id needs a resync
+                log.info("Gmail history {} expired for user {}, running a full resync",
+                        state.getHistoryId(), user.getEmail());
             }
-            if (content.contains("application") && content.contains("update")) {
-                return IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+        }
+
+        // Messages an earlier scan could not fetch or store go first, whatever kind of sync this is
+        Set<String> candidates = new LinkedHashSet<>();
+        if (state != null && state.getPendingMessageIds() != null) {
+            candidates.addAll(state.getPendingMessageIds());
+        }
+
+        com.google.cloud.Timestamp now = com.google.cloud.Timestamp.now();
+        if (result == null) {
+            result = fullSync(user, gmail);
+            state = GmailSyncState.builder().lastFullSyncAt(now).build();
+        }
+        candidates.addAll(result.messageIds);
+
+        // Ids this instance already stored are skipped; the rest are confirmed in one batched lookup
+        List<String> unknown = new ArrayList<>();
+        for (String messageId : candidates) {
+            if (!seenMessageIndex.contains(user.getId(), messageId)) {
+                unknown.add(messageId);
             }
-            if (content.contains("reject") || content.contains("closed") || content.contains("unsuccessful")) {
-                return IncomingEmail.EmailCategory.REJECTION_CLOSED;
+        }
+        Set<String> existing = unknown.isEmpty()
+                ? Set.of()
+                : incomingEmailRepository.findExistingMessageIds(user.getId(), unknown);
+        List<String> newMessageIds = new ArrayList<>();
+        for (String messageId : unknown) {
+            if (existing.contains(messageId)) {
+                seenMessageIndex.add(user.getId(), messageId);
+            } else {
+                newMessageIds.add(messageId);
             }
-            return IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
-        }
-        
-        boolean hasJobKeywords = JOB_KEYWORDS.stream()
-            .anyMatch(keyword -> content.contains(keyword));
-        
-        if (hasJobKeywords) {
-            if (content.contains("shortlist") || content.contains("interview")) {
-                return IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+        }
+
+        Set<String> unresolved = new LinkedHashSet<>();
+        int processed = fetchAndProcess(user, gmail, newMessageIds, unresolved);
+
+        // The checkpoint may move past messages that were not handled only because they are kept with it
+        if (result.historyId != null) {
+            state.setHistoryId(result.historyId.toString());
+        }
+        state.setPendingMessageIds(pendingToKeep(user, unresolved));
+        state.setLastSyncAt(now);
+        syncStateRepository.save(user.getId(), state);
+
+        log.debug("Gmail sync for user {}: {} candidates, {} new, {} pending, historyId {}",
+                user.getEmail(), candidates.size(), processed, unresolved.size(), state.getHistoryId());
+        return processed;
+    }
+
+    private List<String> pendingToKeep(User user, Set<String> unresolved) {
+        List<String> pending = new ArrayList<>(unresolved);
+        if (pending.size() > maxPendingMessages) {
+            log.error("{} Gmail messages could not be ingested for user {}, giving up on the oldest {}",
+                    pending.size(), user.getEmail(), pending.size() - maxPendingMessages);
+            pending = new ArrayList<>(pending.subList(pending.size() - maxPendingMessages, pending.size()));
+        }
+        return pending.isEmpty() ? null : pending;
+    }
+
+    /**
+     * Messages added to the inbox since the given history id.
+     * Throws GoogleJsonResponseException with status 404 when the id is too old.
+     */
+    private SyncResult incrementalSync(User user, Gmail gmail, BigInteger startHistoryId) throws IOException {
+        Set<String> messageIds = new LinkedHashSet<>();
+        BigInteger latestHistoryId = startHistoryId;
+        String pageToken = null;
+
+        do {
+            checkInterrupted();
+            ListHistoryResponse response = gmail.users().history().list("me")
+                    .setStartHistoryId(startHistoryId)
+                    .setHistoryTypes(List.of("messageAdded"))
+                    .setLabelId(INBOX_LABEL)
+                    .setMaxResults(HISTORY_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .execute();
+            gmailQuotaService.recordUnits(user.getId(), HISTORY_LIST_UNITS);
+
+            if (response.getHistory() != null) {
+                for (History history : response.getHistory()) {
+                    if (history.getMessagesAdded() == null) {
+                        continue;
+                    }
+                    for (HistoryMessageAdded added : history.getMessagesAdded()) {
+                        Message message = added.getMessage();
+                        if (message != null && isInboxMessage(message)) {
+                            messageIds.add(message.getId());
+                        }
+                    }
+                }
             }
-            if (content.contains("reject") || content.contains("regret")) {
-                return IncomingEmail.EmailCategory.REJECTION_CLOSED;
+            if (response.getHistoryId() != null) {
+                latestHistoryId = response.getHistoryId();
             }
-            if (content.contains("application") || content.contains("opportunity")) {
-                return IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null);
+
+        return new SyncResult(messageIds, latestHistoryId);
+    }
+
+    /**
+     * Recent unread inbox messages, capped at fullResyncMaxMessages, used when there is no
+     * usable checkpoint. The mailbox history id is read first so nothing arriving during the
+     * listing falls between the resync and the next incremental pass.
+     */
+    private SyncResult fullSync(User user, Gmail gmail) throws IOException {
+        BigInteger historyId = gmail.users().getProfile("me").execute().getHistoryId();
+        gmailQuotaService.recordUnits(user.getId(), GET_PROFILE_UNITS);
+
+        Set<String> messageIds = new LinkedHashSet<>();
+        String pageToken = null;
+
+        do {
+            checkInterrupted();
+            ListMessagesResponse response = gmail.users().messages().list("me")
+                    .setQ(fullResyncQuery)
+                    .setMaxResults((long) Math.min(MESSAGES_PAGE_SIZE, fullResyncMaxMessages - messageIds.size()))
+                    .setPageToken(pageToken)
+                    .execute();
+            gmailQuotaService.recordUnits(user.getId(), MESSAGES_LIST_UNITS);
+
+            if (response.getMessages() != null) {
+                for (Message messageRef : response.getMessages()) {
+                    messageIds.add(messageRef.getId());
+                }
             }
-            return IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
-        }
-        
-        if (isSpamIndicator(subject, body, senderEmail)) {
-            return IncomingEmail.EmailCategory.SPAM;
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null && messageIds.size() < fullResyncMaxMessages);
+
+        return new SyncResult(messageIds, historyId);
+    }
+
+    private static boolean isInboxMessage(Message message) {
+        List<String> labels = message.getLabelIds();
+        return labels == null || (labels.contains(INBOX_LABEL) && !labels.contains("DRAFT"));
+    }
+
+    private static final class SyncResult {
+
+        private final Set<String> messageIds;
+        private final BigInteger historyId;
+
+        private SyncResult(Set<String> messageIds, BigInteger historyId) {
+            this.messageIds = messageIds;
+            this.historyId = historyId;
         }
-        
-        return IncomingEmail.EmailCategory.UNKNOWN;
+    }
+    
+    @Override
+    public IncomingEmail.EmailCategory categorizeEmail(String subject, String body, String senderEmail) {
+        return emailCategorizer.categorize(subject, body, senderEmail).getCategory();
     }
     
     @Override
@@ -126,6 +357,18 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
         }
     }
     
+    @Override
+    public IncomingEmail getIncomingEmail(User user, String emailId) {
+        try {
+            return incomingEmailRepository.findByIdWithContent(user.getId(), emailId)
+                .orElseThrow(() -> new RuntimeException("Incoming email not found: " + emailId));
+        } catch (ExecutionException | InterruptedException e) {
+            log.error("Failed to get incoming email {} for user {}: {}", emailId, user.getEmail(), e.getMessage(), e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to get incoming email", e);
+        }
+    }
+
     @Override
     public Page<IncomingEmail> getIncomingEmailsByCategory(User user, IncomingEmail.EmailCategory category, int page, int size) {
         try {
@@ -149,45 +392,160 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
     }
     
     @Override
-    public void markAsRead(Long emailId) {
-        // Note: With Firestore, we need userId to access the email
-        // This method signature should ideally be updated to include userId or User
-        // For now, we'll need to search across all users (inefficient) or update the interface
-        throw new UnsupportedOperationException(
-            "markAsRead(Long) is not supported with Firestore. " +
-            "Please use a method that includes userId or User parameter."
-        );
+    public IncomingEmail markAsRead(User user, String emailId, boolean read) {
+        try {
+            IncomingEmail email = incomingEmailRepository.updateReadState(user.getId(), emailId, read)
+                .orElseThrow(() -> new RuntimeException("Incoming email not found: " + emailId));
+            inboxCounterCache.invalidate(user.getId());
+            return email;
+        } catch (ExecutionException | InterruptedException e) {
+            log.error("Failed to update read state of email {} for user {}: {}", emailId, user.getEmail(), e.getMessage(), e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to update read state", e);
+        }
     }
     
+    @Override
+    public IncomingEmail recategorizeEmail(User user, String emailId, IncomingEmail.EmailCategory category) {
+        try {
+            // The classifier trains on the body, so load it along with the email
+            IncomingEmail email = incomingEmailRepository.findByIdWithContent(user.getId(), emailId)
+                .orElseThrow(() -> new RuntimeException("Incoming email not found: " + emailId));
+
+            if (category != email.getCategoryEnum()) {
+                emailClassifierService.recordCorrection(user.getId(), email, category);
+            }
+
+            email.setCategoryEnum(category);
+            email.setPriorityEnum(priorityFor(category));
+            email.setConfidenceScore(1.0);
+            incomingEmailRepository.updateCategory(user.getId(), emailId,
+                email.getCategory(), email.getPriority(), email.getConfidenceScore());
+            inboxCounterCache.invalidate(user.getId());
+            return email;
+        } catch (ExecutionException | InterruptedException e) {
+            log.error("Failed to recategorize email {} for user {}: {}", emailId, user.getEmail(), e.getMessage(), e);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Failed to recategorize email", e);
+        }
+    }
+
     @Override
     public Long getUnreadCount(User user, IncomingEmail.EmailCategory category) {
+        return getUnreadCounts(user).get(category);
+    }
+
+    @Override
+    public Map<IncomingEmail.EmailCategory, Long> getUnreadCounts(User user) {
         try {
-            // Firestore doesn't have countUnreadByUserAndCategory, so we need to filter manually
-            List<IncomingEmail> unreadEmails = incomingEmailRepository.findUnreadByUser(user.getId());
-            return unreadEmails.stream()
-                .filter(email -> category.name().equals(email.getCategory()))
-                .count();
+            return inboxCounterCache.unreadCounts(user.getId());
         } catch (ExecutionException | InterruptedException e) {
-            log.error("Failed to get unread count for user {}: {}", user.getEmail(), e.getMessage(), e);
+            log.error("Failed to get unread counts for user {}: {}", user.getEmail(), e.getMessage(), e);
             Thread.currentThread().interrupt();
-            throw new RuntimeException("Failed to get unread count", e);
+            throw new RuntimeException("Failed to get unread counts", e);
         }
     }
     
+    /**
+     * Scan every Google user's mailbox on the bounded scan pool. Each user gets its own
+     * deadline and a failing or slow mailbox only affects that user's result.
+     */
     @Override
+    @Scheduled(fixedDelayString = "${app.incoming.scan.interval-ms:300000}", initialDelay = 60000)
     public void processIncomingEmails() {
+        if (!scanEnabled) {
+            return;
+        }
+
+        List<User> users;
         try {
-            List<User> users = userRepository.findAll();
-            for (User user : users) {
-                if (user.getProviderEnum() == User.Provider.GOOGLE && user.getAccessToken() != null) {
-                    scanIncomingEmails(user);
-                }
-            }
+            users = userRepository.findByProviderWithValidAccessToken(
+                    User.Provider.GOOGLE.name(), com.google.cloud.Timestamp.now());
         } catch (ExecutionException | InterruptedException e) {
             log.error("Failed to process incoming emails: {}", e.getMessage(), e);
             Thread.currentThread().interrupt();
             throw new RuntimeException("Failed to process incoming emails", e);
         }
+
+        long startTime = System.nanoTime();
+        List<Future<ScanOutcome>> scans = new ArrayList<>(users.size());
+        for (User user : users) {
+            scans.add(scanExecutor.submit(() -> scanWithDeadline(user)));
+        }
+
+        Map<ScanOutcome.Status, Integer> byStatus = new EnumMap<>(ScanOutcome.Status.class);
+        long ingested = 0;
+        for (Future<ScanOutcome> scan : scans) {
+            try {
+                ScanOutcome outcome = scan.get();
+                byStatus.merge(outcome.status, 1, Integer::sum);
+                ingested += outcome.ingested;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                scans.forEach(pending -> pending.cancel(true));
+                log.warn("Incoming email scan interrupted");
+                return;
+            } catch (ExecutionException e) {
+                byStatus.merge(ScanOutcome.Status.FAILED, 1, Integer::sum);
+            }
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        scanRunTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (!users.isEmpty()) {
+            log.info("Incoming email scan: {} users in {}ms, {} messages ingested, {} failed, {} timed out",
+                    users.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), ingested,
+                    byStatus.getOrDefault(ScanOutcome.Status.FAILED, 0),
+                    byStatus.getOrDefault(ScanOutcome.Status.TIMED_OUT, 0));
+        }
+    }
+
+    /**
+     * Run one user's sync on a scan worker, interrupting it if it outlives the per-user timeout
+     */
+    private ScanOutcome scanWithDeadline(User user) {
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread worker = Thread.currentThread();
+        ScheduledFuture<?> deadline = scanWatchdog.schedule(() -> {
+            timedOut.set(true);
+            worker.interrupt();
+        }, userTimeoutSeconds, TimeUnit.SECONDS);
+
+        long startTime = System.nanoTime();
+        ScanOutcome outcome;
+        try {
+            outcome = new ScanOutcome(ScanOutcome.Status.OK, syncMailbox(user));
+        } catch (Exception e) {
+            if (timedOut.get()) {
+                log.warn("Incoming email scan for user {} timed out after {}s", user.getEmail(), userTimeoutSeconds);
+                outcome = new ScanOutcome(ScanOutcome.Status.TIMED_OUT, 0);
+            } else {
+                log.error("Failed to scan incoming emails for user {}: {}", user.getEmail(), e.getMessage(), e);
+                outcome = new ScanOutcome(ScanOutcome.Status.FAILED, 0);
+            }
+        } finally {
+            deadline.cancel(false);
+            // Clear an interrupt that landed after the sync finished so the worker can be reused
+            Thread.interrupted();
+        }
+
+        scanUserTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("ecold.incoming.scan.users", "outcome", outcome.status.name()).increment();
+        ingestedCounter.increment(outcome.ingested);
+        return outcome;
+    }
+
+    private static final class ScanOutcome {
+
+        private enum Status { OK, FAILED, TIMED_OUT }
+
+        private final Status status;
+        private final int ingested;
+
+        private ScanOutcome(Status status, int ingested) {
+            this.status = status;
+            this.ingested = ingested;
+        }
     }
 
     @Override
@@ -201,95 +559,245 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
         }
     }
     
-    private Gmail createGmailService(User user) throws Exception {
+    private Gmail createGmailService(User user) {
         GoogleCredential credential = new GoogleCredential.Builder()
-            .setTransport(new NetHttpTransport())
+            .setTransport(HTTP_TRANSPORT)
             .setJsonFactory(GsonFactory.getDefaultInstance())
             .build()
             .setAccessToken(user.getAccessToken())
             .setRefreshToken(user.getRefreshToken());
-        
-        return new Gmail.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), credential)
+
+        // Bounded socket timeouts so a stalled Gmail call cannot hold a scan worker indefinitely
+        HttpRequestInitializer initializer = request -> {
+            credential.initialize(request);
+            request.setConnectTimeout(httpTimeoutMs);
+            request.setReadTimeout(httpTimeoutMs);
+        };
+
+        return new Gmail.Builder(HTTP_TRANSPORT, GsonFactory.getDefaultInstance(), initializer)
             .setApplicationName("ECold")
             .build();
     }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Incoming email scan interrupted");
+        }
+    }
     
-    private void processGmailMessage(User user, Message message) {
+    /**
+     * Fetch new messages in batches: headers and snippet for every message first, then the
+     * full payload only for those the categorizer considers job-related. Everything else is
+     * stored with its snippet as the body. Writes go through one buffered BulkWriter session
+     * and are all confirmed before this returns. Messages that could not be fetched or stored
+     * are added to unresolved. Returns the number of messages stored.
+     */
+    private int fetchAndProcess(User user, Gmail gmail, List<String> messageIds, Set<String> unresolved)
+            throws IOException, ExecutionException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        int fullFetches = 0;
+
+        IncomingEmailIngestWriter.Session writer = ingestWriter.open(user.getId(),
+            email -> seenMessageIndex.add(user.getId(), email.getMessageId()));
         try {
-            IncomingEmail incomingEmail = new IncomingEmail();
-            incomingEmail.setUserId(user.getId());
-            incomingEmail.setMessageId(message.getId());
-            incomingEmail.setThreadId(message.getThreadId());
-
-            MessagePart payload = message.getPayload();
-            if (payload != null && payload.getHeaders() != null) {
-                for (MessagePartHeader header : payload.getHeaders()) {
-                    switch (header.getName().toLowerCase()) {
-                        case "from":
-                            String from = header.getValue();
-                            incomingEmail.setSenderEmail(extractEmail(from));
-                            incomingEmail.setSenderName(extractName(from));
-                            break;
-                        case "subject":
-                            incomingEmail.setSubject(header.getValue());
-                            break;
-                        case "date":
-                            // Parse date if needed
-                            break;
+            for (int from = 0; from < messageIds.size(); from += FETCH_BATCH_SIZE) {
+                checkInterrupted();
+                List<String> chunk = messageIds.subList(from, Math.min(from + FETCH_BATCH_SIZE, messageIds.size()));
+
+                Map<String, IncomingEmail> jobRelated = new LinkedHashMap<>();
+                for (Message message : batchGet(user, gmail, chunk, false, unresolved)) {
+                    IncomingEmail incomingEmail = fromMetadata(user, message);
+                    MessageBodyExtractor.Body preview = messageBodyExtractor.fromSnippet(message.getSnippet());
+                    IncomingEmail.EmailCategory category = categorizeEmail(
+                        incomingEmail.getSubject(), preview.getText(), incomingEmail.getSenderEmail());
+
+                    if (isJobRelated(category)) {
+                        jobRelated.put(message.getId(), incomingEmail);
+                    } else {
+                        ingest(user, writer, incomingEmail, preview);
+                    }
+                }
+
+                if (!jobRelated.isEmpty()) {
+                    fullFetches += jobRelated.size();
+                    for (Message message : batchGet(user, gmail, new ArrayList<>(jobRelated.keySet()), true, unresolved)) {
+                        ingest(user, writer, jobRelated.get(message.getId()), messageBodyExtractor.extract(message.getPayload()));
                     }
                 }
             }
+        } catch (Exception e) {
+            writer.abandon();
+            throw e;
+        }
 
-            String body = extractMessageBody(payload);
-            incomingEmail.setBody(body);
+        IncomingEmailIngestWriter.Result written = writer.close();
+        unresolved.addAll(written.getFailedMessageIds());
+        int processed = written.getStored();
+        if (processed > 0) {
+            inboxCounterCache.invalidate(user.getId());
+        }
 
-            IncomingEmail.EmailCategory category = categorizeEmail(
-                incomingEmail.getSubject(),
-                body,
-                incomingEmail.getSenderEmail()
-            );
-            incomingEmail.setCategoryEnum(category);
+        if (!messageIds.isEmpty()) {
+            log.debug("Fetched {} Gmail messages for user {} ({} with full bodies), stored {} in {}ms",
+                    messageIds.size(), user.getEmail(), fullFetches, processed, System.currentTimeMillis() - startTime);
+        }
+        return processed;
+    }
+
+    /**
+     * Get up to FETCH_BATCH_SIZE messages in one HTTP round trip. Metadata fetches are limited
+     * by a field mask to the headers the categorizer reads. Items that fail are fetched again
+     * with backoff; those still failing after fetchMaxAttempts are added to unresolved.
+     * Messages Gmail no longer has (404) are dropped.
+     */
+    private List<Message> batchGet(User user, Gmail gmail, List<String> messageIds, boolean full,
+                                   Set<String> unresolved) throws IOException, InterruptedException {
+        List<Message> messages = new ArrayList<>(messageIds.size());
+        List<String> pending = messageIds;
+
+        for (int attempt = 1; ; attempt++) {
+            List<String> failed = executeBatchGet(user, gmail, pending, full, messages);
+            if (failed.isEmpty()) {
+                return messages;
+            }
+            if (attempt >= fetchMaxAttempts) {
+                log.warn("{} Gmail messages still failing after {} attempts for user {}, kept for the next scan",
+                        failed.size(), attempt, user.getEmail());
+                unresolved.addAll(failed);
+                return messages;
+            }
+            TimeUnit.MILLISECONDS.sleep(fetchRetryDelayMs << (attempt - 1));
+            pending = failed;
+        }
+    }
+
+    /**
+     * One batch round trip; successes are added to messages, and the ids worth fetching again are returned
+     */
+    private List<String> executeBatchGet(User user, Gmail gmail, List<String> messageIds, boolean full,
+                                         List<Message> messages) throws IOException {
+        List<String> failed = new ArrayList<>();
 
-            if (category == IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW) {
-                incomingEmail.setPriorityEnum(IncomingEmail.EmailPriority.HIGH);
-            } else if (category == IncomingEmail.EmailCategory.RECRUITER_OUTREACH) {
-                incomingEmail.setPriorityEnum(IncomingEmail.EmailPriority.NORMAL);
+        BatchRequest batch = gmail.batch();
+        for (String messageId : messageIds) {
+            Gmail.Users.Messages.Get get = gmail.users().messages().get("me", messageId);
+            if (full) {
+                get.setFormat("full").setFields(FULL_FIELDS);
             } else {
-                incomingEmail.setPriorityEnum(IncomingEmail.EmailPriority.LOW);
+                get.setFormat("metadata").setMetadataHeaders(METADATA_HEADERS).setFields(METADATA_FIELDS);
+            }
+            get.queue(batch, new JsonBatchCallback<>() {
+                @Override
+                public void onSuccess(Message message, HttpHeaders responseHeaders) {
+                    messages.add(message);
+                }
+
+                @Override
+                public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                    if (error.getCode() == 404) {
+                        log.debug("Gmail message {} was deleted before it could be fetched", messageId);
+                        return;
+                    }
+                    log.warn("Failed to fetch Gmail message {} for user {}: {} {}",
+                            messageId, user.getEmail(), error.getCode(), error.getMessage());
+                    failed.add(messageId);
+                }
+            });
+        }
+        batch.execute();
+        gmailQuotaService.recordUnits(user.getId(), MESSAGES_GET_UNITS * messageIds.size());
+
+        return failed;
+    }
+
+    private static boolean isJobRelated(IncomingEmail.EmailCategory category) {
+        return category != IncomingEmail.EmailCategory.UNKNOWN && category != IncomingEmail.EmailCategory.SPAM;
+    }
+
+    private IncomingEmail fromMetadata(User user, Message message) {
+        IncomingEmail incomingEmail = new IncomingEmail();
+        incomingEmail.setUserId(user.getId());
+        incomingEmail.setMessageId(message.getId());
+        incomingEmail.setThreadId(message.getThreadId());
+
+        MessagePart payload = message.getPayload();
+        if (payload != null && payload.getHeaders() != null) {
+            for (MessagePartHeader header : payload.getHeaders()) {
+                switch (header.getName().toLowerCase()) {
+                    case "from":
+                        String from = header.getValue();
+                        incomingEmail.setSenderEmail(extractEmail(from));
+                        incomingEmail.setSenderName(extractName(from));
+                        break;
+                    case "subject":
+                        incomingEmail.setSubject(header.getValue());
+                        break;
+                    case "date":
+                        // internalDate below is already parsed and timezone-safe
+                        break;
+                }
             }
+        }
 
+        if (message.getInternalDate() != null) {
+            long millis = message.getInternalDate();
+            incomingEmail.setReceivedAt(com.google.cloud.Timestamp.ofTimeMicroseconds(millis * 1000));
+        } else {
             incomingEmail.setReceivedAt(com.google.cloud.Timestamp.now());
-            incomingEmail.setIsProcessed(true);
+        }
+        return incomingEmail;
+    }
 
-            incomingEmailRepository.save(user.getId(), incomingEmail);
+    /**
+     * Categorize a message and queue it on the scan's writer. A message that fails here is
+     * logged and skipped; only an interrupt stops the scan.
+     */
+    private void ingest(User user, IncomingEmailIngestWriter.Session writer, IncomingEmail incomingEmail,
+                        MessageBodyExtractor.Body body) throws InterruptedException {
+        try {
+            incomingEmail.setBody(body.getText());
+            incomingEmail.setHtmlBody(storeHtml ? body.getHtml() : null);
+            incomingEmail.setSnippet(body.getSnippet());
+            incomingEmail.setBodyTruncated(body.isTruncated());
+
+            EmailCategorizer.Result result = emailCategorizer.categorize(
+                incomingEmail.getSubject(),
+                incomingEmail.getBody(),
+                incomingEmail.getSenderEmail()
+            );
+            incomingEmail.setCategoryEnum(result.getCategory());
+            incomingEmail.setConfidenceScore(result.getConfidenceScore());
+            incomingEmail.setKeywords(String.join(",", result.getKeywords()));
+
+            // A model trained on the user's own corrections overrules the keyword rules
+            emailClassifierService.predict(user.getId(), incomingEmail.getSubject(),
+                    incomingEmail.getBody(), incomingEmail.getSenderEmail())
+                .ifPresent(prediction -> {
+                    incomingEmail.setCategoryEnum(prediction.getCategory());
+                    incomingEmail.setConfidenceScore(prediction.getConfidence());
+                });
+
+            incomingEmail.setPriorityEnum(priorityFor(incomingEmail.getCategoryEnum()));
+
+            incomingEmail.setIsProcessed(true);
 
-        } catch (ExecutionException | InterruptedException e) {
-            log.error("Failed to process Gmail message {}: {}", message.getId(), e.getMessage(), e);
-            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            log.error("Failed to process Gmail message {}: {}", message.getId(), e.getMessage(), e);
+            log.error("Failed to process Gmail message {}: {}", incomingEmail.getMessageId(), e.getMessage(), e);
+            return;
         }
+
+        writer.add(incomingEmail);
     }
     
-    private String extractMessageBody(MessagePart part) {
-        if (part == null) return "";
-        
-        if (part.getMimeType().equals("text/plain") && part.getBody() != null && part.getBody().getData() != null) {
-            return new String(Base64.getUrlDecoder().decode(part.getBody().getData()));
-        }
-        
-        if (part.getParts() != null) {
-            for (MessagePart subPart : part.getParts()) {
-                String body = extractMessageBody(subPart);
-                if (!body.isEmpty()) {
-                    return body;
-                }
-            }
+    private static IncomingEmail.EmailPriority priorityFor(IncomingEmail.EmailCategory category) {
+        if (category == IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW) {
+            return IncomingEmail.EmailPriority.HIGH;
+        } else if (category == IncomingEmail.EmailCategory.RECRUITER_OUTREACH) {
+            return IncomingEmail.EmailPriority.NORMAL;
         }
-        
-        return "";
+        return IncomingEmail.EmailPriority.LOW;
     }
-    
+
     private String extractEmail(String from) {
         int start = from.indexOf('<');
         int end = from.indexOf('>');
@@ -306,15 +814,4 @@ public class IncomingEmailServiceImpl implements IncomingEmailService {
         }
         return "";
     }
-    
-    private String extractDomain(String email) {
-        int atIndex = email.indexOf('@');
-        return atIndex != -1 ? email.substring(atIndex + 1).toLowerCase() : "";
-    }
-    
-    private boolean isSpamIndicator(String subject, String body, String senderEmail) {
-        String content = (subject + " " + body).toLowerCase();
-        String[] spamKeywords = {"lottery", "winner", "congratulations", "claim now", "urgent", "act now"};
-        return Arrays.stream(spamKeywords).anyMatch(content::contains);
-    }
 }
\ No newline at end of file
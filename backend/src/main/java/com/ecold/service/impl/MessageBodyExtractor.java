@@ -0,0 +1,193 @@
+package com.ecold.service.impl;
+
+import com.ecold.util.HtmlToText;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Bounded body extraction for Gmail messages
+ * Finds the first text/plain and text/html parts (skipping attachments), decodes at most
+ * app.incoming.body.max-bytes of each in the part's declared charset, and falls back to
+ * converting the HTML to text when there is no plain part. Only the base64 prefix that
+ * covers the byte budget is decoded, so a large body never becomes a large String.
+ */
+@Slf4j
+@Component
+public class MessageBodyExtractor {
+
+    @Value("${app.incoming.body.max-bytes:32768}")
+    private int maxBytes;
+
+    @Value("${app.incoming.body.snippet-length:200}")
+    private int snippetLength;
+
+    public Body extract(MessagePart payload) {
+        Parts parts = new Parts();
+        find(payload, parts);
+
+        String html = parts.html != null ? decode(parts.html) : null;
+        boolean truncated = parts.html != null && parts.htmlTruncated;
+
+        String text;
+        if (parts.plain != null) {
+            text = decode(parts.plain);
+            truncated = parts.plainTruncated;
+        } else if (html != null) {
+            text = HtmlToText.convert(html, maxBytes);
+        } else {
+            text = "";
+        }
+
+        return new Body(text, html, snippet(text), truncated);
+    }
+
+    /**
+     * A body built from Gmail's snippet alone, for messages whose payload was not fetched
+     */
+    public Body fromSnippet(String gmailSnippet) {
+        // Gmail returns the snippet HTML-escaped
+        String text = HtmlToText.convert(gmailSnippet, snippetLength);
+        return new Body(text, null, text, false);
+    }
+
+    private String snippet(String text) {
+        String collapsed = text.replaceAll("\\s+", " ").trim();
+        return collapsed.length() > snippetLength ? collapsed.substring(0, snippetLength) : collapsed;
+    }
+
+    private void find(MessagePart part, Parts parts) {
+        if (part == null || (parts.plain != null && parts.html != null)) {
+            return;
+        }
+
+        String mimeType = part.getMimeType() != null ? part.getMimeType().toLowerCase(Locale.ROOT) : "";
+        boolean attachment = part.getFilename() != null && !part.getFilename().isEmpty();
+        boolean hasData = part.getBody() != null && part.getBody().getData() != null;
+
+        if (!attachment && hasData) {
+            if (parts.plain == null && mimeType.equals("text/plain")) {
+                parts.plain = part;
+                parts.plainTruncated = encodedLength(part) > maxBytes;
+            } else if (parts.html == null && mimeType.equals("text/html")) {
+                parts.html = part;
+                parts.htmlTruncated = encodedLength(part) > maxBytes;
+            }
+        }
+
+        if (part.getParts() != null) {
+            for (MessagePart subPart : part.getParts()) {
+                find(subPart, parts);
+            }
+        }
+    }
+
+    /**
+     * Decode up to maxBytes of the part. Gmail bodies are base64url; every 4 encoded chars
+     * are 3 bytes, so decoding a prefix of whole quanta yields exactly the leading bytes.
+     */
+    private String decode(MessagePart part) {
+        String data = part.getBody().getData();
+        int quanta = (maxBytes + 2) / 3;
+        String prefix = data.length() > quanta * 4L ? data.substring(0, quanta * 4) : data;
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(prefix);
+        } catch (IllegalArgumentException e) {
+            log.warn("Undecodable body part {}: {}", part.getPartId(), e.getMessage());
+            return "";
+        }
+
+        int length = Math.min(bytes.length, maxBytes);
+        String text = new String(bytes, 0, length, charsetOf(part));
+        // A multi-byte character cut at the budget decodes as a replacement char
+        return length < bytes.length || prefix.length() < data.length() ? stripTrailingReplacement(text) : text;
+    }
+
+    private static String stripTrailingReplacement(String text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '\uFFFD') {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private static long encodedLength(MessagePart part) {
+        Integer size = part.getBody().getSize();
+        return size != null ? size : part.getBody().getData().length() * 3L / 4;
+    }
+
+    /**
+     * Charset from the part's Content-Type header, UTF-8 when missing or unknown
+     */
+    private static Charset charsetOf(MessagePart part) {
+        if (part.getHeaders() == null) {
+            return StandardCharsets.UTF_8;
+        }
+        for (MessagePartHeader header : part.getHeaders()) {
+            if (!"content-type".equalsIgnoreCase(header.getName()) || header.getValue() == null) {
+                continue;
+            }
+            for (String param : header.getValue().split(";")) {
+                String[] pair = param.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                    try {
+                        return Charset.forName(pair[1].trim().replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        return StandardCharsets.UTF_8;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static final class Parts {
+        private MessagePart plain;
+        private MessagePart html;
+        private boolean plainTruncated;
+        private boolean htmlTruncated;
+    }
+
+    /**
+     * Extracted body: capped plain text, capped raw HTML (null if none), and a short snippet
+     */
+    public static final class Body {
+
+        private final String text;
+        private final String html;
+        private final String snippet;
+        private final boolean truncated;
+
+        private Body(String text, String html, String snippet, boolean truncated) {
+            this.text = text;
+            this.html = html;
+            this.snippet = snippet;
+            this.truncated = truncated;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        public String getSnippet() {
+            return snippet;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
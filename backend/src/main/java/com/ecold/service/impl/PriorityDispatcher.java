@@ -0,0 +1,234 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.EmailRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Priority-aware send dispatch
+ * Sends are queued on one bounded queue per EmailRequest.Priority and drained by a shared
+ * worker pool with weighted round-robin (HIGH:NORMAL:LOW credits per round), so a HIGH
+ * send waits behind at most a few lower-priority ones instead of a whole batch. A task
+ * that has waited longer than app.email.dispatch.max-wait-ms is taken next regardless of
+ * weight, so LOW never starves. Full queues block the producer.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PriorityDispatcher {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.email.dispatch.workers:4}")
+    private int workers;
+
+    @Value("${app.email.dispatch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.email.dispatch.weight.high:6}")
+    private int highWeight;
+
+    @Value("${app.email.dispatch.weight.normal:3}")
+    private int normalWeight;
+
+    @Value("${app.email.dispatch.weight.low:1}")
+    private int lowWeight;
+
+    @Value("${app.email.dispatch.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    // EmailRequest.Priority declares LOW first, so lanes are always walked in this order instead
+    private static final EmailRequest.Priority[] DISPATCH_ORDER = {
+            EmailRequest.Priority.HIGH, EmailRequest.Priority.NORMAL, EmailRequest.Priority.LOW};
+
+    private final Map<EmailRequest.Priority, Lane> lanes = new EnumMap<>(EmailRequest.Priority.class);
+
+    // One permit per queued task, so a worker only picks when something is queued
+    private final Semaphore queued = new Semaphore(0);
+
+    private ExecutorService workerPool;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        lanes.put(EmailRequest.Priority.HIGH, new Lane(EmailRequest.Priority.HIGH, highWeight));
+        lanes.put(EmailRequest.Priority.NORMAL, new Lane(EmailRequest.Priority.NORMAL, normalWeight));
+        lanes.put(EmailRequest.Priority.LOW, new Lane(EmailRequest.Priority.LOW, lowWeight));
+
+        running = true;
+        workerPool = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::drain);
+        }
+        log.info("Priority dispatcher initialized with {} workers, weights {}:{}:{}, queue capacity {}",
+                workers, highWeight, normalWeight, lowWeight, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Executor that queues its tasks at the given priority
+     */
+    public Executor executor(EmailRequest.Priority priority) {
+        Lane lane = lane(priority);
+        return lane::enqueue;
+    }
+
+    /**
+     * Run the supplier on a dispatch worker at the given priority
+     */
+    public <T> CompletableFuture<T> submit(EmailRequest.Priority priority, Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor(priority));
+    }
+
+    /**
+     * Number of tasks currently queued at the given priority
+     */
+    public int depth(EmailRequest.Priority priority) {
+        return lane(priority).queue.size();
+    }
+
+    private Lane lane(EmailRequest.Priority priority) {
+        return lanes.get(priority != null ? priority : EmailRequest.Priority.NORMAL);
+    }
+
+    /**
+     * Worker loop. Only shutdown stops it: an interrupt left behind by a task is cleared so the
+     * worker keeps serving, since losing workers one by one would stall every caller waiting on a send.
+     */
+    private void drain() {
+        while (running) {
+            try {
+                queued.acquire();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            Task task = next();
+            task.lane.waitTimer.record(System.nanoTime() - task.enqueuedNanos, TimeUnit.NANOSECONDS);
+
+            try {
+                task.command.run();
+            } catch (Exception e) {
+                log.error("Dispatched {} task failed: {}", task.lane.priority, e.getMessage(), e);
+            } finally {
+                if (Thread.interrupted() && running) {
+                    log.warn("Dispatched {} task left its worker interrupted, clearing it", task.lane.priority);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the next task: an overdue head first (oldest wins), otherwise weighted round-robin
+     */
+    private synchronized Task next() {
+        long overdueBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        Lane oldest = null;
+        for (Lane lane : lanes.values()) {
+            Task head = lane.queue.peek();
+            if (head != null && head.enqueuedNanos < overdueBefore
+                    && (oldest == null || head.enqueuedNanos < oldest.queue.peek().enqueuedNanos)) {
+                oldest = lane;
+            }
+        }
+        if (oldest != null) {
+            return oldest.queue.poll();
+        }
+
+        for (int round = 0; round < 2; round++) {
+            // HIGH spends its credits first
+            for (EmailRequest.Priority priority : DISPATCH_ORDER) {
+                Lane lane = lanes.get(priority);
+                if (lane.credits > 0 && !lane.queue.isEmpty()) {
+                    lane.credits--;
+                    return lane.queue.poll();
+                }
+            }
+            lanes.values().forEach(lane -> lane.credits = lane.weight);
+        }
+
+        // Every lane with work is out of credits even after a refill (weight 0): take the highest
+        for (EmailRequest.Priority priority : DISPATCH_ORDER) {
+            Task task = lanes.get(priority).queue.poll();
+            if (task != null) {
+                return task;
+            }
+        }
+        throw new IllegalStateException("Dispatch permit acquired with no queued task");
+    }
+
+    private static final class Task {
+
+        private final Lane lane;
+        private final Runnable command;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private Task(Lane lane, Runnable command) {
+            this.lane = lane;
+            this.command = command;
+        }
+    }
+
+    private final class Lane {
+
+        private final EmailRequest.Priority priority;
+        private final int weight;
+        private final BlockingQueue<Task> queue;
+        private final Timer waitTimer;
+        private int credits;
+
+        private Lane(EmailRequest.Priority priority, int weight) {
+            this.priority = priority;
+            this.weight = weight;
+            this.credits = weight;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+            Gauge.builder("ecold.email.dispatch.queue.depth", queue, BlockingQueue::size)
+                    .description("Sends waiting for a dispatch worker")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("ecold.email.dispatch.wait")
+                    .description("Time a send waited in its priority queue")
+                    .tag("priority", priority.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private void enqueue(Runnable command) {
+            try {
+                queue.put(new Task(this, command));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted waiting for space in the " + priority + " queue", e);
+            }
+            queued.release();
+        }
+    }
+}
@@ -10,7 +10,6 @@ import com.ecold.repository.firestore.RecruiterContactFirestoreRepository;
 import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
 import com.ecold.service.RecruiterTemplateAssignmentService;
 import com.ecold.service.UserService;
-import com.google.cloud.Timestamp;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -331,13 +330,8 @@ public class RecruiterTemplateAssignmentServiceImpl implements RecruiterTemplate
         try {
             User currentUser = userService.getCurrentUser();
 
-            RecruiterTemplateAssignment assignment = assignmentFirestoreRepository
-                .findById(currentUser.getId(), assignmentId)
-                .orElseThrow(() -> new RuntimeException("Assignment not found"));
-
-            assignment.setEmailsSent(assignment.getEmailsSent() + 1);
-            assignment.setLastEmailSentAt(Timestamp.now());
-            assignmentFirestoreRepository.save(currentUser.getId(), assignment);
+            // Field-level update: fails with NOT_FOUND if the assignment does not exist
+            assignmentFirestoreRepository.increment(currentUser.getId(), assignmentId, 1);
         } catch (ExecutionException | InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Error marking email sent", e);
@@ -0,0 +1,166 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.Resume;
+import jakarta.activation.DataHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resume attachment cache
+ * Holds each resume's content already base64 MIME-encoded, keyed by resume id and updatedAt,
+ * so a campaign reads and encodes the file once and every send splices the cached bytes
+ * into a fresh PreencodedMimeBodyPart. Eviction is LRU bounded by total encoded size;
+ * files larger than the per-entry cap are encoded per send and not cached.
+ * Loads are single-flight: concurrent misses for the same resume wait for one read and encode.
+ */
+@Slf4j
+@Component
+public class ResumeAttachmentCache {
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/pdf";
+
+    @Value("${app.file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    @Value("${app.file.resume-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${app.file.resume-cache.max-entry-bytes:16777216}")
+    private long maxEntryBytes;
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    // Loads in progress, so concurrent misses share one read and encode
+    private final Map<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        log.info("Resume attachment cache initialized: max {} bytes, max entry {} bytes", maxBytes, maxEntryBytes);
+    }
+
+    /**
+     * Build an attachment part for the resume, reusing the cached encoded content when it is current
+     */
+    public MimeBodyPart attachmentPart(Resume resume) throws IOException, MessagingException {
+        byte[] encoded = encodedContent(resume);
+        String contentType = resume.getContentType() != null ? resume.getContentType() : DEFAULT_CONTENT_TYPE;
+
+        PreencodedMimeBodyPart part = new PreencodedMimeBodyPart("base64");
+        part.setDataHandler(new DataHandler(new ByteArrayDataSource(encoded, contentType)));
+        part.setFileName(resume.getFileName());
+        part.setDisposition(MimeBodyPart.ATTACHMENT);
+        return part;
+    }
+
+    private byte[] encodedContent(Resume resume) throws IOException {
+        String key = key(resume);
+
+        byte[] cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<byte[]> load = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = loading.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            // Another load may have finished between the cache check and taking the slot
+            byte[] encoded = cached(key);
+            if (encoded == null) {
+                encoded = load(resume, key);
+            }
+            load.complete(encoded);
+            return encoded;
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private synchronized byte[] cached(String key) {
+        return entries.get(key);
+    }
+
+    private byte[] load(Resume resume, String key) throws IOException {
+        Path path = resolve(resume.getFilePath());
+        long size = Files.size(path);
+        byte[] encoded = Base64.getMimeEncoder().encode(Files.readAllBytes(path));
+
+        if (encoded.length > maxEntryBytes) {
+            log.debug("Resume {} ({} bytes) exceeds cache entry cap, not caching", resume.getId(), size);
+            return encoded;
+        }
+
+        synchronized (this) {
+            byte[] previous = entries.put(key, encoded);
+            totalBytes += encoded.length - (previous != null ? previous.length : 0);
+            evict();
+        }
+
+        log.debug("Cached resume {} ({} bytes raw, {} bytes encoded)", resume.getId(), size, encoded.length);
+        return encoded;
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> load) throws IOException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drop least recently used entries until the cache fits its byte budget
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            totalBytes -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    private Path resolve(String filePath) {
+        Path path = Paths.get(filePath);
+        if (path.isAbsolute() || Files.exists(path)) {
+            return path;
+        }
+        return Paths.get(uploadDir).resolve(filePath);
+    }
+
+    private static String key(Resume resume) {
+        String version = resume.getUpdatedAt() != null ? resume.getUpdatedAt().toString() : "0";
+        return resume.getUserId() + "/" + resume.getId() + "@" + version;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecold.service.impl;
+
+import com.google.cloud.Timestamp;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for failed sends
+ * Classifies failures as retriable (quota, rate limits, timeouts, server errors) or
+ * permanent (bad addresses, rejected recipients, lost authorization), and spaces
+ * retriable ones with exponential backoff plus jitter up to app.email.retry-attempts.
+ * No retry is due before the idempotency claim of the failed attempt has outlived its
+ * lease, since until then the retry would only find that claim still pending.
+ */
+@Component
+public class RetryPolicy {
+
+    // Sender has to re-authenticate or the email cannot be rendered; retrying on a timer will not help
+    private static final Set<String> PERMANENT_ERROR_CODES = Set.of(
+            "NO_GMAIL_TOKEN", "TOKEN_REFRESH_FAILED", "SMTP_FORBIDDEN", "EMAIL_DISABLED",
+            "SMTP_NOT_CONFIGURED", "DUPLICATE_SEND", "TEMPLATE_VERSION_MISMATCH");
+
+    // Provider messages that mean this recipient or message will never be accepted
+    private static final List<String> PERMANENT_MESSAGES = List.of(
+            "invalid to header", "invalid address", "invalid recipient", "recipient address rejected",
+            "no such user", "user unknown", "mailbox unavailable", "550 ", "553 ", "invalid_grant");
+
+    @Value("${app.email.retry-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.email.retry.base-delay-seconds:300}")
+    private long baseDelaySeconds;
+
+    @Value("${app.email.retry.max-delay-seconds:3600}")
+    private long maxDelaySeconds;
+
+    @Value("${app.email.idempotency.pending-lease-seconds:300}")
+    private long pendingLeaseSeconds;
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isRetriable(String errorCode, String message) {
+        if (errorCode != null && PERMANENT_ERROR_CODES.contains(errorCode)) {
+            return false;
+        }
+
+        if (message != null) {
+            String lower = message.toLowerCase(Locale.ROOT);
+            for (String permanent : PERMANENT_MESSAGES) {
+                if (lower.contains(permanent)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * When to try again after the given number of retries have already been made,
+     * or null if the failure is permanent or attempts are used up
+     */
+    public Timestamp nextAttemptAt(int retriesSoFar, String errorCode, String message) {
+        if (retriesSoFar >= maxAttempts || !isRetriable(errorCode, message)) {
+            return null;
+        }
+
+        // Equal jitter: half the backoff is fixed, the other half random, so retries spread out
+        long backoff = Math.min(maxDelaySeconds, baseDelaySeconds << Math.min(retriesSoFar, 20));
+        long delayMillis = backoff * 500 + ThreadLocalRandom.current().nextLong(backoff * 500 + 1);
+        delayMillis = Math.max(delayMillis, (pendingLeaseSeconds + 30) * 1000);
+
+        Instant next = Instant.now().plusMillis(delayMillis);
+        return Timestamp.ofTimeSecondsAndNanos(next.getEpochSecond(), next.getNano());
+    }
+}
@@ -1,14 +1,25 @@
 package com.ecold.service.impl;
 
+import com.ecold.dto.BatchScheduleRequest;
+import com.ecold.dto.BatchScheduleResponse;
 import com.ecold.dto.EmailRequest;
 import com.ecold.dto.EmailResponse;
+import com.ecold.entity.EmailTemplate;
+import com.ecold.entity.RecruiterContact;
 import com.ecold.entity.RecruiterTemplateAssignment;
 import com.ecold.entity.ScheduledEmail;
+import com.ecold.entity.SentKey;
 import com.ecold.entity.User;
+import com.ecold.exception.TemplateVersionMismatchException;
+import com.ecold.repository.firestore.EmailTemplateFirestoreRepository;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
+import com.ecold.repository.firestore.RecruiterContactFirestoreRepository;
 import com.ecold.repository.firestore.RecruiterTemplateAssignmentFirestoreRepository;
 import com.ecold.repository.firestore.ScheduledEmailFirestoreRepository;
 import com.ecold.repository.firestore.UserFirestoreRepository;
+import com.ecold.service.GmailQuotaService;
 import com.ecold.service.ScheduledEmailService;
+import com.ecold.util.TemplatePlaceholders;
 import com.google.cloud.Timestamp;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,11 +28,23 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
@@ -34,6 +57,19 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
     private final GmailOAuthServiceImpl gmailOAuthService;
     private final RecruiterTemplateAssignmentFirestoreRepository assignmentRepository;
     private final UserFirestoreRepository userFirestoreRepository;
+    private final EmailTemplateFirestoreRepository templateRepository;
+    private final RecruiterContactFirestoreRepository recruiterRepository;
+    private final SendSmoother sendSmoother;
+    private final DomainThrottle domainThrottle;
+    private final CompiledTemplateCache templateCache;
+    private final SendIdempotencyGuard idempotencyGuard;
+    private final FirestoreBatchWriter batchWriter;
+    private final RetryPolicy retryPolicy;
+    private final PriorityDispatcher dispatcher;
+    private final GmailQuotaService gmailQuotaService;
+
+    // Users whose due emails are still being dispatched from a previous run
+    private final Set<String> usersInFlight = ConcurrentHashMap.newKeySet();
 
     @Value("${scheduling.email.thread-pool-size:5}")
     private int threadPoolSize;
@@ -41,6 +77,10 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
     @Value("${scheduling.email.enabled:true}")
     private boolean schedulingEnabled;
 
+    // Longest a user's run waits for one dispatched send before leaving the rest for a later run
+    @Value("${app.email.dispatch.task-timeout-ms:120000}")
+    private long dispatchTimeoutMs;
+
     // ExecutorService for parallel processing of users
     private ExecutorService executorService;
 
@@ -71,18 +111,155 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
             log.info("=== EMAIL SAVED TO DATABASE === ID: {}, Status: {}, ScheduleTime: {}",
                 scheduledEmail.getId(), scheduledEmail.getStatus(), scheduledEmail.getScheduleTime());
 
-            // Verify it was saved by counting
-            long count = scheduledEmailRepository.countByUser(user.getId());
-            log.info("=== TOTAL SCHEDULED EMAILS IN DB: {} ===", count);
-
             return scheduledEmail;
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("=== ERROR SAVING SCHEDULED EMAIL ===", e);
             throw new RuntimeException("Failed to schedule email", e);
         }
     }
 
+    @Override
+    public BatchScheduleResponse scheduleBatch(BatchScheduleRequest request, User user) {
+        log.info("Scheduling batch of {} emails for user {} with template {} starting at {}",
+                request.getRecruiterIds().size(), user.getEmail(), request.getTemplateId(), request.getWindowStart());
+
+        if (!request.getWindowStart().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Send window must start in the future");
+        }
+        if (request.getWindowEnd() != null && request.getWindowEnd().isBefore(request.getWindowStart())) {
+            throw new IllegalArgumentException("Send window end must not be before its start");
+        }
+
+        boolean compact = request.getCompact() == null || request.getCompact();
+
+        try {
+            // One template read and one getAll for every recruiter in the batch
+            EmailTemplate template = templateRepository.findById(user.getId(), request.getTemplateId())
+                    .orElseThrow(() -> new IllegalArgumentException("Template not found: " + request.getTemplateId()));
+            CompiledTemplateCache.CompiledEmail compiled = templateCache.compile(template);
+
+            Map<String, RecruiterContact> recruiters = recruiterRepository.findAllById(user.getId(), request.getRecruiterIds());
+
+            List<RecruiterContact> recipients = recruiters.values().stream()
+                    .filter(recruiter -> recruiter.getEmail() != null && !recruiter.getEmail().isBlank())
+                    .collect(Collectors.toList());
+
+            Set<String> skipped = new LinkedHashSet<>(request.getRecruiterIds());
+            recipients.forEach(recruiter -> skipped.remove(recruiter.getId()));
+
+            if (recipients.isEmpty()) {
+                log.warn("No recruiters with an email address found for batch, nothing scheduled");
+                return BatchScheduleResponse.builder()
+                        .success(true)
+                        .message("No recruiters with an email address, nothing scheduled")
+                        .scheduledEmailIds(new ArrayList<>())
+                        .skippedRecruiterIds(new ArrayList<>(skipped))
+                        .compact(compact)
+                        .build();
+            }
+
+            Duration stagger = resolveStagger(request, recipients.size());
+            String priority = request.getPriority() != null ? request.getPriority().name() : EmailRequest.Priority.NORMAL.name();
+
+            List<ScheduledEmail> scheduledEmails = new ArrayList<>(recipients.size());
+            LocalDateTime sendTime = request.getWindowStart();
+            long renderedBytes = 0;
+            long storedBytes = 0;
+
+            for (RecruiterContact recruiter : recipients) {
+                Map<String, String> values = TemplatePlaceholders.valuesFor(recruiter, user, request.getAdditionalData());
+                String subject = compiled.renderSubject(values);
+                String body = compiled.renderBody(values);
+                long emailRenderedBytes = utf8Length(subject) + utf8Length(body);
+                renderedBytes += emailRenderedBytes;
+
+                ScheduledEmail.ScheduledEmailBuilder builder = ScheduledEmail.builder()
+                        .userId(user.getId())
+                        .recipientEmail(recruiter.getEmail())
+                        .scheduleTime(convertToTimestamp(sendTime))
+                        .templateId(template.getId())
+                        .recruiterId(recruiter.getId())
+                        .isHtml(false)
+                        .priority(priority)
+                        .status(ScheduledEmail.Status.SCHEDULED.name());
+
+                if (compact) {
+                    Map<String, String> used = compiled.retainUsed(values);
+                    builder.templateVersion(compiled.getVersion()).placeholderValues(used);
+                    storedBytes += Long.BYTES + used.entrySet().stream()
+                            .mapToLong(e -> utf8Length(e.getKey()) + utf8Length(e.getValue()))
+                            .sum();
+                } else {
+                    builder.subject(subject).body(body);
+                    storedBytes += emailRenderedBytes;
+                }
+
+                scheduledEmails.add(builder.build());
+                sendTime = sendTime.plus(stagger);
+            }
+
+            scheduledEmailRepository.saveAll(user.getId(), scheduledEmails);
+
+            long bytesSaved = renderedBytes - storedBytes;
+            log.info("Scheduled batch of {} emails for user {} ({} recruiters skipped), stagger {}s, compact={}, " +
+                    "rendered {} bytes, stored {} bytes, saved {} bytes",
+                    scheduledEmails.size(), user.getEmail(), skipped.size(), stagger.getSeconds(), compact,
+                    renderedBytes, storedBytes, bytesSaved);
+
+            return BatchScheduleResponse.builder()
+                    .success(true)
+                    .message("Scheduled " + scheduledEmails.size() + " emails")
+                    .scheduledCount(scheduledEmails.size())
+                    .scheduledEmailIds(scheduledEmails.stream().map(ScheduledEmail::getId).collect(Collectors.toList()))
+                    .skippedRecruiterIds(new ArrayList<>(skipped))
+                    .firstScheduleTime(request.getWindowStart())
+                    .lastScheduleTime(convertToLocalDateTime(scheduledEmails.get(scheduledEmails.size() - 1).getScheduleTime()))
+                    .compact(compact)
+                    .renderedBytes(renderedBytes)
+                    .storedBytes(storedBytes)
+                    .bytesSaved(bytesSaved)
+                    .build();
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Error scheduling email batch: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to schedule email batch", e);
+        }
+    }
+
+    private static long utf8Length(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    /**
+     * Gap between consecutive sends in a batch.
+     * An explicit stagger wins; otherwise the batch is spread evenly across the window.
+     */
+    private Duration resolveStagger(BatchScheduleRequest request, int count) {
+        if (request.getStaggerSeconds() != null && request.getStaggerSeconds() > 0) {
+            Duration stagger = Duration.ofSeconds(request.getStaggerSeconds());
+
+            if (request.getWindowEnd() != null) {
+                LocalDateTime lastSend = request.getWindowStart().plus(stagger.multipliedBy(count - 1L));
+                if (lastSend.isAfter(request.getWindowEnd())) {
+                    throw new IllegalArgumentException("Stagger of " + request.getStaggerSeconds()
+                            + "s does not fit " + count + " emails in the send window");
+                }
+            }
+            return stagger;
+        }
+
+        if (request.getWindowEnd() != null && count > 1) {
+            return Duration.between(request.getWindowStart(), request.getWindowEnd()).dividedBy(count - 1L);
+        }
+
+        return Duration.ZERO;
+    }
+
     /**
      * Initialize ExecutorService for parallel processing
      */
@@ -96,10 +273,10 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
 
     /**
      * Scheduled task to process scheduled emails for all users
-     * Runs every 30 seconds
+     * Due emails get a smoothed send slot; each run sends the emails whose slot has arrived
      */
     @Override
-    @Scheduled(fixedRate = 1800000) // Run every 30 minutes
+    @Scheduled(fixedDelayString = "${scheduling.email.check-interval-ms:60000}")
     public void processScheduledEmails() {
         if (!schedulingEnabled) {
             log.debug("Scheduled email processing is disabled");
@@ -121,6 +298,7 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
 
             // Get current timestamp for comparison
             Timestamp now = Timestamp.now();
+            sendSmoother.evictIdle();
 
             // Use ExecutorService to process each user in parallel
             ExecutorService executor = getExecutorService();
@@ -165,7 +343,9 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
                     allUsers.size(), totalProcessed, totalSent, totalFailed, duration);
 
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Error processing scheduled emails", e);
         } catch (Exception e) {
             log.error("Unexpected error processing scheduled emails", e);
@@ -178,24 +358,45 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
     private ProcessingResult processUserScheduledEmails(User user, Timestamp now) {
         ProcessingResult result = new ProcessingResult();
 
+        if (!usersInFlight.add(user.getId())) {
+            log.info("Previous dispatch still running for user {}, skipping this run", user.getEmail());
+            return result;
+        }
+
         try {
             log.debug("Processing scheduled emails for user: {}", user.getEmail());
 
-            // Get all scheduled emails for this user
-            List<ScheduledEmail> scheduledEmails = scheduledEmailRepository.findByUser(user.getId());
-
-            // Filter emails that are due (scheduleTime <= now) and status is SCHEDULED
-            List<ScheduledEmail> dueEmails = scheduledEmails.stream()
-                .filter(email -> "SCHEDULED".equals(email.getStatus()))
-                .filter(email -> email.getScheduleTime() != null)
-                .filter(email -> email.getScheduleTime().compareTo(now) <= 0)
-                .collect(Collectors.toList());
+            List<ScheduledEmail> dueEmails = dispatchOrder(scheduledEmailRepository.findDueEmails(user.getId(), now));
 
             log.debug("Found {} due emails for user: {}", dueEmails.size(), user.getEmail());
 
+            // Only dispatch what fits in the Gmail quota; the rest stays scheduled for a later run
+            if (user.getProviderEnum() == User.Provider.GOOGLE) {
+                long remaining = gmailQuotaService.getQuota(user.getId()).getSendsRemaining();
+                if (dueEmails.size() > remaining) {
+                    log.warn("Gmail quota allows {} of {} due emails for user {}, deferring the rest",
+                        remaining, dueEmails.size(), user.getEmail());
+                    dueEmails = new ArrayList<>(dueEmails.subList(0, (int) remaining));
+                }
+            }
+
+            planSlots(user, dueEmails);
+
+            // Only emails whose slot has arrived are sent; the rest wait for a later run
+            Timestamp sendBefore = Timestamp.now();
             for (ScheduledEmail scheduledEmail : dueEmails) {
+                if (scheduledEmail.getPlannedTime() == null || scheduledEmail.getPlannedTime().compareTo(sendBefore) > 0) {
+                    continue;
+                }
+
                 try {
-                    sendScheduledEmail(scheduledEmail, user);
+                    // Sent on the shared dispatcher so HIGH emails of any user go ahead of queued bulk sends
+                    Boolean dispatched = dispatcher.submit(priorityOf(scheduledEmail),
+                            () -> sendIfStillScheduled(scheduledEmail, user))
+                            .get(dispatchTimeoutMs, TimeUnit.MILLISECONDS);
+                    if (!dispatched) {
+                        continue;
+                    }
                     result.processed++;
 
                     // Check if it was successfully sent
@@ -204,6 +405,15 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
                     } else {
                         result.failed++;
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Dispatch interrupted for user {}, remaining emails stay scheduled", user.getEmail());
+                    break;
+                } catch (TimeoutException e) {
+                    // The send may still run; its own status update records the outcome
+                    log.warn("Scheduled email {} not dispatched within {}ms for user {}, remaining emails stay scheduled",
+                        scheduledEmail.getId(), dispatchTimeoutMs, user.getEmail());
+                    break;
                 } catch (Exception e) {
                     log.error("Error sending scheduled email {} for user {}: {}",
                         scheduledEmail.getId(), user.getEmail(), e.getMessage(), e);
@@ -212,17 +422,120 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
             }
 
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Error fetching scheduled emails for user {}: {}",
                 user.getEmail(), e.getMessage(), e);
         } catch (Exception e) {
             log.error("Unexpected error processing user {}: {}",
                 user.getEmail(), e.getMessage(), e);
+        } finally {
+            usersInFlight.remove(user.getId());
         }
 
         return result;
     }
 
+    /**
+     * Order due emails for dispatch. Each recruiter's emails stay in schedule order (createdAt breaks
+     * ties), since a follow-up must never overtake the email it follows; priority only decides between
+     * the next emails of different recruiters.
+     */
+    private static List<ScheduledEmail> dispatchOrder(List<ScheduledEmail> dueEmails) {
+        Comparator<ScheduledEmail> scheduleOrder = Comparator.comparing(ScheduledEmail::getScheduleTime)
+                .thenComparing(ScheduledEmail::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()));
+
+        // Emails without a recruiter are independent, so each is a sequence of its own
+        Map<String, Deque<ScheduledEmail>> sequences = new HashMap<>();
+        dueEmails.stream().sorted(scheduleOrder).forEach(email -> sequences.computeIfAbsent(
+                email.getRecruiterId() != null ? email.getRecruiterId() : "email:" + email.getId(),
+                key -> new ArrayDeque<>()).add(email));
+
+        PriorityQueue<Deque<ScheduledEmail>> heads = new PriorityQueue<>(Comparator.comparing(
+                (Deque<ScheduledEmail> sequence) -> priorityOf(sequence.peek()), Comparator.reverseOrder())
+                .thenComparing(Deque::peek, scheduleOrder));
+        heads.addAll(sequences.values());
+
+        List<ScheduledEmail> ordered = new ArrayList<>(dueEmails.size());
+        while (!heads.isEmpty()) {
+            Deque<ScheduledEmail> sequence = heads.poll();
+            ordered.add(sequence.poll());
+            if (!sequence.isEmpty()) {
+                heads.add(sequence);
+            }
+        }
+        return ordered;
+    }
+
+    private static EmailRequest.Priority priorityOf(ScheduledEmail scheduledEmail) {
+        return scheduledEmail.getPriority() != null
+                ? EmailRequest.Priority.valueOf(scheduledEmail.getPriority())
+                : EmailRequest.Priority.NORMAL;
+    }
+
+    /**
+     * Give every due email without a slot its smoothed, domain-throttled send time and persist it as plannedTime,
+     * so later runs (or a restarted instance) send it once the slot arrives
+     */
+    private void planSlots(User user, List<ScheduledEmail> dueEmails) throws ExecutionException, InterruptedException {
+        List<ScheduledEmail> unplanned = dueEmails.stream()
+                .filter(email -> email.getPlannedTime() == null)
+                .collect(Collectors.toList());
+        if (unplanned.isEmpty()) {
+            return;
+        }
+
+        // Slots planned by an earlier run, possibly on another instance, are still pending among the due emails
+        Instant lastPlanned = dueEmails.stream()
+                .map(ScheduledEmail::getPlannedTime)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .map(planned -> Instant.ofEpochSecond(planned.getSeconds(), planned.getNanos()))
+                .orElse(null);
+
+        List<Instant> slots = sendSmoother.plan(user.getId(), unplanned, lastPlanned);
+        for (int i = 0; i < unplanned.size(); i++) {
+            // The recipient's domain may push the smoothed slot later
+            Instant slot = domainThrottle.reserve(unplanned.get(i).getRecipientEmail(), slots.get(i));
+            unplanned.get(i).setPlannedTime(Timestamp.ofTimeSecondsAndNanos(slot.getEpochSecond(), slot.getNano()));
+        }
+        scheduledEmailRepository.updatePlannedTimes(user.getId(), unplanned);
+    }
+
+    /**
+     * Re-read the email right before sending, so a cancel or edit made after it was loaded is honoured.
+     * Returns false when the email is no longer due and nothing was sent.
+     */
+    private boolean sendIfStillScheduled(ScheduledEmail scheduledEmail, User user) {
+        Optional<ScheduledEmail> current;
+        try {
+            current = scheduledEmailRepository.findById(user.getId(), scheduledEmail.getId());
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to re-read scheduled email " + scheduledEmail.getId(), e);
+        }
+
+        if (current.isEmpty() || current.get().getStatusEnum() != ScheduledEmail.Status.SCHEDULED) {
+            log.info("Scheduled email {} was deleted or changed status before its slot, not sending", scheduledEmail.getId());
+            return false;
+        }
+        if (current.get().getScheduleTime() == null || current.get().getScheduleTime().compareTo(Timestamp.now()) > 0) {
+            log.info("Scheduled email {} was moved to a later time before its slot, not sending", scheduledEmail.getId());
+            return false;
+        }
+
+        // Send what is stored now, keeping the slot this run planned
+        ScheduledEmail latest = current.get();
+        latest.setPlannedTime(scheduledEmail.getPlannedTime());
+        sendScheduledEmail(latest, user);
+
+        scheduledEmail.setStatus(latest.getStatus());
+        return true;
+    }
+
     /**
      * Result class for tracking processing statistics
      */
@@ -255,20 +568,69 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
     private void sendScheduledEmail(ScheduledEmail scheduledEmail, User user) {
         log.info("Sending scheduled email {} to {}", scheduledEmail.getId(), scheduledEmail.getRecipientEmail());
 
+        // Keyed on the scheduled email (or the send it was deferred from), so a retried run never sends it twice
+        String idempotencyKey = scheduledEmail.getIdempotencyKey() != null
+                ? scheduledEmail.getIdempotencyKey()
+                : SendIdempotencyGuard.scheduledKey(scheduledEmail.getId());
+        Optional<SentKey> existing = idempotencyGuard.claim(user, idempotencyKey);
+
+        if (existing.isPresent()) {
+            if (existing.get().getStatusEnum() == SentKey.Status.UNKNOWN) {
+                // An earlier attempt may have gone out: park it until the user resolves the key
+                log.warn("Scheduled email {} has an unconfirmed earlier send, not retrying", scheduledEmail.getId());
+                scheduledEmail.setStatusEnum(ScheduledEmail.Status.FAILED);
+                scheduledEmail.setErrorMessage("An earlier send may have gone out; resolve it before retrying");
+                scheduledEmail.setNextAttemptAt(null);
+                saveStatus(scheduledEmail, user, null);
+                return;
+            }
+            if (existing.get().getStatusEnum() != SentKey.Status.SENT) {
+                log.warn("Scheduled email {} is already being sent, skipping", scheduledEmail.getId());
+                return;
+            }
+
+            // Sent before but the status update was lost: record it instead of sending again
+            scheduledEmail.setStatusEnum(ScheduledEmail.Status.SENT);
+            scheduledEmail.setMessageId(existing.get().getMessageId());
+            scheduledEmail.setErrorMessage(null);
+            saveStatus(scheduledEmail, user, null);
+            return;
+        }
+
+        boolean sent = false;
+        boolean attempted = false;
+        String errorCode = null;
+
         try {
+            String subject = scheduledEmail.getSubject();
+            String body = scheduledEmail.getBody();
+
+            // Compact emails are rendered from the cached compiled template
+            if (scheduledEmail.isCompact()) {
+                CompiledTemplateCache.CompiledEmail compiled = templateCache.get(
+                        user.getId(), scheduledEmail.getTemplateId(), scheduledEmail.getTemplateVersion());
+                subject = compiled.renderSubject(scheduledEmail.getPlaceholderValues());
+                body = compiled.renderBody(scheduledEmail.getPlaceholderValues());
+            }
+
             // Build email request without scheduleTime (send immediately)
             EmailRequest emailRequest = EmailRequest.builder()
                     .to(scheduledEmail.getRecipientEmail())
-                    .subject(scheduledEmail.getSubject())
-                    .body(scheduledEmail.getBody())
+                    .subject(subject)
+                    .body(body)
                     .isHtml(scheduledEmail.getIsHtml() != null ? scheduledEmail.getIsHtml() : false)
                     .templateId(scheduledEmail.getTemplateId())
                     .recruiterId(scheduledEmail.getRecruiterId())
                     .priority(EmailRequest.Priority.valueOf(scheduledEmail.getPriority()))
+                    .resumeId(scheduledEmail.getResumeId())
+                    .idempotencyKey(idempotencyKey)
                     .build();
 
             // Send the email using Gmail OAuth service
+            scheduledEmail.setDispatchedAt(Timestamp.now());
+            attempted = true;
             EmailResponse response = gmailOAuthService.sendEmail(emailRequest, user);
+            sent = response.isSuccess();
 
             if (response.isSuccess()) {
                 // Mark as sent
@@ -276,6 +638,7 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
                 scheduledEmail.setSentAt(Timestamp.now());
                 scheduledEmail.setMessageId(response.getMessageId());
                 scheduledEmail.setErrorMessage(null);
+                scheduledEmail.setNextAttemptAt(null);
                 log.info("Successfully sent scheduled email {} to {}",
                     scheduledEmail.getId(), scheduledEmail.getRecipientEmail());
 
@@ -285,23 +648,69 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
                 }
             } else {
                 // Mark as failed
+                attempted = !SendIdempotencyGuard.isPreSendFailure(response.getErrorCode());
+                errorCode = response.getErrorCode();
                 scheduledEmail.setStatusEnum(ScheduledEmail.Status.FAILED);
-                scheduledEmail.setErrorMessage(response.getMessage());
+                scheduledEmail.setErrorMessage(response.getErrorDetail() != null ? response.getErrorDetail() : response.getMessage());
                 log.error("Failed to send scheduled email {} to {}: {}",
-                    scheduledEmail.getId(), scheduledEmail.getRecipientEmail(), response.getMessage());
+                    scheduledEmail.getId(), scheduledEmail.getRecipientEmail(), scheduledEmail.getErrorMessage());
             }
 
+        } catch (TemplateVersionMismatchException e) {
+            log.error("Not sending scheduled email {}: {}", scheduledEmail.getId(), e.getMessage());
+            errorCode = "TEMPLATE_VERSION_MISMATCH";
+            scheduledEmail.setStatusEnum(ScheduledEmail.Status.FAILED);
+            scheduledEmail.setErrorMessage(e.getMessage());
         } catch (Exception e) {
             log.error("Error sending scheduled email {}: {}", scheduledEmail.getId(), e.getMessage(), e);
             scheduledEmail.setStatusEnum(ScheduledEmail.Status.FAILED);
             scheduledEmail.setErrorMessage(e.getMessage());
         }
 
+        if (sent) {
+            saveStatus(scheduledEmail, user, idempotencyKey);
+            return;
+        }
+
+        if (!attempted) {
+            // Never reached Gmail, so a retry may send it
+            idempotencyGuard.release(user.getId(), idempotencyKey);
+        }
+
+        int retries = scheduledEmail.getRetryCount() != null ? scheduledEmail.getRetryCount() : 0;
+        scheduledEmail.setNextAttemptAt(retryPolicy.nextAttemptAt(retries, errorCode, scheduledEmail.getErrorMessage()));
+        if (scheduledEmail.getNextAttemptAt() == null) {
+            log.warn("Scheduled email {} will not be retried after {} retries", scheduledEmail.getId(), retries);
+        }
+        saveStatus(scheduledEmail, user, null);
+    }
+
+    @Override
+    public void retryScheduledEmail(ScheduledEmail scheduledEmail, User user) {
+        int retries = scheduledEmail.getRetryCount() != null ? scheduledEmail.getRetryCount() : 0;
+        scheduledEmail.setRetryCount(retries + 1);
+        scheduledEmail.setNextAttemptAt(null);
+
+        log.info("Retrying scheduled email {} (retry {} of {})",
+                scheduledEmail.getId(), retries + 1, retryPolicy.getMaxAttempts());
+        sendScheduledEmail(scheduledEmail, user);
+    }
+
+    /**
+     * Save the updated scheduled email; for a sent email its idempotency key is marked sent in the same batch
+     */
+    private void saveStatus(ScheduledEmail scheduledEmail, User user, String sentIdempotencyKey) {
         try {
-            // Save the updated scheduled email
-            scheduledEmailRepository.save(user.getId(), scheduledEmail);
+            FirestoreBatchWriter.ChunkedBatch batch = batchWriter.begin();
+            scheduledEmailRepository.saveInBatch(batch, user.getId(), scheduledEmail);
+            if (sentIdempotencyKey != null) {
+                idempotencyGuard.confirmInBatch(batch, user.getId(), sentIdempotencyKey, scheduledEmail.getMessageId());
+            }
+            batch.commit();
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Failed to update scheduled email status: {}", e.getMessage(), e);
         }
     }
@@ -318,15 +727,15 @@ public class ScheduledEmailServiceImpl implements ScheduledEmailService {
                     .orElse(null);
 
             if (assignment != null) {
-                assignment.setEmailsSent((assignment.getEmailsSent() != null ? assignment.getEmailsSent() : 0) + 1);
-                assignment.setLastEmailSentAt(Timestamp.now());
-                assignmentRepository.save(user.getId(), assignment);
+                assignmentRepository.increment(user.getId(), assignment.getId(), 1);
                 log.info("Updated email count for assignment: template={}, recruiter={}", templateId, recruiterId);
             } else {
                 log.warn("No assignment found to update for template={}, recruiter={}", templateId, recruiterId);
             }
         } catch (ExecutionException | InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Error updating assignment email count: {}", e.getMessage(), e);
         }
     }
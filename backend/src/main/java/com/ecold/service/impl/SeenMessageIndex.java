@@ -0,0 +1,209 @@
+package com.ecold.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user set of Gmail message ids known to be ingested
+ * Gmail ids are 16 hex digits, so each one is packed into a long and kept in an
+ * open-addressing hash set: about 16 bytes per id instead of a String and a map entry.
+ * The set only holds ids this instance stored or confirmed, so a hit is certain and
+ * skips the Firestore check; a miss proves nothing and callers confirm misses against
+ * Firestore in one batched lookup. Nothing is bulk-loaded, so a scan never pays a read
+ * per stored email. Sets are evicted LRU once their combined table size passes
+ * app.incoming.seen-index.max-bytes. Ids that do not parse as hex are never indexed.
+ */
+@Slf4j
+@Component
+public class SeenMessageIndex {
+
+    private static final long INVALID = -1L;
+
+    @Value("${app.incoming.seen-index.max-bytes:33554432}")
+    private long maxBytes;
+
+    private final Map<String, LongHashSet> sets = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    @PostConstruct
+    void init() {
+        log.info("Seen message index initialized: max {} bytes", maxBytes);
+    }
+
+    /**
+     * Whether the message is known to be ingested. False means "not known here", which
+     * includes ids that cannot be packed; callers confirm those against Firestore.
+     */
+    public boolean contains(String userId, String messageId) {
+        long packed = pack(messageId);
+        if (packed == INVALID) {
+            return false;
+        }
+
+        LongHashSet set;
+        synchronized (this) {
+            set = sets.get(userId);
+        }
+        if (set == null) {
+            return false;
+        }
+        synchronized (set) {
+            return set.contains(packed);
+        }
+    }
+
+    /**
+     * Record a message as ingested
+     */
+    public void add(String userId, String messageId) {
+        long packed = pack(messageId);
+        if (packed == INVALID) {
+            return;
+        }
+
+        LongHashSet set;
+        synchronized (this) {
+            set = sets.get(userId);
+            if (set == null) {
+                set = new LongHashSet(0);
+                sets.put(userId, set);
+                totalBytes += set.bytes();
+            }
+        }
+
+        long grownBy;
+        synchronized (set) {
+            long before = set.bytes();
+            set.add(packed);
+            grownBy = set.bytes() - before;
+        }
+        if (grownBy > 0) {
+            synchronized (this) {
+                if (sets.get(userId) == set) {
+                    totalBytes += grownBy;
+                    evictOverBudget(userId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop least recently used sets until within budget, keeping the one just touched
+     */
+    private void evictOverBudget(String keep) {
+        Iterator<Map.Entry<String, LongHashSet>> it = sets.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, LongHashSet> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().bytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * Pack a Gmail message id (up to 16 hex digits) into a long, or INVALID if it does not fit.
+     * -1 is reserved, which only excludes the id "ffffffffffffffff".
+     */
+    static long pack(String messageId) {
+        if (messageId == null || messageId.isEmpty() || messageId.length() > 16) {
+            return INVALID;
+        }
+        try {
+            return Long.parseUnsignedLong(messageId, 16);
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Open-addressing set of longs with linear probing, kept at most half full.
+     * 0 marks an empty slot, so the value 0 is tracked separately.
+     */
+    private static final class LongHashSet {
+
+        private long[] table;
+        private int size;
+        private boolean hasZero;
+
+        private LongHashSet(int expected) {
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity <<= 1;
+            }
+            table = new long[capacity];
+        }
+
+        boolean contains(long value) {
+            if (value == 0) {
+                return hasZero;
+            }
+            int mask = table.length - 1;
+            for (int slot = mix(value) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                if (table[slot] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(long value) {
+            if (value == 0) {
+                if (!hasZero) {
+                    hasZero = true;
+                    size++;
+                }
+                return;
+            }
+            if ((size + 1) * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            if (insert(table, value)) {
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long bytes() {
+            return (long) table.length * Long.BYTES;
+        }
+
+        private void rehash(int capacity) {
+            long[] grown = new long[capacity];
+            for (long value : table) {
+                if (value != 0) {
+                    insert(grown, value);
+                }
+            }
+            table = grown;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int slot = mix(value) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            return true;
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.SentKey;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.FirestoreBatchWriter;
+import com.ecold.repository.firestore.SentKeyFirestoreRepository;
+import com.google.cloud.Timestamp;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Idempotency guard for sends
+ * A send with a key first claims it (PENDING) in a Firestore transaction, and the key is
+ * marked SENT once the provider accepts the message. Keys already SENT or PENDING are
+ * rejected before any provider call. A PENDING claim is never reclaimed just because it
+ * is old: the attempt may have timed out after the provider accepted the message. Once
+ * past its lease it is checked against the user's Gmail Sent mail by the Message-ID the
+ * send was stamped with, and only reclaimed if Gmail does not have it. When that cannot
+ * be checked the key becomes UNKNOWN and blocks sends until resolved explicitly.
+ * A size-bounded LRU of recently seen keys short-circuits repeats without a Firestore read.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SendIdempotencyGuard {
+
+    // Failures that happen before any provider call, so the claim can safely be released
+    private static final Set<String> PRE_SEND_FAILURES = Set.of(
+            "NO_GMAIL_TOKEN", "TOKEN_REFRESH_FAILED", "EMAIL_DISABLED", "SMTP_NOT_CONFIGURED", "SMTP_FORBIDDEN",
+            "QUOTA_EXCEEDED");
+
+    private final SentKeyFirestoreRepository sentKeyRepository;
+    private final GmailOAuthServiceImpl gmailOAuthService;
+
+    @Value("${app.email.idempotency.cache-size:10000}")
+    private int maxEntries;
+
+    // An unconfirmed claim older than this is checked against Sent mail instead of blocking as in progress
+    @Value("${app.email.idempotency.pending-lease-seconds:300}")
+    private long pendingLeaseSeconds;
+
+    private Map<String, SentKey> recent;
+
+    @PostConstruct
+    void init() {
+        recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SentKey> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public static String scheduledKey(String scheduledEmailId) {
+        return "scheduled:" + scheduledEmailId;
+    }
+
+    public static String campaignKey(String campaignId, String recruiterId) {
+        return "campaign:" + campaignId + ":" + recruiterId;
+    }
+
+    /**
+     * RFC 822 Message-ID stamped on every send made under this key, so Sent mail can be searched for it
+     */
+    public static String rfcMessageId(String userId, String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest((userId + "/" + key).getBytes(StandardCharsets.UTF_8));
+            return "<" + HexFormat.of().formatHex(hash, 0, 16) + "@idempotency.ecold>";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static boolean isPreSendFailure(String errorCode) {
+        return errorCode != null && PRE_SEND_FAILURES.contains(errorCode);
+    }
+
+    /**
+     * Claim the key for this attempt.
+     * Returns empty if the caller may send, or the record of the send that blocks it.
+     */
+    public Optional<SentKey> claim(User user, String key) {
+        String cacheKey = cacheKey(user.getId(), key);
+
+        SentKey cached = recent.get(cacheKey);
+        if (cached != null && !isStale(cached)) {
+            log.info("Duplicate send rejected from cache: key={}, status={}", key, cached.getStatus());
+            return Optional.of(cached);
+        }
+
+        try {
+            Optional<SentKey> existing = sentKeyRepository.claim(user.getId(), key);
+            if (existing.isPresent() && isStale(existing.get())) {
+                existing = resolveStale(user, key, existing.get());
+            }
+
+            if (existing.isPresent()) {
+                recent.put(cacheKey, existing.get());
+                log.info("Duplicate send rejected: key={}, status={}", key, existing.get().getStatus());
+            } else {
+                recent.put(cacheKey, SentKey.builder()
+                        .key(key)
+                        .status(SentKey.Status.PENDING.name())
+                        .claimedAt(Timestamp.now())
+                        .build());
+            }
+            return existing;
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("Failed to claim idempotency key " + key, e);
+        }
+    }
+
+    /**
+     * Settle an UNKNOWN (or stuck PENDING) key by hand: sent=true records it as delivered,
+     * sent=false releases it so the send may be retried
+     */
+    public void resolve(String userId, String key, boolean sent) {
+        if (sent) {
+            confirm(userId, key, null);
+        } else {
+            release(userId, key);
+        }
+        log.info("Idempotency key {} resolved by user as {}", key, sent ? "sent" : "not sent");
+    }
+
+    /**
+     * A claim past its lease whose attempt never confirmed: look for the message in Gmail Sent mail.
+     * Found means it went out; not found means it never reached Gmail and the key is reclaimed;
+     * anything else leaves the outcome UNKNOWN.
+     */
+    private Optional<SentKey> resolveStale(User user, String key, SentKey pending)
+            throws ExecutionException, InterruptedException {
+        if (user.getProviderEnum() != User.Provider.GOOGLE) {
+            return markUnknown(user, key, pending);
+        }
+
+        Optional<String> sentMessageId;
+        try {
+            sentMessageId = gmailOAuthService.findSentMessageId(user, rfcMessageId(user.getId(), key));
+        } catch (Exception e) {
+            log.warn("Could not check Sent mail for idempotency key {}: {}", key, e.getMessage());
+            return markUnknown(user, key, pending);
+        }
+
+        if (sentMessageId.isPresent()) {
+            log.info("Unconfirmed send for idempotency key {} found in Sent mail as {}", key, sentMessageId.get());
+            sentKeyRepository.markSent(user.getId(), key, sentMessageId.get());
+            pending.setStatus(SentKey.Status.SENT.name());
+            pending.setMessageId(sentMessageId.get());
+            return Optional.of(pending);
+        }
+
+        log.info("Unconfirmed send for idempotency key {} never reached Gmail, reclaiming", key);
+        return sentKeyRepository.reclaim(user.getId(), key, pending.getClaimedAt());
+    }
+
+    private Optional<SentKey> markUnknown(User user, String key, SentKey pending)
+            throws ExecutionException, InterruptedException {
+        log.warn("Outcome of send for idempotency key {} is unknown, blocking until it is resolved", key);
+        sentKeyRepository.markUnknown(user.getId(), key);
+        pending.setStatus(SentKey.Status.UNKNOWN.name());
+        return Optional.of(pending);
+    }
+
+    /**
+     * Record that the claimed send was accepted by the provider
+     */
+    public void confirm(String userId, String key, String messageId) {
+        remember(userId, key, messageId);
+        try {
+            sentKeyRepository.markSent(userId, key, messageId);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // The PENDING claim still blocks retries; past its lease it is checked against Sent mail
+            log.error("Failed to confirm idempotency key {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stage the confirmation in the batch that carries the send's status update
+     */
+    public void confirmInBatch(FirestoreBatchWriter.ChunkedBatch batch, String userId, String key, String messageId) {
+        remember(userId, key, messageId);
+        sentKeyRepository.markSentInBatch(batch, userId, key, messageId);
+    }
+
+    /**
+     * Release a claim whose send definitely did not go out, so it can be retried straight away
+     */
+    public void release(String userId, String key) {
+        recent.remove(cacheKey(userId, key));
+        try {
+            sentKeyRepository.delete(userId, key);
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Failed to release idempotency key {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    private void remember(String userId, String key, String messageId) {
+        recent.put(cacheKey(userId, key), SentKey.builder()
+                .key(key)
+                .status(SentKey.Status.SENT.name())
+                .messageId(messageId)
+                .sentAt(Timestamp.now())
+                .build());
+    }
+
+    private boolean isStale(SentKey sentKey) {
+        return sentKey.getStatusEnum() == SentKey.Status.PENDING
+                && sentKey.getClaimedAt() != null
+                && sentKey.getClaimedAt().compareTo(staleBefore()) < 0;
+    }
+
+    private Timestamp staleBefore() {
+        Instant cutoff = Instant.now().minusSeconds(pendingLeaseSeconds);
+        return Timestamp.ofTimeSecondsAndNanos(cutoff.getEpochSecond(), cutoff.getNano());
+    }
+
+    private static String cacheKey(String userId, String key) {
+        return userId + "/" + key;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.ScheduledEmail;
+import com.google.cloud.Timestamp;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Load-leveling for scheduled sends.
+ * Users tend to schedule for round times, so many emails become due in the same second.
+ * Each user gets a leaky bucket: emails sharing a schedule time are spread across the
+ * smoothing window, and no two sends for a user are planned closer than the minimum interval.
+ * Slots are handed out in the order given, so a recruiter's sequence is never reordered.
+ * Callers persist each slot as the email's plannedTime; nothing here waits for a slot.
+ * The buckets live in memory, so each plan is seeded with the user's latest persisted slot:
+ * after a restart, or when another instance planned last, new slots still queue behind it.
+ */
+@Slf4j
+@Component
+public class SendSmoother {
+
+    @Value("${scheduling.email.smoothing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scheduling.email.smoothing.window-seconds:600}")
+    private long windowSeconds;
+
+    @Value("${scheduling.email.smoothing.min-interval-ms:1000}")
+    private long minIntervalMs;
+
+    // Next free send slot per user
+    private final Map<String, Instant> nextSlots = new ConcurrentHashMap<>();
+
+    /**
+     * Plan a send slot for each due email, in the given order, after lastPlanned if given.
+     * Callers should pass emails sorted by scheduleTime then createdAt.
+     */
+    public List<Instant> plan(String userId, List<ScheduledEmail> dueEmails, Instant lastPlanned) {
+        List<Instant> slots = new ArrayList<>(dueEmails.size());
+        if (dueEmails.isEmpty()) {
+            return slots;
+        }
+
+        if (!enabled) {
+            Instant now = Instant.now();
+            dueEmails.forEach(email -> slots.add(now));
+            return slots;
+        }
+
+        if (lastPlanned != null) {
+            seed(userId, lastPlanned);
+        }
+
+        // Size of each burst, keyed by the shared schedule time
+        Map<Timestamp, Long> burstSizes = dueEmails.stream()
+                .collect(Collectors.groupingBy(ScheduledEmail::getScheduleTime, Collectors.counting()));
+
+        for (ScheduledEmail email : dueEmails) {
+            long burstSize = burstSizes.get(email.getScheduleTime());
+            slots.add(reserve(userId, gapFor(burstSize)));
+        }
+
+        log.debug("Planned {} sends for user {} between {} and {}",
+                slots.size(), userId, slots.get(0), slots.get(slots.size() - 1));
+        return slots;
+    }
+
+    /**
+     * Drop buckets that have fully drained
+     */
+    public void evictIdle() {
+        Instant now = Instant.now();
+        nextSlots.entrySet().removeIf(entry -> entry.getValue().isBefore(now));
+    }
+
+    /**
+     * Move the user's next free slot to at least minInterval after a persisted slot.
+     * A persisted slot may sit far out because the domain throttle deferred it, so the seed
+     * is capped at one window from now.
+     */
+    private void seed(String userId, Instant lastPlanned) {
+        Instant now = Instant.now();
+        Instant floor = lastPlanned.plusMillis(minIntervalMs);
+        Instant cap = now.plusSeconds(windowSeconds);
+        Instant seeded = floor.isAfter(cap) ? cap : floor;
+        if (seeded.isAfter(now)) {
+            nextSlots.merge(userId, seeded, (next, seed) -> next.isAfter(seed) ? next : seed);
+        }
+    }
+
+    private Instant reserve(String userId, Duration gap) {
+        Instant[] slot = new Instant[1];
+        nextSlots.compute(userId, (key, next) -> {
+            Instant now = Instant.now();
+            slot[0] = next != null && next.isAfter(now) ? next : now;
+            return slot[0].plus(gap);
+        });
+        return slot[0];
+    }
+
+    private Duration gapFor(long burstSize) {
+        long spreadMs = burstSize > 1 ? (windowSeconds * 1000) / burstSize : 0;
+        return Duration.ofMillis(Math.max(minIntervalMs, spreadMs));
+    }
+}
@@ -0,0 +1,168 @@
+package com.ecold.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled SMTP transports
+ * Keeps up to app.email.smtp.pool-size authenticated Transport connections open and sends
+ * every message of a call over one of them, so bulk SMTP sends skip the TCP/TLS handshake
+ * and AUTH per email. A connection found dead before a message is handed over (connect or
+ * the liveness check) is reconnected once. Failures once the SMTP transaction has started
+ * are never retried, since some recipients may already have the message; a
+ * SendFailedException reaches the caller unchanged.
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool {
+
+    @Autowired(required = false)
+    private JavaMailSender mailSender;
+
+    @Value("${app.email.smtp.pooled:true}")
+    private boolean pooled;
+
+    @Value("${app.email.smtp.pool-size:4}")
+    private int poolSize;
+
+    @Value("${app.email.smtp.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    private volatile BlockingQueue<Transport> idle;
+
+    /**
+     * Pooling needs the concrete sender to open its own connections
+     */
+    public boolean isEnabled() {
+        return pooled && mailSender instanceof JavaMailSenderImpl;
+    }
+
+    /**
+     * Send the messages in order over one pooled connection
+     */
+    public void send(MimeMessage... messages) throws MessagingException {
+        if (!isEnabled()) {
+            throw new IllegalStateException("SMTP transport pooling is not enabled");
+        }
+
+        Transport transport = borrow();
+        try {
+            for (MimeMessage message : messages) {
+                message.saveChanges();
+                connect(transport);
+                try {
+                    transport.sendMessage(message, message.getAllRecipients());
+                } catch (SendFailedException e) {
+                    throw e;
+                } catch (MessagingException e) {
+                    // The server may have taken the message (or part of its recipients): do not resend
+                    closeQuietly(transport);
+                    throw e;
+                }
+            }
+        } finally {
+            idle.offer(transport);
+        }
+    }
+
+    /**
+     * Make sure the transport is connected, reconnecting once if it was dropped or timed out server-side.
+     * Nothing has been sent on this connection for the current message yet, so a reconnect is safe.
+     */
+    private void connect(Transport transport) throws MessagingException {
+        try {
+            ensureConnected(transport);
+        } catch (MessagingException e) {
+            log.warn("SMTP connection failed, reconnecting: {}", e.getMessage());
+            closeQuietly(transport);
+            ensureConnected(transport);
+        }
+    }
+
+    private Transport borrow() throws MessagingException {
+        BlockingQueue<Transport> pool = pool();
+        try {
+            Transport transport = pool.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            if (transport == null) {
+                throw new MessagingException("Timed out waiting for a pooled SMTP connection");
+            }
+            return transport;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for a pooled SMTP connection", e);
+        }
+    }
+
+    private BlockingQueue<Transport> pool() throws MessagingException {
+        BlockingQueue<Transport> pool = idle;
+        if (pool == null) {
+            synchronized (this) {
+                pool = idle;
+                if (pool == null) {
+                    // Transports are created unconnected; each connects on first use
+                    JavaMailSenderImpl sender = (JavaMailSenderImpl) mailSender;
+                    pool = new ArrayBlockingQueue<>(poolSize);
+                    for (int i = 0; i < poolSize; i++) {
+                        pool.add(sender.getSession().getTransport(sender.getProtocol()));
+                    }
+                    idle = pool;
+                    log.info("SMTP transport pool initialized with {} connections to {}:{}",
+                            poolSize, sender.getHost(), sender.getPort());
+                }
+            }
+        }
+        return pool;
+    }
+
+    private void ensureConnected(Transport transport) throws MessagingException {
+        if (transport.isConnected()) {
+            return;
+        }
+
+        JavaMailSenderImpl sender = (JavaMailSenderImpl) mailSender;
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            if ("".equals(password)) {
+                password = null;
+            }
+        }
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+    }
+
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        BlockingQueue<Transport> pool = idle;
+        if (pool == null) {
+            return;
+        }
+
+        List<Transport> transports = new ArrayList<>();
+        pool.drainTo(transports);
+        transports.forEach(SmtpTransportPool::closeQuietly);
+    }
+}
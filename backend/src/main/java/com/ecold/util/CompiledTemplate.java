@@ -0,0 +1,93 @@
+package com.ecold.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A template string pre-split into literal text and {Placeholder} segments,
+ * so rendering is a single pass instead of one String.replace per placeholder.
+ * Placeholders without a value are left as-is, matching TemplatePlaceholders.render.
+ * A placeholder name is any non-empty run of characters other than braces, so keys with
+ * spaces, hyphens or punctuation render exactly as TemplatePlaceholders replaces them.
+ */
+public final class CompiledTemplate {
+
+    private final String[] literals;
+    private final String[] placeholders;
+    private final Set<String> placeholderNames;
+    private final int literalLength;
+
+    private CompiledTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        this.placeholderNames = Collections.unmodifiableSet(new LinkedHashSet<>(placeholders));
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Split text into literal and placeholder segments.
+     * Segments alternate: literal, placeholder, literal, ..., literal.
+     */
+    public static CompiledTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        String source = text != null ? text : "";
+        int literalStart = 0;
+        int i = 0;
+
+        while (i < source.length()) {
+            if (source.charAt(i) == '{') {
+                int end = i + 1;
+                while (end < source.length() && isNameChar(source.charAt(end))) {
+                    end++;
+                }
+                // "{{Key}" renders as "{" + value, like a plain replace of "{Key}"
+                if (end > i + 1 && end < source.length() && source.charAt(end) == '}') {
+                    literals.add(source.substring(literalStart, i));
+                    placeholders.add(source.substring(i + 1, end));
+                    i = end + 1;
+                    literalStart = i;
+                    continue;
+                }
+            }
+            i++;
+        }
+        literals.add(source.substring(literalStart));
+
+        return new CompiledTemplate(literals, placeholders);
+    }
+
+    /**
+     * Render with the given placeholder values
+     */
+    public String render(Map<String, String> values) {
+        StringBuilder sb = new StringBuilder(literalLength + placeholders.length * 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            sb.append(literals[i]);
+            String value = values != null ? values.get(placeholders[i]) : null;
+            if (value != null) {
+                sb.append(value);
+            } else {
+                sb.append('{').append(placeholders[i]).append('}');
+            }
+        }
+        sb.append(literals[literals.length - 1]);
+        return sb.toString();
+    }
+
+    /**
+     * Names of the placeholders referenced by this template
+     */
+    public Set<String> getPlaceholderNames() {
+        return placeholderNames;
+    }
+
+    private static boolean isNameChar(char c) {
+        return c != '{' && c != '}';
+    }
+}
@@ -0,0 +1,198 @@
+package com.ecold.util;
+
+/**
+ * Single-pass HTML to plain text conversion for email bodies.
+ * Drops tags, comments and script/style content, turns block-level tags into line breaks,
+ * decodes common and numeric entities, and collapses runs of whitespace. Stops once
+ * maxChars of text have been produced. Not a full HTML parser; good enough for mail.
+ */
+public final class HtmlToText {
+
+    private HtmlToText() {
+    }
+
+    public static String convert(CharSequence html, int maxChars) {
+        if (html == null) {
+            return "";
+        }
+
+        Output out = new Output(maxChars);
+        int length = html.length();
+        int i = 0;
+
+        while (i < length && !out.full()) {
+            char c = html.charAt(i);
+
+            if (c == '<') {
+                if (startsWith(html, i, "<!--")) {
+                    int end = indexOf(html, "-->", i + 4);
+                    i = end < 0 ? length : end + 3;
+                    continue;
+                }
+
+                int end = indexOf(html, ">", i + 1);
+                if (end < 0) {
+                    break;
+                }
+                String tag = tagName(html, i + 1, end);
+                boolean closing = html.charAt(i + 1) == '/';
+                if (!closing && (tag.equals("script") || tag.equals("style") || tag.equals("head") || tag.equals("title"))) {
+                    int close = indexOfIgnoreCase(html, "</" + tag, end + 1);
+                    i = close < 0 ? length : close;
+                    continue;
+                }
+                if (isBlock(tag)) {
+                    out.newline();
+                }
+                i = end + 1;
+                continue;
+            }
+
+            if (c == '&') {
+                int end = indexOf(html, ";", i + 1);
+                if (end > 0 && end - i <= 10) {
+                    int decoded = entity(html.subSequence(i + 1, end).toString());
+                    if (decoded >= 0) {
+                        out.append((char) decoded);
+                        i = end + 1;
+                        continue;
+                    }
+                }
+            }
+
+            out.append(c);
+            i++;
+        }
+
+        return out.toString();
+    }
+
+    private static String tagName(CharSequence html, int from, int end) {
+        int i = from;
+        if (i < end && html.charAt(i) == '/') {
+            i++;
+        }
+        int start = i;
+        while (i < end && Character.isLetterOrDigit(html.charAt(i))) {
+            i++;
+        }
+        return html.subSequence(start, i).toString().toLowerCase();
+    }
+
+    private static boolean isBlock(String tag) {
+        switch (tag) {
+            case "br": case "p": case "div": case "li": case "tr": case "table": case "ul": case "ol":
+            case "h1": case "h2": case "h3": case "h4": case "h5": case "h6": case "blockquote": case "hr":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int entity(String name) {
+        switch (name) {
+            case "amp": return '&';
+            case "lt": return '<';
+            case "gt": return '>';
+            case "quot": return '"';
+            case "apos": return '\'';
+            case "nbsp": return ' ';
+            default:
+                break;
+        }
+        try {
+            if (name.startsWith("#x") || name.startsWith("#X")) {
+                return validChar(Integer.parseInt(name.substring(2), 16));
+            }
+            if (name.startsWith("#")) {
+                return validChar(Integer.parseInt(name.substring(1)));
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static int validChar(int codePoint) {
+        return codePoint > 0 && codePoint <= Character.MAX_VALUE ? codePoint : -1;
+    }
+
+    private static boolean startsWith(CharSequence text, int at, String prefix) {
+        if (at + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(at + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence text, String needle, int from) {
+        for (int i = from; i <= text.length() - needle.length(); i++) {
+            if (startsWith(text, i, needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfIgnoreCase(CharSequence text, String needle, int from) {
+        for (int i = from; i <= text.length() - needle.length(); i++) {
+            boolean match = true;
+            for (int j = 0; j < needle.length() && match; j++) {
+                match = Character.toLowerCase(text.charAt(i + j)) == needle.charAt(j);
+            }
+            if (match) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Text builder that collapses whitespace: spaces within a line, at most one blank line
+     */
+    private static final class Output {
+
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+        private int pendingNewlines;
+        private boolean pendingSpace;
+
+        private Output(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        void append(char c) {
+            if (Character.isWhitespace(c) || c == '\u00A0') {
+                pendingSpace = true;
+                return;
+            }
+            if (text.length() > 0) {
+                if (pendingNewlines > 0) {
+                    text.append(pendingNewlines > 1 ? "\n\n" : "\n");
+                } else if (pendingSpace) {
+                    text.append(' ');
+                }
+            }
+            pendingNewlines = 0;
+            pendingSpace = false;
+            text.append(c);
+        }
+
+        void newline() {
+            pendingNewlines++;
+        }
+
+        boolean full() {
+            return text.length() >= maxChars;
+        }
+
+        @Override
+        public String toString() {
+            return text.length() > maxChars ? text.substring(0, maxChars) : text.toString();
+        }
+    }
+}
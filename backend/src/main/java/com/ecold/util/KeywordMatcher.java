@@ -0,0 +1,149 @@
+package com.ecold.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed list of ASCII keywords.
+ * Compiled once into a dense transition table, then matches every keyword in one pass
+ * over the text, case-insensitively, counting substring occurrences the same way
+ * String.contains would find them. Immutable and safe to share between threads.
+ */
+public final class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+
+    private final String[] keywords;
+    // delta[state][c]: next state after reading c; non-ASCII input returns to the root
+    private final int[][] delta;
+    // Keyword ids that end at each state, including those reached through failure links
+    private final int[][] outputs;
+
+    private KeywordMatcher(List<String> keywords) {
+        this.keywords = keywords.toArray(new String[0]);
+
+        List<int[]> goTo = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        goTo.add(newRow());
+        out.add(new ArrayList<>());
+
+        for (int id = 0; id < this.keywords.length; id++) {
+            int state = 0;
+            for (char c : this.keywords[id].toCharArray()) {
+                if (goTo.get(state)[c] < 0) {
+                    goTo.get(state)[c] = goTo.size();
+                    goTo.add(newRow());
+                    out.add(new ArrayList<>());
+                }
+                state = goTo.get(state)[c];
+            }
+            out.get(state).add(id);
+        }
+
+        // Breadth-first: turn the trie into a DFA by filling missing edges from the failure state
+        int[] failure = new int[goTo.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = goTo.get(0);
+        for (int c = 0; c < ALPHABET; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] row = goTo.get(state);
+            int[] failRow = goTo.get(failure[state]);
+            for (int c = 0; c < ALPHABET; c++) {
+                if (row[c] < 0) {
+                    row[c] = failRow[c];
+                } else {
+                    int child = row[c];
+                    failure[child] = failRow[c];
+                    out.get(child).addAll(out.get(failure[child]));
+                    queue.add(child);
+                }
+            }
+        }
+
+        this.delta = goTo.toArray(new int[0][]);
+        this.outputs = new int[out.size()][];
+        for (int state = 0; state < out.size(); state++) {
+            outputs[state] = out.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * Compile the keywords, lowercased and de-duplicated. Keywords must be ASCII.
+     */
+    public static KeywordMatcher compile(Collection<String> keywords) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                continue;
+            }
+            String lower = keyword.toLowerCase();
+            if (!lower.chars().allMatch(c -> c < ALPHABET)) {
+                throw new IllegalArgumentException("Keyword is not ASCII: " + keyword);
+            }
+            unique.add(lower);
+        }
+        return new KeywordMatcher(new ArrayList<>(unique));
+    }
+
+    public int size() {
+        return keywords.length;
+    }
+
+    public String keyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * Occurrence count per keyword id across the given texts, scanned as if joined by a single space
+     */
+    public int[] count(CharSequence... texts) {
+        int[] counts = new int[keywords.length];
+        int state = 0;
+        boolean first = true;
+
+        for (CharSequence text : texts) {
+            if (text == null) {
+                continue;
+            }
+            if (!first) {
+                state = step(state, ' ', counts);
+            }
+            first = false;
+            for (int i = 0; i < text.length(); i++) {
+                state = step(state, Character.toLowerCase(text.charAt(i)), counts);
+            }
+        }
+        return counts;
+    }
+
+    private int step(int state, char c, int[] counts) {
+        int next = c < ALPHABET ? delta[state][c] : 0;
+        for (int id : outputs[next]) {
+            counts[id]++;
+        }
+        return next;
+    }
+
+    @Override
+    public String toString() {
+        return "KeywordMatcher" + Arrays.toString(keywords);
+    }
+}
@@ -0,0 +1,208 @@
+package com.ecold.util;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Serializes MimeMessages for the Gmail API without per-send garbage.
+ *
+ * Messages are built on one shared Session. Small messages are streamed by writeTo straight
+ * through a base64url encoder into a per-thread buffer reused across sends, so the raw MIME
+ * never exists as a byte array and the "raw" String is the only allocation that scales
+ * with the message. Larger messages are sent by media upload from content that runs
+ * writeTo into the request body, so they are never buffered or base64-encoded in memory.
+ */
+public final class MimeMessageEncoder {
+
+    // Buffers that grew past this are dropped after use instead of being kept per thread
+    private static final int MAX_RETAINED_BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    private static final ThreadLocal<PooledBuffer> ENCODED_BUFFER = ThreadLocal.withInitial(PooledBuffer::new);
+
+    private MimeMessageEncoder() {
+    }
+
+    /**
+     * New message on the shared Session
+     */
+    public static MimeMessage newMessage() {
+        return new MimeMessage(SESSION);
+    }
+
+    /**
+     * New message on the shared Session that keeps the given Message-ID instead of generating one on save
+     */
+    public static MimeMessage newMessage(String messageId) {
+        return new MimeMessage(SESSION) {
+            @Override
+            protected void updateMessageID() throws MessagingException {
+                setHeader("Message-ID", messageId);
+            }
+        };
+    }
+
+    /**
+     * The base64url "raw" string Gmail expects, or empty if the serialized message is larger
+     * than maxRawBytes and should go up by media upload instead. Encoding stops as soon as
+     * the limit is passed.
+     */
+    public static Optional<String> toBase64Url(MimeMessage message, long maxRawBytes)
+            throws MessagingException, IOException {
+        PooledBuffer encoded = ENCODED_BUFFER.get();
+        encoded.reset();
+
+        try {
+            OutputStream encoder = Base64.getUrlEncoder().wrap(encoded);
+            message.writeTo(new LimitedOutputStream(encoder, maxRawBytes));
+            encoder.close(); // writes the final padding; closing a ByteArrayOutputStream is a no-op
+            return Optional.of(new String(encoded.array(), 0, encoded.size(), StandardCharsets.US_ASCII));
+        } catch (LimitExceededException e) {
+            return Optional.empty();
+        } finally {
+            encoded.reset();
+            if (encoded.capacity() > MAX_RETAINED_BUFFER_BYTES) {
+                ENCODED_BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * message/rfc822 media content that serializes the message directly into the upload.
+     * The length is measured with a counting pass that keeps nothing.
+     */
+    public static AbstractInputStreamContent mediaContent(MimeMessage message) {
+        return new MessageContent(message);
+    }
+
+    /**
+     * Passes writes through until more than limit bytes have been written
+     */
+    private static final class LimitedOutputStream extends FilterOutputStream {
+
+        private final long limit;
+        private long written;
+
+        private LimitedOutputStream(OutputStream out, long limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count(len);
+            out.write(b, off, len);
+        }
+
+        private void count(int len) throws LimitExceededException {
+            written += len;
+            if (written > limit) {
+                throw new LimitExceededException();
+            }
+        }
+    }
+
+    private static final class LimitExceededException extends IOException {
+
+        private LimitExceededException() {
+            super("Message is larger than the inline limit");
+        }
+
+        // Thrown for control flow only
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final class MessageContent extends AbstractInputStreamContent {
+
+        private final MimeMessage message;
+        private long length = -1;
+
+        private MessageContent(MimeMessage message) {
+            super("message/rfc822");
+            this.message = message;
+        }
+
+        @Override
+        public long getLength() throws IOException {
+            if (length < 0) {
+                CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+                writeMessage(counter);
+                length = counter.getCount();
+            }
+            return length;
+        }
+
+        @Override
+        public boolean retrySupported() {
+            return true;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            writeMessage(out);
+            out.flush();
+        }
+
+        /**
+         * Only used by resumable uploads, which sends do not use; buffers the whole message
+         */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            writeMessage(buffer);
+            return new ByteArrayInputStream(buffer.toByteArray());
+        }
+
+        private void writeMessage(OutputStream out) throws IOException {
+            try {
+                message.writeTo(out);
+            } catch (MessagingException e) {
+                throw new IOException("Failed to serialize message", e);
+            }
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its backing array instead of copying it
+     */
+    private static final class PooledBuffer extends ByteArrayOutputStream {
+
+        private PooledBuffer() {
+            super(INITIAL_BUFFER_BYTES);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
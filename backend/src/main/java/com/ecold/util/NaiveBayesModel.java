@@ -0,0 +1,253 @@
+package com.ecold.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Multinomial naive Bayes over hashed word features.
+ * Words are hashed into a fixed number of buckets (a power of two), and per-class counts
+ * live in one flat float[] with a parallel table of log-smoothed counts, so training
+ * touches only the buckets a document hits and scoring is array lookups with no boxing
+ * or per-token logarithms. Not thread-safe: callers synchronize on the model.
+ */
+public final class NaiveBayesModel {
+
+    public static final int DEFAULT_DIMENSIONS = 1 << 14;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final float ALPHA = 1.0f;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    // Long bodies are scored on their first MAX_TOKENS words to bound latency
+    private static final int MAX_TOKENS = 2000;
+
+    private static final String[] STOP_WORDS = {
+        "the", "and", "for", "you", "your", "our", "we", "to", "of", "in", "on", "at", "is", "it",
+        "be", "are", "was", "this", "that", "with", "as", "by", "or", "an", "if", "me", "my",
+        "us", "will", "would", "from", "have", "has", "can", "do", "so", "all", "any", "hi", "hello"
+    };
+    private static final int[] STOP_WORD_HASHES = Arrays.stream(STOP_WORDS)
+            .mapToInt(NaiveBayesModel::hash).sorted().toArray();
+
+    private final int classes;
+    private final int dimensions;
+    // [label * dimensions + bucket]
+    private final float[] counts;
+    private final float[] logCounts;
+    private final float[] tokenTotals;
+    private final float[] docCounts;
+    private float totalDocs;
+
+    public NaiveBayesModel(int classes, int dimensions) {
+        if (Integer.bitCount(dimensions) != 1) {
+            throw new IllegalArgumentException("Dimensions must be a power of two: " + dimensions);
+        }
+        this.classes = classes;
+        this.dimensions = dimensions;
+        this.counts = new float[classes * dimensions];
+        this.logCounts = new float[classes * dimensions];
+        this.tokenTotals = new float[classes];
+        this.docCounts = new float[classes];
+        Arrays.fill(logCounts, (float) Math.log(ALPHA));
+    }
+
+    private NaiveBayesModel(NaiveBayesModel source) {
+        this.classes = source.classes;
+        this.dimensions = source.dimensions;
+        this.counts = source.counts.clone();
+        this.logCounts = source.logCounts.clone();
+        this.tokenTotals = source.tokenTotals.clone();
+        this.docCounts = source.docCounts.clone();
+        this.totalDocs = source.totalDocs;
+    }
+
+    public NaiveBayesModel copy() {
+        return new NaiveBayesModel(this);
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * Count a document toward the label's prior without adding any words
+     */
+    public void addDocuments(int label, float weight) {
+        docCounts[label] += weight;
+        totalDocs += weight;
+    }
+
+    /**
+     * Train one document of the given label, weighting each of its words by weight
+     */
+    public void train(int label, float weight, CharSequence... texts) {
+        addWords(label, weight, texts);
+        addDocuments(label, weight);
+    }
+
+    /**
+     * Count the texts' words toward the label without counting a document
+     */
+    public void addWords(int label, float weight, CharSequence... texts) {
+        int[] buckets = extract(texts);
+        int n = buckets.length;
+
+        int base = label * dimensions;
+        for (int i = 0; i < n; i++) {
+            int index = base + buckets[i];
+            counts[index] += weight;
+            logCounts[index] = (float) Math.log(Math.max(0f, counts[index]) + ALPHA);
+        }
+        tokenTotals[label] += weight * n;
+    }
+
+    /**
+     * Log posterior (unnormalized) per label
+     */
+    public double[] logScores(CharSequence... texts) {
+        int[] buckets = extract(texts);
+        int n = buckets.length;
+
+        double[] scores = new double[classes];
+        for (int label = 0; label < classes; label++) {
+            double score = Math.log((docCounts[label] + ALPHA) / (totalDocs + ALPHA * classes));
+            score -= n * Math.log(tokenTotals[label] + ALPHA * dimensions);
+
+            int base = label * dimensions;
+            for (int i = 0; i < n; i++) {
+                score += logCounts[base + buckets[i]];
+            }
+            scores[label] = score;
+        }
+        return scores;
+    }
+
+    /**
+     * Normalized posterior probability per label
+     */
+    public double[] posteriors(CharSequence... texts) {
+        double[] scores = logScores(texts);
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        for (int label = 0; label < classes; label++) {
+            scores[label] = Math.exp(scores[label] - max);
+            sum += scores[label];
+        }
+        for (int label = 0; label < classes; label++) {
+            scores[label] /= sum;
+        }
+        return scores;
+    }
+
+    /**
+     * Hash each lowercase letter/digit run of at least MIN_TOKEN_LENGTH chars (FNV-1a) that is not
+     * a stop word into a bucket, and return the document's distinct buckets
+     */
+    private int[] extract(CharSequence[] texts) {
+        int[] buckets = new int[64];
+        int n = 0;
+        for (CharSequence text : texts) {
+            if (text == null) {
+                continue;
+            }
+            int hash = 0x811c9dc5;
+            int length = 0;
+            for (int i = 0; i <= text.length() && n < MAX_TOKENS; i++) {
+                char c = i < text.length() ? text.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    hash = (hash ^ Character.toLowerCase(c)) * 0x01000193;
+                    length++;
+                } else {
+                    if (length >= MIN_TOKEN_LENGTH && Arrays.binarySearch(STOP_WORD_HASHES, hash) < 0) {
+                        if (n == buckets.length) {
+                            buckets = Arrays.copyOf(buckets, n * 2);
+                        }
+                        buckets[n++] = (hash ^ (hash >>> 16)) & (dimensions - 1);
+                    }
+                    hash = 0x811c9dc5;
+                    length = 0;
+                }
+            }
+        }
+        // Binarized: a word counts once per document, so repeated boilerplate does not dominate
+        Arrays.sort(buckets, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || buckets[unique - 1] != buckets[i]) {
+                buckets[unique++] = buckets[i];
+            }
+        }
+        return Arrays.copyOf(buckets, unique);
+    }
+
+    private static int hash(String word) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < word.length(); i++) {
+            hash = (hash ^ word.charAt(i)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * Compact binary form: only non-zero counts are written, then deflated
+     */
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(classes);
+            out.writeInt(dimensions);
+            out.writeFloat(totalDocs);
+            for (int label = 0; label < classes; label++) {
+                out.writeFloat(docCounts[label]);
+                out.writeFloat(tokenTotals[label]);
+            }
+
+            int nonZero = 0;
+            for (float count : counts) {
+                if (count != 0f) {
+                    nonZero++;
+                }
+            }
+            out.writeInt(nonZero);
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] != 0f) {
+                    out.writeInt(index);
+                    out.writeFloat(counts[index]);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static NaiveBayesModel fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported model format version " + version);
+            }
+            NaiveBayesModel model = new NaiveBayesModel(in.readInt(), in.readInt());
+            model.totalDocs = in.readFloat();
+            for (int label = 0; label < model.classes; label++) {
+                model.docCounts[label] = in.readFloat();
+                model.tokenTotals[label] = in.readFloat();
+            }
+
+            int nonZero = in.readInt();
+            for (int i = 0; i < nonZero; i++) {
+                int index = in.readInt();
+                model.counts[index] = in.readFloat();
+                model.logCounts[index] = (float) Math.log(Math.max(0f, model.counts[index]) + ALPHA);
+            }
+            return model;
+        }
+    }
+}
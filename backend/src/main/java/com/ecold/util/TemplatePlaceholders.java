@@ -0,0 +1,55 @@
+package com.ecold.util;
+
+import com.ecold.entity.RecruiterContact;
+import com.ecold.entity.User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Placeholder values and substitution shared by the immediate, scheduled and batch send paths.
+ *
+ * Standard placeholders are {Company}, {Role}, {RecruiterName} and {MyName}; any
+ * additional data keys are substituted as {Key} after them.
+ */
+public final class TemplatePlaceholders {
+
+    private TemplatePlaceholders() {
+    }
+
+    /**
+     * Build the placeholder values for one recruiter
+     */
+    public static Map<String, String> valuesFor(RecruiterContact recruiter, User user, Map<String, String> additionalData) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("Company", nullToEmpty(recruiter.getCompanyName()));
+        values.put("Role", nullToEmpty(recruiter.getJobRole()));
+        values.put("RecruiterName", nullToEmpty(recruiter.getRecruiterName()));
+        values.put("MyName", nullToEmpty(user.getName()));
+
+        // Standard placeholders win over additional data with the same key
+        if (additionalData != null) {
+            for (Map.Entry<String, String> entry : additionalData.entrySet()) {
+                values.putIfAbsent(entry.getKey(), nullToEmpty(entry.getValue()));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Replace {Key} occurrences in text with the given values
+     */
+    public static String render(String text, Map<String, String> values) {
+        if (text == null) return "";
+
+        String processed = text;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            processed = processed.replace("{" + entry.getKey() + "}", entry.getValue());
+        }
+        return processed;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,161 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+import com.ecold.util.NaiveBayesModel;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline evaluation of the incoming email classifiers
+ * Reads a labeled CSV (subject,body,senderEmail,category) and reports accuracy and a
+ * confusion matrix for the keyword rules, the untrained seed model, and the seed model
+ * trained on the other folds (k-fold), plus mean scoring latency. Run from the repo root
+ * after mvn test-compile:
+ *
+ *   java -cp backend/target/test-classes:backend/target/classes:<dependency classpath> \
+ *       com.ecold.service.impl.ClassifierEvaluation \
+ *       docs/testing/test-data/incoming_emails_labeled.csv [folds] [feedbackWeight] [minConfidence]
+ *
+ * The hybrid row applies the service's policy: the trained model's category is used only
+ * when its posterior reaches minConfidence, otherwise the rules decide.
+ */
+public final class ClassifierEvaluation {
+
+    private static final IncomingEmail.EmailCategory[] CATEGORIES = IncomingEmail.EmailCategory.values();
+
+    private ClassifierEvaluation() {
+    }
+
+    public static void main(String[] args) throws IOException, CsvException {
+        String path = args.length > 0 ? args[0] : "docs/testing/test-data/incoming_emails_labeled.csv";
+        int folds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        float feedbackWeight = args.length > 2 ? Float.parseFloat(args[2]) : 1.0f;
+        double minConfidence = args.length > 3 ? Double.parseDouble(args[3]) : 0.8;
+
+        List<Example> examples = load(path);
+        EmailCategorizer categorizer = new EmailCategorizer();
+        NaiveBayesModel seed = categorizer.seedModel();
+        System.out.printf("%d labeled emails from %s%n%n", examples.size(), path);
+
+        int[][] rules = new int[CATEGORIES.length][CATEGORIES.length];
+        for (Example example : examples) {
+            IncomingEmail.EmailCategory predicted = categorizer
+                    .categorize(example.subject, example.body, example.senderEmail).getCategory();
+            rules[example.category.ordinal()][predicted.ordinal()]++;
+        }
+        report("Keyword rules", rules);
+
+        int[][] seeded = new int[CATEGORIES.length][CATEGORIES.length];
+        for (Example example : examples) {
+            seeded[example.category.ordinal()][predict(seed, example)]++;
+        }
+        report("Seed model (untrained)", seeded);
+
+        int[][] trained = new int[CATEGORIES.length][CATEGORIES.length];
+        int[][] hybrid = new int[CATEGORIES.length][CATEGORIES.length];
+        long scoringNanos = 0;
+        for (int fold = 0; fold < folds; fold++) {
+            NaiveBayesModel model = seed.copy();
+            for (int i = 0; i < examples.size(); i++) {
+                if (i % folds != fold) {
+                    Example example = examples.get(i);
+                    model.train(example.category.ordinal(), feedbackWeight,
+                            example.subject, example.body, example.senderEmail);
+                }
+            }
+            for (int i = fold; i < examples.size(); i += folds) {
+                Example example = examples.get(i);
+                long start = System.nanoTime();
+                double[] posteriors = model.posteriors(example.subject, example.body, example.senderEmail);
+                scoringNanos += System.nanoTime() - start;
+
+                int predicted = argmax(posteriors);
+                trained[example.category.ordinal()][predicted]++;
+                int combined = posteriors[predicted] >= minConfidence ? predicted : categorizer
+                        .categorize(example.subject, example.body, example.senderEmail).getCategory().ordinal();
+                hybrid[example.category.ordinal()][combined]++;
+            }
+        }
+        report(folds + "-fold trained model (feedback weight " + feedbackWeight + ")", trained);
+        report(folds + "-fold hybrid (model when posterior >= " + minConfidence + ", else rules)", hybrid);
+        System.out.printf("Mean scoring latency: %.1f us%n", scoringNanos / 1000.0 / examples.size());
+    }
+
+    private static int predict(NaiveBayesModel model, Example example) {
+        return argmax(model.logScores(example.subject, example.body, example.senderEmail));
+    }
+
+    private static int argmax(double[] scores) {
+        int best = 0;
+        for (int label = 1; label < scores.length; label++) {
+            if (scores[label] > scores[best]) {
+                best = label;
+            }
+        }
+        return best;
+    }
+
+    private static List<Example> load(String path) throws IOException, CsvException {
+        List<Example> examples = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new FileReader(path))) {
+            List<String[]> rows = reader.readAll();
+            for (int i = 1; i < rows.size(); i++) {
+                String[] row = rows.get(i);
+                if (row.length < 4) {
+                    continue;
+                }
+                examples.add(new Example(row[0], row[1], row[2],
+                        IncomingEmail.EmailCategory.valueOf(row[3].trim().toUpperCase())));
+            }
+        }
+        return examples;
+    }
+
+    private static void report(String title, int[][] confusion) {
+        int correct = 0;
+        int total = 0;
+        for (int actual = 0; actual < CATEGORIES.length; actual++) {
+            for (int predicted = 0; predicted < CATEGORIES.length; predicted++) {
+                total += confusion[actual][predicted];
+                if (actual == predicted) {
+                    correct += confusion[actual][predicted];
+                }
+            }
+        }
+
+        System.out.printf("%s: accuracy %.1f%% (%d/%d)%n", title, total > 0 ? 100.0 * correct / total : 0, correct, total);
+        System.out.printf("%-20s", "actual \\ predicted");
+        for (IncomingEmail.EmailCategory category : CATEGORIES) {
+            System.out.printf(" %5.5s", category.name());
+        }
+        System.out.println();
+        for (int actual = 0; actual < CATEGORIES.length; actual++) {
+            System.out.printf("%-20s", CATEGORIES[actual].name());
+            for (int predicted = 0; predicted < CATEGORIES.length; predicted++) {
+                System.out.printf(" %5d", confusion[actual][predicted]);
+            }
+            System.out.println();
+        }
+        System.out.println();
+    }
+
+    private static final class Example {
+
+        private final String subject;
+        private final String body;
+        private final String senderEmail;
+        private final IncomingEmail.EmailCategory category;
+
+        private Example(String subject, String body, String senderEmail, IncomingEmail.EmailCategory category) {
+            this.subject = subject;
+            this.body = body;
+            this.senderEmail = senderEmail;
+            this.category = category;
+        }
+    }
+}
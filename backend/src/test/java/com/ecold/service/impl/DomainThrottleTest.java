@@ -0,0 +1,99 @@
+package com.ecold.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainThrottleTest {
+
+    private final DomainThrottle throttle = new DomainThrottle();
+    // Whole milliseconds, since slots are handed out at millisecond precision
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(throttle, "enabled", true);
+        ReflectionTestUtils.setField(throttle, "defaultPerMinute", 60);
+        ReflectionTestUtils.setField(throttle, "burst", 2);
+        ReflectionTestUtils.setField(throttle, "overridesSpec", "slow.example = 1, bad-entry");
+        ReflectionTestUtils.setField(throttle, "idleEvictionMinutes", 30L);
+        throttle.init();
+    }
+
+    @Test
+    void allowsTheBurstThenSpacesSends() {
+        assertThat(throttle.reserve("a@acme.io", now)).isEqualTo(now);
+        assertThat(throttle.reserve("b@acme.io", now)).isEqualTo(now);
+        assertThat(throttle.reserve("c@acme.io", now)).isEqualTo(now.plusSeconds(1));
+        assertThat(throttle.reserve("d@acme.io", now)).isEqualTo(now.plusSeconds(2));
+    }
+
+    @Test
+    void domainsAreThrottledIndependently() {
+        throttle.reserve("a@acme.io", now);
+        throttle.reserve("b@acme.io", now);
+
+        assertThat(throttle.reserve("a@other.io", now)).isEqualTo(now);
+    }
+
+    @Test
+    void laterRequestsAreNotPulledForward() {
+        Instant later = now.plus(Duration.ofMinutes(5));
+
+        assertThat(throttle.reserve("a@acme.io", later)).isEqualTo(later);
+    }
+
+    @Test
+    void overridesApplyPerDomainAndIgnoreCase() {
+        assertThat(throttle.reserve("a@Slow.Example", now)).isEqualTo(now);
+        // Burst is capped at the per-minute rate, so the second send waits a full minute
+        assertThat(throttle.reserve("b@slow.example", now)).isEqualTo(now.plus(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void evictionKeepsDomainsWithRecentSlots() {
+        throttle.reserve("a@acme.io", now);
+        throttle.reserve("b@acme.io", now);
+        throttle.reserve("c@acme.io", now);
+
+        throttle.evictIdle();
+
+        assertThat(throttle.reserve("d@acme.io", now)).isEqualTo(now.plusSeconds(2));
+    }
+
+    @Test
+    void evictionDropsIdleDomains() {
+        Instant longAgo = now.minus(Duration.ofHours(2));
+        throttle.reserve("a@acme.io", longAgo);
+        throttle.reserve("b@acme.io", longAgo);
+        throttle.reserve("c@acme.io", longAgo);
+
+        throttle.evictIdle();
+
+        // A fresh schedule has its whole burst available again
+        assertThat(throttle.reserve("d@acme.io", longAgo)).isEqualTo(longAgo);
+        assertThat(throttle.reserve("e@acme.io", longAgo)).isEqualTo(longAgo);
+    }
+
+    @Test
+    void disabledThrottleNeverDefers() {
+        ReflectionTestUtils.setField(throttle, "enabled", false);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(throttle.reserve("a@acme.io", now)).isEqualTo(now);
+        }
+    }
+
+    @Test
+    void domainOfLowercasesTheDomain() {
+        assertThat(DomainThrottle.domainOf("Jane.Doe@ACME.io ")).isEqualTo("acme.io");
+        assertThat(DomainThrottle.domainOf("no-at-sign")).isEmpty();
+        assertThat(DomainThrottle.domainOf(null)).isEmpty();
+    }
+}
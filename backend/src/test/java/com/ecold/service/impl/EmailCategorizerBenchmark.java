@@ -0,0 +1,89 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Categorization throughput: the single-pass EmailCategorizer against the String.contains rules it replaced.
+ * Bodies are padded with filler text to the given length, since real bodies dominate the cost.
+ * Run from the backend directory after mvn test-compile:
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)
+ * com.ecold.service.impl.EmailCategorizerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailCategorizerBenchmark {
+
+    private static final String FILLER = "Thanks for getting back to us. Our team reviewed the details you shared "
+            + "and we will follow up with next steps shortly. Best regards, the team. ";
+
+    @Param({"200", "4000", "40000"})
+    private int bodyLength;
+
+    private EmailCategorizer categorizer;
+    private String[][] emails;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categorizer = new EmailCategorizer();
+
+        List<String[]> samples = LegacyEmailRules.samples();
+        emails = new String[samples.size()][];
+        for (int i = 0; i < samples.size(); i++) {
+            String[] sample = samples.get(i);
+            StringBuilder body = new StringBuilder(bodyLength + FILLER.length());
+            // Filler first, so rules that stop at the first hit still read the whole body
+            while (body.length() < bodyLength) {
+                body.append(FILLER);
+            }
+            body.append(sample[1]);
+            emails[i] = new String[] {sample[0], body.toString(), sample[2]};
+        }
+    }
+
+    @Benchmark
+    public int keywordMatcher() {
+        int sum = 0;
+        for (String[] email : emails) {
+            sum += categorizer.categorize(email[0], email[1], email[2]).getCategory().ordinal();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int containsRules() {
+        int sum = 0;
+        for (String[] email : emails) {
+            IncomingEmail.EmailCategory category = LegacyEmailRules.categorize(email[0], email[1], email[2]);
+            sum += category.ordinal();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailCategorizerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailCategorizerTest {
+
+    private final EmailCategorizer categorizer = new EmailCategorizer();
+
+    static Stream<String[]> samples() {
+        return LegacyEmailRules.samples().stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void matchesLegacyRules(String subject, String body, String sender) {
+        assertThat(categorizer.categorize(subject, body, sender).getCategory())
+                .isEqualTo(LegacyEmailRules.categorize(subject, body, sender));
+    }
+
+    @Test
+    void matchesLegacyRulesOnRandomKeywordMixes() {
+        String[] words = {
+            "application", "shortlisted", "shortlist", "interview", "resume", "recruiter", "hr", "position",
+            "job", "opportunity", "candidate", "hiring", "selected", "rejected", "reject", "offer", "update",
+            "screening", "assessment", "placement", "career", "employment", "closed", "unsuccessful", "regret",
+            "lottery", "winner", "congratulations", "claim", "now", "urgent", "act", "hello", "team", "the",
+            "SHORT", "LIST", "Inter", "view", "a", "", " "
+        };
+        String[] senders = {"x@naukri.com", "x@LINKEDIN.COM", "x@instahyre.com", "x@acme.io", "x@example.com", "nobody"};
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            String subject = phrase(random, words);
+            String body = phrase(random, words);
+            String sender = senders[random.nextInt(senders.length)];
+
+            assertThat(categorizer.categorize(subject, body, sender).getCategory())
+                    .as("subject=%s, body=%s, sender=%s", subject, body, sender)
+                    .isEqualTo(LegacyEmailRules.categorize(subject, body, sender));
+        }
+    }
+
+    @Test
+    void reportsMatchedKeywordsByFrequency() {
+        EmailCategorizer.Result result = categorizer.categorize(
+                "Interview", "Second interview for the job, interview panel attached", "hr@acme.io");
+
+        assertThat(result.getCategory()).isEqualTo(IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW);
+        assertThat(result.getKeywords()).startsWith("interview");
+        assertThat(result.getGroupHits().get(EmailCategorizer.KeywordGroup.INTERVIEW)).isEqualTo(3);
+        assertThat(result.getConfidenceScore()).isBetween(0.3, 0.95);
+    }
+
+    @Test
+    void unknownHasNoConfidence() {
+        EmailCategorizer.Result result = categorizer.categorize("Lunch", "See you at noon", "friend@example.com");
+
+        assertThat(result.getCategory()).isEqualTo(IncomingEmail.EmailCategory.UNKNOWN);
+        assertThat(result.getKeywords()).isEmpty();
+        assertThat(result.getConfidenceScore()).isZero();
+    }
+
+    private static String phrase(Random random, String[] words) {
+        StringBuilder phrase = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            // Words are sometimes glued together so keywords can also straddle word boundaries
+            if (i > 0 && random.nextBoolean()) {
+                phrase.append(' ');
+            }
+            phrase.append(words[random.nextInt(words.length)]);
+        }
+        return phrase.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.ecold.service.impl;
+
+import com.ecold.repository.firestore.GmailQuotaFirestoreRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GmailQuotaServiceImplTest {
+
+    private static final String USER = "user-1";
+    // Mid-minute, so one minute later is the next bucket
+    private static final Instant START = Instant.parse("2026-01-05T10:15:30Z");
+
+    private final GmailQuotaFirestoreRepository repository = mock(GmailQuotaFirestoreRepository.class);
+    private final GmailQuotaServiceImpl quota = new GmailQuotaServiceImpl(repository);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(repository.find(anyString())).thenReturn(Optional.empty());
+        ReflectionTestUtils.setField(quota, "dailySendLimit", 2L);
+        ReflectionTestUtils.setField(quota, "dailyUnitLimit", 0L);
+        ReflectionTestUtils.setField(quota, "sendUnits", 100L);
+        at(START);
+    }
+
+    @Test
+    void reservesUntilTheDailyLimit() {
+        assertThat(quota.tryReserveSend(USER)).isPresent();
+        assertThat(quota.tryReserveSend(USER)).isPresent();
+        assertThat(quota.tryReserveSend(USER)).isEmpty();
+
+        assertThat(quota.getQuota(USER).getSendsRemaining()).isZero();
+        assertThat(quota.hasCapacity(USER, 1)).isFalse();
+    }
+
+    @Test
+    void releasedSendCanBeReservedAgain() {
+        long first = quota.tryReserveSend(USER).getAsLong();
+        quota.tryReserveSend(USER);
+
+        quota.releaseSend(USER, first);
+
+        assertThat(quota.tryReserveSend(USER)).isPresent();
+    }
+
+    @Test
+    void releaseAfterAMinuteBoundaryTakesTheSendFromTheMinuteItWasReservedIn() {
+        long first = quota.tryReserveSend(USER).getAsLong();
+        at(START.plus(Duration.ofMinutes(1)));
+        long second = quota.tryReserveSend(USER).getAsLong();
+        assertThat(second).isEqualTo(first + 1);
+
+        quota.releaseSend(USER, first);
+        assertThat(quota.getQuota(USER).getSendsUsed()).isEqualTo(1);
+
+        // Once the first minute leaves the window only the second send may still count
+        at(START.plus(Duration.ofDays(1)));
+        assertThat(quota.getQuota(USER).getSendsUsed()).isEqualTo(1);
+        at(START.plus(Duration.ofDays(1)).plus(Duration.ofMinutes(1)));
+        assertThat(quota.getQuota(USER).getSendsUsed()).isZero();
+    }
+
+    @Test
+    void releaseOfAReservationThatLeftTheWindowIsIgnored() {
+        long first = quota.tryReserveSend(USER).getAsLong();
+        at(START.plus(Duration.ofDays(1)));
+        OptionalLong second = quota.tryReserveSend(USER);
+        assertThat(second).isPresent();
+
+        quota.releaseSend(USER, first);
+
+        assertThat(quota.getQuota(USER).getSendsUsed()).isEqualTo(1);
+    }
+
+    @Test
+    void unitLimitCapsSends() {
+        ReflectionTestUtils.setField(quota, "dailySendLimit", 500L);
+        ReflectionTestUtils.setField(quota, "dailyUnitLimit", 250L);
+
+        assertThat(quota.tryReserveSend(USER)).isPresent();
+        quota.recordUnits(USER, 100);
+        assertThat(quota.tryReserveSend(USER)).isEmpty();
+        assertThat(quota.getQuota(USER).getUnitsUsed()).isEqualTo(200);
+    }
+
+    private void at(Instant instant) {
+        quota.clock = Clock.fixed(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.IncomingEmail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The String.contains categorization rules EmailCategorizer replaced, kept verbatim as a
+ * reference for equivalence tests and the benchmark baseline
+ */
+final class LegacyEmailRules {
+
+    private static final Set<String> JOB_KEYWORDS = Set.of(
+        "application", "shortlisted", "interview", "resume", "recruiter", "hr", "position",
+        "job", "opportunity", "candidate", "hiring", "selected", "rejected", "offer",
+        "screening", "assessment", "placement", "career", "employment"
+    );
+
+    private static final Set<String> TRUSTED_DOMAINS = Set.of(
+        "naukri.com", "linkedin.com", "indeed.com", "monster.com", "glassdoor.com",
+        "shine.com", "timesjobs.com", "foundit.in", "instahyre.com"
+    );
+
+    private LegacyEmailRules() {
+    }
+
+    static IncomingEmail.EmailCategory categorize(String subject, String body, String senderEmail) {
+        String content = (subject + " " + body).toLowerCase();
+        String senderDomain = extractDomain(senderEmail);
+
+        if (TRUSTED_DOMAINS.contains(senderDomain)) {
+            if (content.contains("shortlist") || content.contains("interview") || content.contains("selected")) {
+                return IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+            }
+            if (content.contains("application") && content.contains("update")) {
+                return IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+            }
+            if (content.contains("reject") || content.contains("closed") || content.contains("unsuccessful")) {
+                return IncomingEmail.EmailCategory.REJECTION_CLOSED;
+            }
+            return IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
+        }
+
+        boolean hasJobKeywords = JOB_KEYWORDS.stream()
+            .anyMatch(keyword -> content.contains(keyword));
+
+        if (hasJobKeywords) {
+            if (content.contains("shortlist") || content.contains("interview")) {
+                return IncomingEmail.EmailCategory.SHORTLIST_INTERVIEW;
+            }
+            if (content.contains("reject") || content.contains("regret")) {
+                return IncomingEmail.EmailCategory.REJECTION_CLOSED;
+            }
+            if (content.contains("application") || content.contains("opportunity")) {
+                return IncomingEmail.EmailCategory.APPLICATION_UPDATE;
+            }
+            return IncomingEmail.EmailCategory.RECRUITER_OUTREACH;
+        }
+
+        if (isSpamIndicator(subject, body)) {
+            return IncomingEmail.EmailCategory.SPAM;
+        }
+
+        return IncomingEmail.EmailCategory.UNKNOWN;
+    }
+
+    private static String extractDomain(String email) {
+        int atIndex = email.indexOf('@');
+        return atIndex != -1 ? email.substring(atIndex + 1).toLowerCase() : "";
+    }
+
+    private static boolean isSpamIndicator(String subject, String body) {
+        String content = (subject + " " + body).toLowerCase();
+        String[] spamKeywords = {"lottery", "winner", "congratulations", "claim now", "urgent", "act now"};
+        return Arrays.stream(spamKeywords).anyMatch(content::contains);
+    }
+
+    /**
+     * Sample emails covering every branch of the rules: subject, body, sender
+     */
+    static List<String[]> samples() {
+        return List.of(
+            new String[] {"Interview invitation", "You have been shortlisted for the next round.", "jobs@naukri.com"},
+            new String[] {"You were SELECTED", "Congratulations on your selection.", "alerts@LinkedIn.com"},
+            new String[] {"Application update", "There is an update on your application.", "noreply@indeed.com"},
+            new String[] {"Position closed", "The position you applied for has been closed.", "team@glassdoor.com"},
+            new String[] {"Status", "We found you unsuccessful this time.", "team@monster.com"},
+            new String[] {"New roles for you", "Browse this week's picks.", "digest@foundit.in"},
+            new String[] {"Interview scheduling", "Please pick a slot.", "jane@acme.io"},
+            new String[] {"Your candidacy", "We regret to inform you that we will not proceed with your resume.", "hr@acme.io"},
+            new String[] {"Re: your application", "Thanks for applying to this opportunity.", "talent@acme.io"},
+            new String[] {"Hiring now", "We are hiring engineers like you.", "recruiter@startup.dev"},
+            new String[] {"Career fair", "Meet employers at our employment event.", "events@college.edu"},
+            new String[] {"Thread", "Your application was REJECTED after screening.", "hr@acme.io"},
+            // "hr" is matched as a substring, as String.contains always did
+            new String[] {"Three things", "Shrimp for dinner?", "friend@mail.com"},
+            new String[] {"You are a WINNER", "Claim now before it expires!", "promo@spam.biz"},
+            new String[] {"Urgent", "Act now to keep your account.", "alerts@bank-example.com"},
+            new String[] {"Lottery results", "See the numbers.", "news@lotto.example"},
+            // Keywords split across subject and body still match through the joining space
+            new String[] {"Please claim", "now your prize", "promo@spam.biz"},
+            new String[] {"Weekly newsletter", "Nothing relevant here.", "news@example.com"},
+            new String[] {"", "", "no-domain"},
+            new String[] {"Überraschung", "Grüße und viel Glück", "freund@example.de"}
+        );
+    }
+}
@@ -0,0 +1,123 @@
+package com.ecold.service.impl;
+
+import com.ecold.dto.EmailRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriorityDispatcherTest {
+
+    private PriorityDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void workerSurvivesATaskThatInterruptsItself() throws Exception {
+        start(30000);
+
+        dispatcher.submit(EmailRequest.Priority.NORMAL, () -> {
+            Thread.currentThread().interrupt();
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        // The only worker must still be alive and must not hand its interrupt to the next task
+        Boolean interrupted = dispatcher.submit(EmailRequest.Priority.NORMAL,
+                () -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS);
+        assertThat(interrupted).isFalse();
+    }
+
+    @Test
+    void workerSurvivesAFailingTask() throws Exception {
+        start(30000);
+
+        dispatcher.executor(EmailRequest.Priority.NORMAL).execute(() -> {
+            throw new IllegalStateException("send failed");
+        });
+
+        assertThat(dispatcher.submit(EmailRequest.Priority.NORMAL, () -> "sent").get(5, TimeUnit.SECONDS))
+                .isEqualTo("sent");
+    }
+
+    @Test
+    void highPriorityOvertakesQueuedLowPriority() throws Exception {
+        start(30000);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = blockWorker();
+
+        CompletableFuture<Boolean> low = dispatcher.submit(EmailRequest.Priority.LOW, () -> order.add("low"));
+        CompletableFuture<Boolean> high = dispatcher.submit(EmailRequest.Priority.HIGH, () -> order.add("high"));
+        assertThat(dispatcher.depth(EmailRequest.Priority.LOW)).isEqualTo(1);
+        assertThat(dispatcher.depth(EmailRequest.Priority.HIGH)).isEqualTo(1);
+
+        release.countDown();
+        CompletableFuture.allOf(low, high).get(5, TimeUnit.SECONDS);
+
+        assertThat(order).containsExactly("high", "low");
+    }
+
+    @Test
+    void overdueTaskIsTakenBeforeHigherPriority() throws Exception {
+        // Every queued task is overdue at once, so the oldest wins regardless of weight
+        start(0);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = blockWorker();
+
+        CompletableFuture<Boolean> low = dispatcher.submit(EmailRequest.Priority.LOW, () -> order.add("low"));
+        Thread.sleep(5);
+        CompletableFuture<Boolean> high = dispatcher.submit(EmailRequest.Priority.HIGH, () -> order.add("high"));
+
+        release.countDown();
+        CompletableFuture.allOf(low, high).get(5, TimeUnit.SECONDS);
+
+        assertThat(order).containsExactly("low", "high");
+    }
+
+    private void start(long maxWaitMs) {
+        dispatcher = new PriorityDispatcher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 10);
+        ReflectionTestUtils.setField(dispatcher, "highWeight", 6);
+        ReflectionTestUtils.setField(dispatcher, "normalWeight", 3);
+        ReflectionTestUtils.setField(dispatcher, "lowWeight", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxWaitMs", maxWaitMs);
+        dispatcher.init();
+    }
+
+    /**
+     * Occupy the only worker until the returned latch is released
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.executor(EmailRequest.Priority.NORMAL).execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return release;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecold.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SeenMessageIndexTest {
+
+    // An empty set's table is 16 longs
+    private static final long SET_BYTES = 16 * Long.BYTES;
+
+    private final SeenMessageIndex index = new SeenMessageIndex();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "maxBytes", 1024L * 1024);
+    }
+
+    @Test
+    void remembersIdsPerUser() {
+        index.add("user-1", "18c2f0a1b2c3d4e5");
+
+        assertThat(index.contains("user-1", "18c2f0a1b2c3d4e5")).isTrue();
+        assertThat(index.contains("user-1", "18C2F0A1B2C3D4E5")).isTrue();
+        assertThat(index.contains("user-1", "18c2f0a1b2c3d4e6")).isFalse();
+        assertThat(index.contains("user-2", "18c2f0a1b2c3d4e5")).isFalse();
+    }
+
+    @Test
+    void keepsEveryIdAsTheSetGrows() {
+        for (long id = 0; id < 5000; id++) {
+            index.add("user-1", Long.toHexString(id * 7919));
+        }
+
+        for (long id = 0; id < 5000; id++) {
+            assertThat(index.contains("user-1", Long.toHexString(id * 7919))).as("id %d", id).isTrue();
+        }
+        assertThat(index.contains("user-1", Long.toHexString(5000L * 7919))).isFalse();
+    }
+
+    @Test
+    void tracksTheZeroId() {
+        assertThat(index.contains("user-1", "0000000000000000")).isFalse();
+
+        index.add("user-1", "0000000000000000");
+
+        assertThat(index.contains("user-1", "0")).isTrue();
+    }
+
+    @Test
+    void neverIndexesIdsThatDoNotPack() {
+        index.add("user-1", "not-a-gmail-id");
+        index.add("user-1", "18c2f0a1b2c3d4e5f");
+        index.add("user-1", null);
+
+        assertThat(index.contains("user-1", "not-a-gmail-id")).isFalse();
+        assertThat(SeenMessageIndex.pack("18c2f0a1b2c3d4e5f")).isEqualTo(-1L);
+        assertThat(SeenMessageIndex.pack("")).isEqualTo(-1L);
+        assertThat(SeenMessageIndex.pack("ffffffffffffffff")).isEqualTo(-1L);
+        assertThat(SeenMessageIndex.pack("ff")).isEqualTo(255L);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUsersOverBudget() {
+        ReflectionTestUtils.setField(index, "maxBytes", 3 * SET_BYTES);
+        index.add("user-1", "1");
+        index.add("user-2", "2");
+        index.contains("user-1", "1");
+
+        // Growing user-3 past its first table goes over budget, and user-2 is the least recently used
+        for (int id = 1; id <= 9; id++) {
+            index.add("user-3", Integer.toHexString(id));
+        }
+
+        assertThat(index.contains("user-2", "2")).isFalse();
+        assertThat(index.contains("user-1", "1")).isTrue();
+        assertThat(index.contains("user-3", "9")).isTrue();
+    }
+}
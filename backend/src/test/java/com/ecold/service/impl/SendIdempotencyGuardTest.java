@@ -0,0 +1,123 @@
+package com.ecold.service.impl;
+
+import com.ecold.entity.SentKey;
+import com.ecold.entity.User;
+import com.ecold.repository.firestore.SentKeyFirestoreRepository;
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SendIdempotencyGuardTest {
+
+    private static final String KEY = SendIdempotencyGuard.scheduledKey("email-1");
+
+    private final SentKeyFirestoreRepository repository = mock(SentKeyFirestoreRepository.class);
+    private final GmailOAuthServiceImpl gmailOAuthService = mock(GmailOAuthServiceImpl.class);
+    private final SendIdempotencyGuard guard = new SendIdempotencyGuard(repository, gmailOAuthService);
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(guard, "maxEntries", 100);
+        ReflectionTestUtils.setField(guard, "pendingLeaseSeconds", 300L);
+        guard.init();
+
+        user.setId("user-1");
+        user.setProviderEnum(User.Provider.GOOGLE);
+    }
+
+    @Test
+    void firstClaimMaySendAndRepeatsAreRejectedFromCache() throws Exception {
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.empty());
+
+        assertThat(guard.claim(user, KEY)).isEmpty();
+        Optional<SentKey> repeat = guard.claim(user, KEY);
+
+        assertThat(repeat).map(SentKey::getStatusEnum).contains(SentKey.Status.PENDING);
+        verify(repository, times(1)).claim("user-1", KEY);
+    }
+
+    @Test
+    void releasedClaimIsClaimedAgainFromFirestore() throws Exception {
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.empty());
+        guard.claim(user, KEY);
+
+        guard.release("user-1", KEY);
+
+        assertThat(guard.claim(user, KEY)).isEmpty();
+        verify(repository).delete("user-1", KEY);
+        verify(repository, times(2)).claim("user-1", KEY);
+    }
+
+    @Test
+    void pendingClaimWithinItsLeaseBlocksWithoutCheckingSentMail() throws Exception {
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.of(pending(Instant.now().minusSeconds(10))));
+
+        assertThat(guard.claim(user, KEY)).map(SentKey::getStatusEnum).contains(SentKey.Status.PENDING);
+        verify(gmailOAuthService, never()).findSentMessageId(any(), anyString());
+    }
+
+    @Test
+    void stalePendingClaimFoundInSentMailIsRecordedAsSent() throws Exception {
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.of(pending(Instant.now().minusSeconds(3600))));
+        when(gmailOAuthService.findSentMessageId(user, SendIdempotencyGuard.rfcMessageId("user-1", KEY)))
+                .thenReturn(Optional.of("gmail-123"));
+
+        Optional<SentKey> blocking = guard.claim(user, KEY);
+
+        assertThat(blocking).map(SentKey::getStatusEnum).contains(SentKey.Status.SENT);
+        assertThat(blocking).map(SentKey::getMessageId).contains("gmail-123");
+        verify(repository).markSent("user-1", KEY, "gmail-123");
+    }
+
+    @Test
+    void stalePendingClaimMissingFromSentMailIsReclaimed() throws Exception {
+        SentKey stale = pending(Instant.now().minusSeconds(3600));
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.of(stale));
+        when(gmailOAuthService.findSentMessageId(any(), anyString())).thenReturn(Optional.empty());
+        when(repository.reclaim("user-1", KEY, stale.getClaimedAt())).thenReturn(Optional.empty());
+
+        assertThat(guard.claim(user, KEY)).isEmpty();
+        verify(repository).reclaim("user-1", KEY, stale.getClaimedAt());
+    }
+
+    @Test
+    void stalePendingClaimIsUnknownWhenSentMailCannotBeChecked() throws Exception {
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.of(pending(Instant.now().minusSeconds(3600))));
+        when(gmailOAuthService.findSentMessageId(any(), anyString())).thenThrow(new IllegalStateException("offline"));
+
+        assertThat(guard.claim(user, KEY)).map(SentKey::getStatusEnum).contains(SentKey.Status.UNKNOWN);
+        verify(repository).markUnknown("user-1", KEY);
+        verify(repository, never()).reclaim(anyString(), anyString(), any());
+    }
+
+    @Test
+    void stalePendingClaimOfANonGmailUserIsUnknown() throws Exception {
+        user.setProviderEnum(User.Provider.LOCAL);
+        when(repository.claim("user-1", KEY)).thenReturn(Optional.of(pending(Instant.now().minusSeconds(3600))));
+
+        assertThat(guard.claim(user, KEY)).map(SentKey::getStatusEnum).contains(SentKey.Status.UNKNOWN);
+        verify(gmailOAuthService, never()).findSentMessageId(any(), anyString());
+    }
+
+    private static SentKey pending(Instant claimedAt) {
+        return SentKey.builder()
+                .key(KEY)
+                .status(SentKey.Status.PENDING.name())
+                .claimedAt(Timestamp.ofTimeSecondsAndNanos(claimedAt.getEpochSecond(), claimedAt.getNano()))
+                .build();
+    }
+}
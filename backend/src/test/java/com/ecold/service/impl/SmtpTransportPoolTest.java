@@ -0,0 +1,136 @@
+package com.ecold.service.impl;
+
+import com.ecold.util.MimeMessageEncoder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SmtpTransportPoolTest {
+
+    private static final String HOST = "smtp.example.com";
+    private static final int PORT = 587;
+    private static final String USERNAME = "sender@example.com";
+    private static final String PASSWORD = "secret";
+
+    private final JavaMailSenderImpl sender = mock(JavaMailSenderImpl.class);
+    private final Transport transport = mock(Transport.class);
+    private final SmtpTransportPool pool = new SmtpTransportPool();
+
+    @BeforeEach
+    void setUp() throws MessagingException {
+        Session session = mock(Session.class);
+        when(sender.getSession()).thenReturn(session);
+        when(sender.getProtocol()).thenReturn("smtp");
+        when(sender.getHost()).thenReturn(HOST);
+        when(sender.getPort()).thenReturn(PORT);
+        when(sender.getUsername()).thenReturn(USERNAME);
+        when(sender.getPassword()).thenReturn(PASSWORD);
+        when(session.getTransport("smtp")).thenReturn(transport);
+
+        // One pooled connection, so every send borrows the same mocked transport
+        ReflectionTestUtils.setField(pool, "mailSender", sender);
+        ReflectionTestUtils.setField(pool, "pooled", true);
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMs", 1000L);
+    }
+
+    @Test
+    void sendsSeveralMessagesOverOneConnection() throws MessagingException {
+        when(transport.isConnected()).thenReturn(false, true);
+
+        pool.send(message("a@example.com"), message("b@example.com"));
+
+        verify(transport, times(1)).connect(HOST, PORT, USERNAME, PASSWORD);
+        verify(transport, times(2)).sendMessage(any(), any());
+        verify(transport, never()).close();
+    }
+
+    @Test
+    void reconnectsOnceWhenTheConnectionWasDropped() throws MessagingException {
+        doThrow(new MessagingException("Connection reset"))
+                .doNothing()
+                .when(transport).connect(HOST, PORT, USERNAME, PASSWORD);
+
+        pool.send(message("a@example.com"));
+
+        verify(transport).close();
+        verify(transport, times(2)).connect(HOST, PORT, USERNAME, PASSWORD);
+        verify(transport).sendMessage(any(), any());
+    }
+
+    @Test
+    void givesUpWhenTheReconnectFailsAndReturnsTheConnection() throws MessagingException {
+        doThrow(new MessagingException("Connection refused"))
+                .doThrow(new MessagingException("Connection refused"))
+                .doNothing()
+                .when(transport).connect(HOST, PORT, USERNAME, PASSWORD);
+
+        assertThatThrownBy(() -> pool.send(message("a@example.com")))
+                .isInstanceOf(MessagingException.class)
+                .hasMessage("Connection refused");
+        verify(transport, never()).sendMessage(any(), any());
+
+        // The connection went back to the pool, so the next send can borrow it
+        pool.send(message("b@example.com"));
+        verify(transport).sendMessage(any(), any());
+    }
+
+    @Test
+    void closesTheConnectionWhenTheTransactionFailsAndDoesNotResend() throws MessagingException {
+        doThrow(new MessagingException("421 Service not available"))
+                .when(transport).sendMessage(any(), any());
+
+        assertThatThrownBy(() -> pool.send(message("a@example.com"), message("b@example.com")))
+                .isInstanceOf(MessagingException.class)
+                .hasMessage("421 Service not available");
+
+        verify(transport, times(1)).sendMessage(any(), any());
+        verify(transport).close();
+    }
+
+    @Test
+    void keepsTheConnectionWhenRecipientsAreRejected() throws MessagingException {
+        when(transport.isConnected()).thenReturn(false, true);
+        doThrow(new SendFailedException("Invalid Addresses"))
+                .when(transport).sendMessage(any(), any());
+
+        assertThatThrownBy(() -> pool.send(message("nobody@example.com")))
+                .isInstanceOf(SendFailedException.class);
+
+        verify(transport, never()).close();
+    }
+
+    @Test
+    void closesPooledConnectionsOnShutdown() throws MessagingException {
+        pool.send(message("a@example.com"));
+
+        pool.shutdown();
+
+        verify(transport).close();
+    }
+
+    private static MimeMessage message(String to) throws MessagingException {
+        MimeMessage message = MimeMessageEncoder.newMessage();
+        message.setFrom(new InternetAddress(USERNAME));
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(to));
+        message.setSubject("Application");
+        message.setText("Hello");
+        return message;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecold.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeywordMatcherTest {
+
+    @Test
+    void countsOverlappingAndNestedOccurrences() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("he", "she", "his", "hers"));
+
+        int[] counts = matcher.count("ushers");
+
+        assertThat(counts[index(matcher, "he")]).isEqualTo(1);
+        assertThat(counts[index(matcher, "she")]).isEqualTo(1);
+        assertThat(counts[index(matcher, "hers")]).isEqualTo(1);
+        assertThat(counts[index(matcher, "his")]).isZero();
+    }
+
+    @Test
+    void agreesWithContainsIgnoringCase() {
+        List<String> keywords = List.of("shortlist", "shortlisted", "interview", "hr", "claim now", "reject");
+        KeywordMatcher matcher = KeywordMatcher.compile(keywords);
+        String text = "SHORTLISTED for an Interview with HR; please Claim Now. Three rejections.";
+
+        int[] counts = matcher.count(text);
+
+        for (String keyword : keywords) {
+            assertThat(counts[index(matcher, keyword)] > 0)
+                    .as(keyword)
+                    .isEqualTo(text.toLowerCase().contains(keyword));
+        }
+        assertThat(counts[index(matcher, "hr")]).isEqualTo(2);
+    }
+
+    @Test
+    void joinsTextsWithASingleSpace() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("claim now", "ab"));
+
+        int[] counts = matcher.count("please claim", null, "now", "a", "b");
+
+        assertThat(counts[index(matcher, "claim now")]).isEqualTo(1);
+        assertThat(counts[index(matcher, "ab")]).isZero();
+    }
+
+    @Test
+    void nonAsciiTextResetsMatching() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("job"));
+
+        assertThat(matcher.count("jöb")[0]).isZero();
+        assertThat(matcher.count("Grüße job")[0]).isEqualTo(1);
+    }
+
+    @Test
+    void deduplicatesAndLowercasesKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile(List.of("Job", "job", "", "Offer"));
+
+        assertThat(matcher.size()).isEqualTo(2);
+        assertThat(matcher.keyword(0)).isEqualTo("job");
+        assertThat(matcher.keyword(1)).isEqualTo("offer");
+    }
+
+    @Test
+    void rejectsNonAsciiKeywords() {
+        assertThatThrownBy(() -> KeywordMatcher.compile(List.of("grüße")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int index(KeywordMatcher matcher, String keyword) {
+        for (int id = 0; id < matcher.size(); id++) {
+            if (matcher.keyword(id).equals(keyword)) {
+                return id;
+            }
+        }
+        throw new AssertionError("Keyword not compiled: " + keyword);
+    }
+}
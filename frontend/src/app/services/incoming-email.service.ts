@@ -9,6 +9,9 @@ export interface IncomingEmail {
   senderEmail: string;
   senderName?: string;
   subject: string;
+  snippet?: string;
+  bodyTruncated?: boolean;
+  // Only present on GET /incoming-emails/{id}; list responses carry the snippet
   body?: string;
   htmlBody?: string;
   category?: string;